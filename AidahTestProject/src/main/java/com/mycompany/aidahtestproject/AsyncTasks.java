@@ -0,0 +1,210 @@
+package com.mycompany.aidahtestproject;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs file I/O and loading off the Swing event dispatch thread.
+ *
+ * One application-wide bounded pool (Java 17, so platform threads rather
+ * than virtual threads): a few daemon workers and a fixed-size queue, so a
+ * burst of clicks cannot pile up unbounded work. Results and errors are
+ * always handed back on the EDT with SwingUtilities.invokeLater, so the
+ * callbacks may touch Swing components directly.
+ *
+ * Typical use from an action listener:
+ *
+ *   AsyncTasks.run(() -> loadSomething(), result -> showIt(result));
+ *
+ * Long loads can use runWithProgress(), which shows a small progress
+ * dialog with a Cancel button; the work polls Progress.isCancelled().
+ */
+public final class AsyncTasks {
+
+    private static final int WORKERS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int QUEUE_CAPACITY = 256;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
+            WORKERS, WORKERS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                Thread t = new Thread(r, "goldenhour-io-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private AsyncTasks() { }
+
+    /** Background work that may report progress and should stop when cancelled. */
+    public interface Work<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    /** Background work with no progress reporting. */
+    public interface Job<T> {
+        T run() throws Exception;
+    }
+
+    /** Handed to the work; safe to call from the worker thread. */
+    public interface Progress {
+        /** @param percent 0-100, or -1 for "unknown" */
+        void update(int percent, String message);
+        boolean isCancelled();
+    }
+
+    /** A running task. */
+    public static final class Task<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private volatile boolean cancelled = false;
+
+        /** Asks the work to stop; the success callback will not run. */
+        public void cancel() { cancelled = true; }
+        public boolean isCancelled() { return cancelled; }
+        public CompletableFuture<T> future() { return future; }
+    }
+
+    // =================================================================
+    // RUNNING
+    // =================================================================
+
+    /**
+     * Runs a job in the background.
+     * @param job runs on a worker thread
+     * @param onSuccess runs on the EDT with the result (may be null)
+     * @return the task
+     */
+    public static <T> Task<T> run(Job<T> job, Consumer<T> onSuccess) {
+        return run(job, onSuccess, AsyncTasks::reportError);
+    }
+
+    public static <T> Task<T> run(Job<T> job, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        return submit(progress -> job.run(), NO_PROGRESS_LISTENER, onSuccess, onError);
+    }
+
+    /** Fire-and-forget background work; errors are logged. */
+    public static Task<Void> run(Runnable work) {
+        return run(() -> { work.run(); return null; }, null);
+    }
+
+    /**
+     * Runs a long job behind a modeless progress dialog with a Cancel button.
+     * @param parent window to centre the dialog on (may be null)
+     * @param title
+     * @param work should call progress.update and stop when progress.isCancelled()
+     * @param onSuccess runs on the EDT unless cancelled
+     * @return the task
+     */
+    public static <T> Task<T> runWithProgress(Component parent, String title, Work<T> work, Consumer<T> onSuccess) {
+        ProgressDialog dialog = new ProgressDialog(parent, title);
+        Task<T> task = submit(work, dialog, result -> {
+            dialog.dispose();
+            if (onSuccess != null) onSuccess.accept(result);
+        }, error -> {
+            dialog.dispose();
+            if (!(error instanceof CancellationException)) reportError(error);
+        });
+        dialog.onCancel(task::cancel);
+        dialog.setVisible(true);
+        return task;
+    }
+
+    private static <T> Task<T> submit(Work<T> work, ProgressListener listener,
+                                      Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        Task<T> task = new Task<>();
+        Progress progress = new Progress() {
+            @Override
+            public void update(int percent, String message) {
+                listener.progress(percent, message);
+            }
+
+            @Override
+            public boolean isCancelled() { return task.cancelled; }
+        };
+
+        try {
+            EXECUTOR.execute(() -> {
+                try {
+                    T result = work.run(progress);
+                    if (task.cancelled) throw new CancellationException();
+                    task.future.complete(result);
+                    if (onSuccess != null) SwingUtilities.invokeLater(() -> onSuccess.accept(result));
+                } catch (Throwable t) {
+                    Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                    task.future.completeExceptionally(cause);
+                    if (onError != null) SwingUtilities.invokeLater(() -> onError.accept(cause));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Queue full: report it rather than run the work on the EDT
+            task.future.completeExceptionally(e);
+            if (onError != null) SwingUtilities.invokeLater(() -> onError.accept(e));
+        }
+        return task;
+    }
+
+    // Where Progress.update() calls end up
+    private interface ProgressListener {
+        void progress(int percent, String message);
+    }
+
+    private static final ProgressListener NO_PROGRESS_LISTENER = (percent, message) -> { };
+
+    private static void reportError(Throwable t) {
+        System.err.println("Background task failed: " + t);
+        if (t instanceof CancellationException) return;
+        JOptionPane.showMessageDialog(null, "Operation failed: " + t.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    // =================================================================
+    // PROGRESS DIALOG
+    // =================================================================
+
+    private static final class ProgressDialog extends JDialog implements ProgressListener {
+        private final JProgressBar bar = new JProgressBar(0, 100);
+        private final JLabel label = new JLabel("Working...");
+        private final JButton btnCancel = new JButton("Cancel");
+
+        ProgressDialog(Component parent, String title) {
+            super(parent instanceof Window ? (Window) parent : parent == null ? null : SwingUtilities.getWindowAncestor(parent),
+                    title, ModalityType.MODELESS);
+            setLayout(new BorderLayout(10, 10));
+            ((JComponent) getContentPane()).setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+            bar.setIndeterminate(true);
+            bar.setStringPainted(true);
+            add(label, BorderLayout.NORTH);
+            add(bar, BorderLayout.CENTER);
+            add(btnCancel, BorderLayout.SOUTH);
+            setSize(360, 130);
+            setLocationRelativeTo(parent);
+            setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        }
+
+        void onCancel(Runnable cancel) {
+            btnCancel.addActionListener(e -> {
+                cancel.run();
+                btnCancel.setEnabled(false);
+                label.setText("Cancelling...");
+            });
+        }
+
+        // Called from the worker thread; the UI update is posted to the EDT
+        @Override
+        public void progress(int percent, String message) {
+            SwingUtilities.invokeLater(() -> {
+                if (!btnCancel.isEnabled()) return;
+                bar.setIndeterminate(percent < 0);
+                if (percent >= 0) bar.setValue(percent);
+                if (message != null) label.setText(message);
+            });
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Crash-safe replacement of a whole file (model.csv, sales.dat,
+ * attendance.csv, ...).
+ *
+ * The new content is streamed to a temp file next to the target, forced
+ * to disk, then renamed over the old file in one step. After a crash the
+ * file is either the old snapshot or the new one, never half of each.
+ * Readers that already opened the old file keep reading it undisturbed;
+ * no locking is needed on their side.
+ */
+public final class AtomicFileWriter {
+
+    public interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public interface TextBody {
+        void writeTo(PrintWriter pw) throws IOException;
+    }
+
+    private AtomicFileWriter() { }
+
+    /**
+     * Replaces target with whatever body writes.
+     * @param target
+     * @param body
+     * @throws java.io.IOException if anything fails; the old file is then left untouched
+     */
+    public static void write(Path target, Body body) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path dir = absolute.getParent();
+        Path temp = Files.createTempFile(dir, absolute.getFileName().toString() + ".", ".tmp");
+        try {
+            // 1. Stream the new content into the temp file and force it
+            try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch));
+                body.writeTo(out);
+                out.flush();
+                ch.force(true);
+            }
+            // 2. Swap it in
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // 3. Make the rename itself durable
+            syncDirectory(dir);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Same as write, for UTF-8 text written through a PrintWriter. */
+    public static void writeText(Path target, TextBody body) throws IOException {
+        write(target, out -> {
+            PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            body.writeTo(pw);
+            pw.flush();
+            if (pw.checkError()) throw new IOException("Error writing " + target.getFileName());
+        });
+    }
+
+    public static void writeLines(Path target, Iterable<String> lines) throws IOException {
+        writeText(target, pw -> {
+            for (String line : lines) pw.println(line);
+        });
+    }
+
+    public static void writeString(Path target, String content) throws IOException {
+        write(target, out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void syncDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform (e.g. Windows); the rename is still atomic
+        }
+    }
+}
@@ -1,40 +1,29 @@
 package com.mycompany.aidahtestproject;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 public class AttendanceWriter {
     
     private static final String FILE_NAME = "attendance.csv";
+    private static final String HEADER = "Employee ID,Employee Name,Date,Clock In,Clock Out,Hours Worked";
 
-    public static void saveAttendance(Attendance att) {
-        
-        File file = new File(FILE_NAME);
-        boolean isNewFile = !file.exists() || file.length() == 0;
+    public static CompletableFuture<Long> saveAttendance(Attendance att) {
+        String nl = System.lineSeparator();
 
-        try (FileWriter fw = new FileWriter(file, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter pw = new PrintWriter(bw)) {
-            
-            // 1. Write Header if file is new
-            if (isNewFile) {
-                pw.println("Employee ID,Employee Name,Date,Clock In,Clock Out,Hours Worked");
-            }
-            
-            // 2. Write Data
-            // Format: ID, Name, Date, In, Out, Hours
-            pw.println(att.getEmployeeId() + "," + 
-                       att.getEmployeeName() + "," + 
-                       att.getDateString() + "," +
-                       att.getClockInString() + "," + 
-                       att.getClockOutString() + "," + 
-                       String.format("%.2f", att.getHoursWorked()));
-                       
-        } catch (IOException e) {
-            System.out.println("Error saving attendance: " + e.getMessage());
-        }
+        // Format: ID, Name, Date, In, Out, Hours
+        String line = CsvTokenizer.escape(att.getEmployeeId()) + "," + 
+                      CsvTokenizer.escape(att.getEmployeeName()) + "," + 
+                      att.getDateString() + "," +
+                      att.getClockInString() + "," + 
+                      att.getClockOutString() + "," + 
+                      String.format("%.2f", att.getHoursWorked()) + nl;
+
+        // Header is written by the writer thread if the file is still empty
+        return PersistenceWriter.getInstance()
+                .appendText(Paths.get(FILE_NAME), line, HEADER + nl, null)
+                .whenComplete((offset, error) -> {
+                    if (error != null) System.out.println("Error saving attendance: " + error.getMessage());
+                });
     }
-}
\ No newline at end of file
+}
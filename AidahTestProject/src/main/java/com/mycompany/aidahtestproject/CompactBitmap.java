@@ -0,0 +1,361 @@
+package com.mycompany.aidahtestproject;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints (sale row numbers), roaring style.
+ *
+ * The 32-bit value is split into a 16-bit key and a 16-bit low part.
+ * Each key owns a container of low parts: a sorted char[] while it holds
+ * at most 4096 values, and a 1024-word long[] bitmap once it is denser.
+ * Sparse sets stay small, dense sets stay fast, and AND/OR work one
+ * container pair at a time (word-wise for bitmaps, merge for arrays).
+ */
+public class CompactBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size = 0; // number of containers
+
+    public CompactBitmap() { }
+
+    public static CompactBitmap of(int... values) {
+        CompactBitmap b = new CompactBitmap();
+        for (int v : values) b.add(v);
+        return b;
+    }
+
+    /** Builds a bitmap of row numbers [0, n). */
+    public static CompactBitmap range(int n) {
+        CompactBitmap b = new CompactBitmap();
+        for (int i = 0; i < n; i++) b.add(i);
+        return b;
+    }
+
+    // =================================================================
+    // SINGLE VALUES
+    // =================================================================
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        int i = indexOf(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, key, new ArrayContainer());
+        }
+        containers[i] = containers[i].add((char) value);
+    }
+
+    public void remove(int value) {
+        int i = indexOf((char) (value >>> 16));
+        if (i < 0) return;
+        containers[i] = containers[i].remove((char) value);
+        if (containers[i].cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        }
+    }
+
+    public boolean contains(int value) {
+        int i = indexOf((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    public int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) n += containers[i].cardinality();
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** All values in increasing order. */
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int at = 0;
+        for (int i = 0; i < size; i++) at = containers[i].fill(out, at, keys[i] << 16);
+        return out;
+    }
+
+    // Appends are the common case (row numbers only grow), so check the last key first
+    private int indexOf(char key) {
+        if (size > 0 && keys[size - 1] == key) return size - 1;
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) lo = mid + 1;
+            else if (keys[mid] > key) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private void insertContainer(int at, char key, Container c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(containers, at, containers, at + 1, size - at);
+        keys[at] = key;
+        containers[at] = c;
+        size++;
+    }
+
+    private void appendContainer(char key, Container c) {
+        if (c.cardinality() == 0) return;
+        insertContainer(size, key, c);
+    }
+
+    // =================================================================
+    // SET OPERATIONS
+    // =================================================================
+
+    public static CompactBitmap and(CompactBitmap a, CompactBitmap b) {
+        CompactBitmap out = new CompactBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) i++;
+            else if (a.keys[i] > b.keys[j]) j++;
+            else {
+                out.appendContainer(a.keys[i], a.containers[i].and(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    public static CompactBitmap or(CompactBitmap a, CompactBitmap b) {
+        CompactBitmap out = new CompactBitmap();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if (j >= b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                out.appendContainer(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i >= a.size || a.keys[i] > b.keys[j]) {
+                out.appendContainer(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                out.appendContainer(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    // =================================================================
+    // CONTAINERS
+    // =================================================================
+
+    private abstract static class Container {
+        abstract Container add(char low);
+        abstract Container remove(char low);
+        abstract boolean contains(char low);
+        abstract int cardinality();
+        abstract int fill(int[] out, int at, int high);
+        abstract Container and(Container other);
+        abstract Container or(Container other);
+        abstract Container copy();
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int card;
+
+        ArrayContainer() { this(new char[4], 0); }
+
+        ArrayContainer(char[] values, int card) {
+            this.values = values;
+            this.card = card;
+        }
+
+        @Override
+        Container add(char low) {
+            // Fast path: appending in order
+            if (card > 0 && values[card - 1] == low) return this;
+            int pos = card > 0 && values[card - 1] < low ? card : Arrays.binarySearch(values, 0, card, low);
+            if (pos >= 0 && pos < card) return this; // already present
+            if (pos < 0) pos = -pos - 1;
+            if (card == ARRAY_MAX) return toBitmap().add(low);
+            if (card == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, card * 2));
+            System.arraycopy(values, pos, values, pos + 1, card - pos);
+            values[pos] = low;
+            card++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int pos = Arrays.binarySearch(values, 0, card, low);
+            if (pos < 0) return this;
+            System.arraycopy(values, pos + 1, values, pos, card - pos - 1);
+            card--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, card, low) >= 0;
+        }
+
+        @Override
+        int cardinality() { return card; }
+
+        @Override
+        int fill(int[] out, int at, int high) {
+            for (int k = 0; k < card; k++) out[at++] = high | values[k];
+            return at;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer();
+            for (int k = 0; k < card; k++) b.set(values[k]);
+            return b;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[card];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < card && j < o.card) {
+                    if (values[i] < o.values[j]) i++;
+                    else if (values[i] > o.values[j]) j++;
+                    else { result[n++] = values[i]; i++; j++; }
+                }
+            } else {
+                for (int k = 0; k < card; k++) if (other.contains(values[k])) result[n++] = values[k];
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.or(this);
+            ArrayContainer o = (ArrayContainer) other;
+            char[] result = new char[card + o.card];
+            int i = 0, j = 0, n = 0;
+            while (i < card || j < o.card) {
+                if (j >= o.card || (i < card && values[i] < o.values[j])) result[n++] = values[i++];
+                else if (i >= card || values[i] > o.values[j]) result[n++] = o.values[j++];
+                else { result[n++] = values[i]; i++; j++; }
+            }
+            ArrayContainer merged = new ArrayContainer(result, n);
+            return n > ARRAY_MAX ? merged.toBitmap() : merged;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, card), card);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words = new long[1024];
+        int card;
+
+        void set(char low) {
+            long bit = 1L << low;
+            int w = low >>> 6;
+            if ((words[w] & bit) == 0) {
+                words[w] |= bit;
+                card++;
+            }
+        }
+
+        @Override
+        Container add(char low) {
+            set(low);
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long bit = 1L << low;
+            int w = low >>> 6;
+            if ((words[w] & bit) == 0) return this;
+            words[w] &= ~bit;
+            card--;
+            return card <= ARRAY_MAX ? toArrayContainer() : this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        int cardinality() { return card; }
+
+        @Override
+        int fill(int[] out, int at, int high) {
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    out[at++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return at;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            BitmapContainer o = (BitmapContainer) other;
+            BitmapContainer result = new BitmapContainer();
+            for (int w = 0; w < words.length; w++) {
+                result.words[w] = words[w] & o.words[w];
+                result.card += Long.bitCount(result.words[w]);
+            }
+            return result.card <= ARRAY_MAX ? result.toArrayContainer() : result;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int k = 0; k < o.card; k++) result.set(o.values[k]);
+                return result;
+            }
+            BitmapContainer o = (BitmapContainer) other;
+            result.card = 0;
+            for (int w = 0; w < words.length; w++) {
+                result.words[w] |= o.words[w];
+                result.card += Long.bitCount(result.words[w]);
+            }
+            return result;
+        }
+
+        ArrayContainer toArrayContainer() {
+            char[] values = new char[card];
+            int n = 0;
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer b = new BitmapContainer();
+            System.arraycopy(words, 0, b.words, 0, words.length);
+            b.card = card;
+            return b;
+        }
+    }
+}
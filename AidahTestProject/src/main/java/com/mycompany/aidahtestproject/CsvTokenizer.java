@@ -0,0 +1,292 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Shared RFC 4180 CSV reader used by every loader in the app.
+ *
+ * The whole file is decoded once into a char array. next() then finds
+ * the field boundaries of the next row and keeps them as offsets, so
+ * no String or String[] is created per line. Numbers and dates are
+ * parsed straight from the buffer; getString() is the only call that
+ * allocates. Quoted fields (with commas, "" escapes or line breaks)
+ * and a leading UTF-8 BOM are handled.
+ */
+public final class CsvTokenizer {
+
+    private static final char BOM = '\uFEFF';
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private final char[] buf;
+    private final int limit;
+    private int pos;
+
+    // Field boundaries of the current row (content only, quotes excluded)
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int count = 0;
+    private int rowStart = 0, rowEnd = 0;
+
+    public CsvTokenizer(CharBuffer chars) {
+        if (chars.hasArray()) {
+            this.buf = chars.array();
+            this.pos = chars.arrayOffset() + chars.position();
+            this.limit = chars.arrayOffset() + chars.limit();
+        } else {
+            this.buf = new char[chars.remaining()];
+            chars.get(buf);
+            this.pos = 0;
+            this.limit = buf.length;
+        }
+        if (pos < limit && buf[pos] == BOM) pos++;
+    }
+
+    /** Decodes UTF-8 bytes (e.g. a mapped file) and tokenizes them. */
+    public CsvTokenizer(ByteBuffer utf8) {
+        this(StandardCharsets.UTF_8.decode(utf8));
+    }
+
+    public static CsvTokenizer fromFile(File file) throws IOException {
+        return new CsvTokenizer(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    // =================================================================
+    // ROWS
+    // =================================================================
+
+    /**
+     * Moves to the next row. Blank lines are skipped.
+     * @return false at end of input
+     */
+    public boolean next() {
+        while (pos < limit) {
+            rowStart = pos;
+            count = 0;
+            readRow();
+            rowEnd = pos;
+            skipLineBreak();
+            if (!isBlankRow()) return true;
+        }
+        count = 0;
+        return false;
+    }
+
+    private void readRow() {
+        while (true) {
+            if (count == starts.length) grow();
+            if (pos < limit && buf[pos] == '"') {
+                // Quoted field: runs to the closing quote ("" is an escaped quote)
+                pos++;
+                int start = pos;
+                while (pos < limit) {
+                    if (buf[pos] == '"') {
+                        if (pos + 1 < limit && buf[pos + 1] == '"') { pos += 2; continue; }
+                        break;
+                    }
+                    pos++;
+                }
+                addField(start, pos, true);
+                if (pos < limit) pos++; // closing quote
+                while (pos < limit && buf[pos] != ',' && buf[pos] != '\n' && buf[pos] != '\r') pos++;
+            } else {
+                int start = pos;
+                while (pos < limit && buf[pos] != ',' && buf[pos] != '\n' && buf[pos] != '\r') pos++;
+                addField(start, pos, false);
+            }
+            if (pos < limit && buf[pos] == ',') { pos++; continue; }
+            return;
+        }
+    }
+
+    private void addField(int start, int end, boolean isQuoted) {
+        if (!isQuoted) {
+            // Unquoted fields are trimmed, matching the old split(",") + trim() behaviour
+            while (start < end && buf[start] <= ' ') start++;
+            while (end > start && buf[end - 1] <= ' ') end--;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        quoted[count] = isQuoted;
+        count++;
+    }
+
+    private void skipLineBreak() {
+        if (pos < limit && buf[pos] == '\r') pos++;
+        if (pos < limit && buf[pos] == '\n') pos++;
+    }
+
+    private boolean isBlankRow() {
+        return count == 1 && !quoted[0] && starts[0] == ends[0];
+    }
+
+    private void grow() {
+        starts = Arrays.copyOf(starts, count * 2);
+        ends = Arrays.copyOf(ends, count * 2);
+        quoted = Arrays.copyOf(quoted, count * 2);
+    }
+
+    // =================================================================
+    // FIELDS
+    // =================================================================
+
+    public int fieldCount() { return count; }
+    public int start(int i) { return starts[i]; }
+    public int end(int i) { return ends[i]; }
+    public boolean isEmpty(int i) { return starts[i] == ends[i]; }
+
+    /** The current row as text (for error messages). */
+    public String rowText() {
+        return new String(buf, rowStart, rowEnd - rowStart);
+    }
+
+    public String getString(int i) {
+        String s = new String(buf, starts[i], ends[i] - starts[i]);
+        return quoted[i] ? s.replace("\"\"", "\"") : s;
+    }
+
+    /** Compares a field with a String without allocating. */
+    public boolean fieldEquals(int i, String s) {
+        // Rare case: quoted field with "" escapes needs unescaping first
+        if (quoted[i] && indexOfQuote(i) >= 0) return getString(i).equals(s);
+
+        int len = ends[i] - starts[i];
+        if (len != s.length()) return false;
+        for (int k = 0; k < len; k++) {
+            if (buf[starts[i] + k] != s.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private int indexOfQuote(int i) {
+        for (int k = starts[i]; k < ends[i]; k++) if (buf[k] == '"') return k;
+        return -1;
+    }
+
+    public int getInt(int i) {
+        long v = parseLong(starts[i], ends[i]);
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) throw badNumber(i);
+        return (int) v;
+    }
+
+    public long getLong(int i) {
+        return parseLong(starts[i], ends[i]);
+    }
+
+    // Accumulates negatively (as Long.parseLong does) so Long.MIN_VALUE parses and overflow is caught
+    private long parseLong(int from, int to) {
+        if (from >= to) throw new NumberFormatException("empty field");
+        boolean negative = buf[from] == '-';
+        int k = (negative || buf[from] == '+') ? from + 1 : from;
+        if (k >= to) throw new NumberFormatException(new String(buf, from, to - from));
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long v = 0;
+        for (; k < to; k++) {
+            char ch = buf[k];
+            if (ch < '0' || ch > '9') throw new NumberFormatException(new String(buf, from, to - from));
+            int digit = ch - '0';
+            if (v < limit / 10 || v * 10 < limit + digit) {
+                throw new NumberFormatException("Out of range: " + new String(buf, from, to - from));
+            }
+            v = v * 10 - digit;
+        }
+        return negative ? v : -v;
+    }
+
+    /**
+     * Parses plain decimals ("399", "-12.50") in place. Anything more
+     * exotic (exponents, very long digit strings) falls back to
+     * Double.parseDouble.
+     */
+    public double getDouble(int i) {
+        int from = starts[i], to = ends[i];
+        if (from >= to) throw new NumberFormatException("empty field");
+        boolean negative = buf[from] == '-';
+        int k = (negative || buf[from] == '+') ? from + 1 : from;
+
+        long mantissa = 0;
+        int digits = 0, fractionDigits = 0;
+        boolean seenDot = false;
+        for (; k < to; k++) {
+            char ch = buf[k];
+            if (ch >= '0' && ch <= '9') {
+                mantissa = mantissa * 10 + (ch - '0');
+                digits++;
+                if (seenDot) fractionDigits++;
+            } else if (ch == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return Double.parseDouble(getString(i));
+            }
+        }
+        if (digits == 0) throw badNumber(i);
+        if (digits > 15) return Double.parseDouble(getString(i));
+
+        double v = mantissa;
+        if (fractionDigits > 0) v /= POW10[fractionDigits];
+        return negative ? -v : v;
+    }
+
+    private static final double[] POW10 = {
+        1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    /**
+     * Parses "yyyy-MM-dd", "yyyy-MM-dd HH:mm" or "yyyy-MM-dd HH:mm:ss"
+     * into wall-clock epoch millis (same encoding as SalesJournal).
+     */
+    public long getDateTimeMillis(int i) {
+        int s = starts[i], len = ends[i] - s;
+        if (len < 10 || buf[s + 4] != '-' || buf[s + 7] != '-') throw badNumber(i);
+        int year = digits(s, 4), month = digits(s + 5, 2), day = digits(s + 8, 2);
+        long millis = daysFromCivil(year, month, day) * DAY_MS;
+        if (len >= 16) {
+            millis += digits(s + 11, 2) * 3_600_000L + digits(s + 14, 2) * 60_000L;
+            if (len >= 19) millis += digits(s + 17, 2) * 1000L;
+        }
+        return millis;
+    }
+
+    private int digits(int at, int n) {
+        int v = 0;
+        for (int k = at; k < at + n; k++) {
+            char ch = buf[k];
+            if (ch < '0' || ch > '9') throw new NumberFormatException("bad date near: " + new String(buf, at, n));
+            v = v * 10 + (ch - '0');
+        }
+        return v;
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's algorithm)
+    private static long daysFromCivil(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private NumberFormatException badNumber(int i) {
+        return new NumberFormatException("Invalid value: " + getString(i));
+    }
+
+    // =================================================================
+    // WRITING HELPER
+    // =================================================================
+
+    /** Quotes a value for CSV output if it contains a comma, quote or line break. */
+    public static String escape(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
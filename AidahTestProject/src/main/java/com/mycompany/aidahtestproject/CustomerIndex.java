@@ -0,0 +1,244 @@
+package com.mycompany.aidahtestproject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Search index over customer names in the SalesRepository.
+ *
+ * Names are normalised (lower case, single spaces) and every distinct
+ * name gets a small customer number with the list of sale rows it
+ * appears on. On top of the distinct names sit two indexes:
+ *   - a sorted token map (prefix tree) for short queries: "al" finds
+ *     every customer with a word starting with "al";
+ *   - trigram postings for queries of 3+ characters: the candidates are
+ *     the customers holding all of the query's trigrams, which are then
+ *     checked with contains().
+ * Both only grow, so add() is cheap and the repository calls it for each
+ * sale it reads; an edited sale just moves its row to the new name with
+ * move(). Searches never touch the sales file.
+ */
+public class CustomerIndex {
+
+    private final Map<String, Integer> customerByName = new HashMap<>();
+    private final Map<String, Integer> customerByRawName = new HashMap<>(); // skips normalize() for repeats
+    private final List<String> names = new ArrayList<>();
+    private final List<IntList> rowsByCustomer = new ArrayList<>();
+    private final NavigableMap<String, IntList> customersByToken = new TreeMap<>();
+    private final Map<Long, IntList> customersByTrigram = new HashMap<>();
+    private int rowCount = 0;
+
+    /**
+     * Indexes one sale row. Rows must be added in increasing order.
+     * @param row
+     * @param customerName
+     */
+    public void add(int row, String customerName) {
+        rowsByCustomer.get(customerId(customerName)).add(row);
+        rowCount = row + 1;
+    }
+
+    /**
+     * Files an already indexed row under a new customer name (after an edit).
+     * @param row
+     * @param oldName the name it was added with
+     * @param newName
+     */
+    public void move(int row, String oldName, String newName) {
+        int from = customerId(oldName), to = customerId(newName);
+        if (from == to) return;
+        rowsByCustomer.get(from).remove(row);
+        rowsByCustomer.get(to).insert(row);
+    }
+
+    private int customerId(String customerName) {
+        Integer id = customerByRawName.get(customerName);
+        if (id == null) {
+            String name = normalize(customerName);
+            id = customerByName.get(name);
+            if (id == null) {
+                id = names.size();
+                customerByName.put(name, id);
+                names.add(name);
+                rowsByCustomer.add(new IntList());
+                indexName(id, name);
+            }
+            customerByRawName.put(customerName, id);
+        }
+        return id;
+    }
+
+    private void indexName(int id, String name) {
+        for (String token : name.split(" ")) {
+            if (token.isEmpty()) continue;
+            IntList list = customersByToken.computeIfAbsent(token, k -> new IntList());
+            if (list.last() != id) list.add(id);
+        }
+        for (int i = 0; i + 3 <= name.length(); i++) {
+            IntList list = customersByTrigram.computeIfAbsent(trigram(name, i), k -> new IntList());
+            if (list.last() != id) list.add(id);
+        }
+    }
+
+    public void clear() {
+        customerByName.clear();
+        customerByRawName.clear();
+        names.clear();
+        rowsByCustomer.clear();
+        customersByToken.clear();
+        customersByTrigram.clear();
+        rowCount = 0;
+    }
+
+    // =================================================================
+    // QUERIES (return sorted sale row numbers)
+    // =================================================================
+
+    /**
+     * Customer search as typed by a user. Empty matches every sale;
+     * 1-2 characters match the start of any word in the name; 3 or more
+     * match anywhere in the name. Case-insensitive.
+     * @param query
+     * @return
+     */
+    public int[] search(String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) {
+            int[] all = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) all[i] = i;
+            return all;
+        }
+        return rowsOf(q.length() < 3 ? byPrefix(q) : bySubstring(q));
+    }
+
+    /**
+     * The search() rules applied to one name, for checking a single new
+     * sale against a query without searching the index.
+     * @param customerName
+     * @param query
+     * @return
+     */
+    public static boolean matches(String customerName, String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) return true;
+        String name = normalize(customerName);
+        if (q.length() >= 3) return name.contains(q);
+        for (String token : name.split(" ")) {
+            if (token.startsWith(q)) return true;
+        }
+        return false;
+    }
+
+    /** Sales whose customer name equals the given one, ignoring case and extra spaces. */
+    public int[] exact(String customerName) {
+        Integer id = customerByName.get(normalize(customerName));
+        return id == null ? new int[0] : rowsByCustomer.get(id).toArray();
+    }
+
+    private IntList byPrefix(String prefix) {
+        IntList hits = new IntList();
+        boolean[] seen = new boolean[names.size()];
+        // All tokens in [prefix, prefix + '\uffff') start with prefix
+        for (IntList ids : customersByToken.subMap(prefix, true, prefix + '\uffff', false).values()) {
+            for (int i = 0; i < ids.size; i++) {
+                int id = ids.data[i];
+                if (!seen[id]) { seen[id] = true; hits.add(id); }
+            }
+        }
+        return hits;
+    }
+
+    private IntList bySubstring(String q) {
+        // 1. Posting lists of every trigram in the query, shortest first
+        List<IntList> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            IntList list = customersByTrigram.get(trigram(q, i));
+            if (list == null) return new IntList();
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        // 2. Intersect (lists are sorted by customer number), then confirm
+        IntList hits = new IntList();
+        IntList first = lists.get(0);
+        outer:
+        for (int i = 0; i < first.size; i++) {
+            int id = first.data[i];
+            for (int k = 1; k < lists.size(); k++) {
+                IntList other = lists.get(k);
+                if (Arrays.binarySearch(other.data, 0, other.size, id) < 0) continue outer;
+            }
+            if (names.get(id).contains(q)) hits.add(id);
+        }
+        return hits;
+    }
+
+    private int[] rowsOf(IntList customers) {
+        int total = 0;
+        for (int i = 0; i < customers.size; i++) total += rowsByCustomer.get(customers.data[i]).size;
+        int[] rows = new int[total];
+        int n = 0;
+        for (int i = 0; i < customers.size; i++) {
+            IntList r = rowsByCustomer.get(customers.data[i]);
+            System.arraycopy(r.data, 0, rows, n, r.size);
+            n += r.size;
+        }
+        if (customers.size > 1) Arrays.sort(rows);
+        return rows;
+    }
+
+    // =================================================================
+    // HELPERS
+    // =================================================================
+
+    static String normalize(String s) {
+        if (s == null) return "";
+        return s.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static long trigram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+
+    /** Growable int array (avoids boxing in the posting lists). */
+    private static class IntList {
+        int[] data = new int[4];
+        int size = 0;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        // Keeps the list sorted
+        void insert(int v) {
+            int pos = Arrays.binarySearch(data, 0, size, v);
+            if (pos >= 0) return;
+            pos = -pos - 1;
+            add(v);
+            System.arraycopy(data, pos, data, pos + 1, size - 1 - pos);
+            data[pos] = v;
+        }
+
+        void remove(int v) {
+            int pos = Arrays.binarySearch(data, 0, size, v);
+            if (pos < 0) return;
+            System.arraycopy(data, pos + 1, data, pos, size - pos - 1);
+            size--;
+        }
+
+        int last() {
+            return size == 0 ? -1 : data[size - 1];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package com.mycompany.aidahtestproject;
 
 import java.util.ArrayList;
-import java.util.stream.Collectors;
 
 public final class DataManager {
     // Shared data lists
+    private InventoryMatrix matrix;
     private ArrayList<Model> inventory;
-    private ArrayList<Sale> salesHistory;
+    private SalesRepository salesHistory;
     private ArrayList<Employee> employees;
 
     public DataManager() {
@@ -18,31 +18,33 @@ public final class DataManager {
      * Re-reads all CSV files. Use this to sync the UI with the files.
      */
     public void refreshAllData() {
-        this.inventory = ModelReader.loadModels();
-        this.salesHistory = SaleReader.loadSales();
+        // Same in-memory inventory as the sales windows, so updates never overwrite each other
+        this.matrix = InventoryService.getInstance().getMatrix();
+        this.inventory = matrix.models();
+        this.salesHistory = SalesRepository.getInstance();
         // Assuming you have an EmployeeReader, otherwise initialize empty
         this.employees = new ArrayList<>(); 
     }
 
     // --- SEARCH METHODS ---
 
+    /**
+     * Case-insensitive lookup through the matrix's hash index (no list scan).
+     * @param id
+     * @return the model, or null if not found
+     */
     public Model findModelById(String id) {
-        return inventory.stream()
-                .filter(m -> m.getModelId().equalsIgnoreCase(id))
-                .findFirst()
-                .orElse(null);
+        return matrix.find(id);
     }
 
     public ArrayList<Sale> getSalesByCustomer(String customerName) {
-        return salesHistory.stream()
-                .filter(s -> s.getCustomerName().equalsIgnoreCase(customerName))
-                .collect(Collectors.toCollection(ArrayList::new));
+        return salesHistory.toSales(salesHistory.byCustomerExact(customerName));
     }
 
     // --- PERSISTENCE METHODS ---
 
     /**
-     * Updates a model's stock and immediately saves to CSV.
+     * Updates a model's stock and records the change in the stock journal.
      * @param modelId
      * @param outletIndex
      * @param newQty
@@ -50,21 +52,18 @@ public final class DataManager {
      */
     public boolean updateStock(String modelId, int outletIndex, int newQty) {
         Model m = findModelById(modelId);
-        if (m != null) {
-            m.getStockQuantity()[outletIndex] = newQty;
-            saveInventory();
-            return true;
-        }
-        return false;
+        if (m == null || outletIndex < 0 || outletIndex >= m.getOutletCount()) return false;
+        return InventoryService.getInstance().setStock(modelId, outletIndex, newQty);
     }
 
     public void saveInventory() {
-        // Reuse your SalesSystem.updateStockFile logic here
-        SalesSystemGUI.updateStockFile(); 
+        // Fold the journal into model.csv from the shared inventory
+        InventoryService.getInstance().checkpoint();
     }
 
     // --- GETTERS ---
     public ArrayList<Model> getInventory() { return inventory; }
-    public ArrayList<Sale> getSalesHistory() { return salesHistory; }
+    public InventoryMatrix getMatrix() { return matrix; }
+    public ArrayList<Sale> getSalesHistory() { return salesHistory.all(); }
 }
 
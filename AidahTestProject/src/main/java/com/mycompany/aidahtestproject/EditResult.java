@@ -0,0 +1,15 @@
+package com.mycompany.aidahtestproject;
+
+/**
+ * Outcome of a compare-and-set edit against the live inventory or sales.
+ */
+public enum EditResult {
+    /** The edit was applied and recorded. */
+    APPLIED,
+    /** The record changed since it was read; nothing was written. */
+    CONFLICT,
+    /** The record no longer exists. */
+    NOT_FOUND,
+    /** The edit could not be written to disk. */
+    FAILED
+}
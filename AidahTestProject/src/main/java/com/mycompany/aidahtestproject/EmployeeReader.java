@@ -3,7 +3,6 @@ package com.mycompany.aidahtestproject;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 public class EmployeeReader {
     public static ArrayList<Employee> loadEmployees() {
@@ -16,28 +15,23 @@ public class EmployeeReader {
             return employees;
         }
 
-        try (Scanner sc = new Scanner(file)) {
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine().trim();
-                
-                // Skip empty lines
-                if (line.isEmpty()) continue;
+        try {
+            // Blank lines, the BOM and trimming are handled by the tokenizer
+            CsvTokenizer csv = CsvTokenizer.fromFile(file);
+            while (csv.next()) {
+                // Ensure we have all 4 columns before creating the object
+                if (csv.fieldCount() < 4 || csv.fieldEquals(0, "EmployeeID")) continue;
 
-                String[] data = line.split(",");
+                String EmployeeId = csv.getString(0);
+                String EmployeeName = csv.getString(1);
+                String Role = csv.getString(2);
+                String Password = csv.getString(3);
                 
-                // Ensure we have all 4 columns before creating the object
-                if (data.length >= 4) {
-                    // .trim() is the secret to fixing "Invalid Login" errors!
-                    String EmployeeId = data[0].trim();
-                    String EmployeeName = data[1].trim();
-                    String Role = data[2].trim();
-                    String Password = data[3].trim();
-                    
-                    Employee emp = new Employee(EmployeeId, EmployeeName, Role, Password);
-                    employees.add(emp);
-                }
+                Employee emp = new Employee(EmployeeId, EmployeeName, Role, Password);
+                employees.add(emp);
             }
         } catch (IOException e) {
+            System.err.println("Error reading employee.csv: " + e.getMessage());
         }
         return employees;
     } 
@@ -0,0 +1,216 @@
+package com.mycompany.aidahtestproject;
+
+import javax.swing.*;
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * In-process change events, so open windows can update the rows that
+ * changed instead of reloading the CSV/journal files.
+ *
+ * publish() may be called from any thread and never blocks: the event is
+ * added to a lock-free queue and, if no delivery is pending yet, a single
+ * invokeLater is posted. That delivery drains everything queued so far,
+ * so a burst (a stock movement batch, another terminal's journal being
+ * replayed) reaches each view as one list in one EDT tick. Within a batch
+ * later events replace earlier ones with the same key (e.g. several
+ * StockChanged for one model and outlet become one).
+ *
+ * Handlers always run on the EDT and may touch Swing directly. Events
+ * carry what changed, not the new values: views read those from the live
+ * stores (InventoryService, SalesRepository), which are already updated.
+ *
+ *   EventBus.subscribe(this, EventBus.StockChanged.class, events -> ...);
+ */
+public final class EventBus {
+
+    private static final List<Subscriber<?>> subscribers = new CopyOnWriteArrayList<>();
+    private static final ConcurrentLinkedQueue<Event> pending = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean deliveryPosted = new AtomicBoolean();
+
+    private EventBus() { }
+
+    // =================================================================
+    // EVENTS
+    // =================================================================
+
+    /** Base of all events. */
+    public abstract static class Event {
+        // Events with equal keys are merged within one delivery (null = never merged)
+        Object coalesceKey() { return null; }
+    }
+
+    /**
+     * Stock or price of a model changed (a sale, stock movement, edit or
+     * another terminal's journal). outlet is the column, or ALL_OUTLETS for
+     * the whole row (price, new model). modelId null means the whole
+     * inventory was reloaded.
+     */
+    public static final class StockChanged extends Event {
+        public static final int ALL_OUTLETS = -1;
+        public final String modelId;
+        public final int outlet;
+
+        public StockChanged(String modelId, int outlet) {
+            this.modelId = modelId;
+            this.outlet = outlet;
+        }
+
+        public boolean isReload() { return modelId == null; }
+
+        @Override
+        Object coalesceKey() {
+            return isReload() ? "*" : modelId.toLowerCase(java.util.Locale.ROOT) + "|" + outlet;
+        }
+    }
+
+    /** A new sale is in sales.dat. */
+    public static final class SaleRecorded extends Event {
+        public final Sale sale;
+
+        public SaleRecorded(Sale sale) { this.sale = sale; }
+    }
+
+    /** An existing sale (matched by reference number) was edited. */
+    public static final class SaleEdited extends Event {
+        public final String referenceNo;
+        public final Sale sale;
+
+        public SaleEdited(String referenceNo, Sale sale) {
+            this.referenceNo = referenceNo;
+            this.sale = sale;
+        }
+
+        @Override
+        Object coalesceKey() { return referenceNo; }
+    }
+
+    /** An employee clocked in. */
+    public static final class ClockIn extends Event {
+        public final String employeeId;
+        public final String time;
+
+        public ClockIn(String employeeId, String time) {
+            this.employeeId = employeeId;
+            this.time = time;
+        }
+    }
+
+    /** An employee clocked out. */
+    public static final class ClockOut extends Event {
+        public final String employeeId;
+        public final double hoursWorked;
+
+        public ClockOut(String employeeId, double hoursWorked) {
+            this.employeeId = employeeId;
+            this.hoursWorked = hoursWorked;
+        }
+    }
+
+    // =================================================================
+    // PUBLISH / SUBSCRIBE
+    // =================================================================
+
+    /** A registered handler; close() to stop receiving events. */
+    public static final class Subscriber<E extends Event> implements AutoCloseable {
+        private final Class<E> type;
+        private final Consumer<List<E>> handler;
+
+        private Subscriber(Class<E> type, Consumer<List<E>> handler) {
+            this.type = type;
+            this.handler = handler;
+        }
+
+        private void deliver(List<Event> batch) {
+            List<E> mine = new ArrayList<>();
+            for (Event e : batch) {
+                if (type.isInstance(e)) mine.add(type.cast(e));
+            }
+            if (mine.isEmpty()) return;
+            try {
+                handler.accept(mine);
+            } catch (RuntimeException ex) {
+                // One broken view must not stop the others hearing about the change
+                System.err.println("Event handler failed: " + ex);
+            }
+        }
+
+        @Override
+        public void close() { subscribers.remove(this); }
+    }
+
+    /**
+     * Queues an event for delivery on the EDT. Safe from any thread.
+     * @param event
+     */
+    public static void publish(Event event) {
+        pending.add(event);
+        if (deliveryPosted.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(EventBus::deliver);
+        }
+    }
+
+    /**
+     * @param type events of this class (and subclasses) are delivered
+     * @param handler runs on the EDT with every matching event of one tick
+     * @return the subscription
+     */
+    public static <E extends Event> Subscriber<E> subscribe(Class<E> type, Consumer<List<E>> handler) {
+        Subscriber<E> s = new Subscriber<>(type, handler);
+        subscribers.add(s);
+        return s;
+    }
+
+    /**
+     * Subscribes for as long as a window is open. Call it from the window's
+     * constructor (handlers must then cope with data still loading): a
+     * window disposed before a later call never reports being closed
+     * again, so that subscription would never end.
+     * @param owner unsubscribed when it is closed or disposed
+     * @param type
+     * @param handler
+     * @return the subscription
+     */
+    public static <E extends Event> Subscriber<E> subscribe(Window owner, Class<E> type, Consumer<List<E>> handler) {
+        Subscriber<E> s = subscribe(type, handler);
+        owner.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) { s.close(); }
+        });
+        return s;
+    }
+
+    // Runs on the EDT: one pass per posted delivery
+    private static void deliver() {
+        // Cleared before draining: an event published from here on posts a new delivery
+        deliveryPosted.set(false);
+
+        Map<Object, Event> batch = new LinkedHashMap<>();
+        Event e;
+        while ((e = pending.poll()) != null) {
+            Object key = e.coalesceKey();
+            if (key == null) {
+                batch.put(e, e); // identity: never merged
+            } else {
+                // The latest one wins and moves to the end, keeping the order of changes
+                key = Arrays.asList(e.getClass(), key);
+                batch.remove(key);
+                batch.put(key, e);
+            }
+        }
+        if (batch.isEmpty()) return;
+
+        List<Event> events = new ArrayList<>(batch.values());
+        for (Subscriber<?> s : subscribers) s.deliver(events);
+    }
+}
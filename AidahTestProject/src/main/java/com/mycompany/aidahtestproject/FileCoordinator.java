@@ -0,0 +1,519 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Coordinates several copies of the app (counter terminals, back office)
+ * that share one data directory.
+ *
+ * Locks: each resource (the stock files, sales.dat, ...) is one byte of
+ * goldenhour.lock, locked with FileChannel.lock() - shared for readers,
+ * exclusive for writers - so any number of processes can read while one
+ * writes. The OS lock belongs to the whole JVM, so every resource also
+ * has an in-JVM ReentrantReadWriteLock taken first: threads queue there,
+ * and the file lock is only requested by the first reader or the writer.
+ * Locks are reentrant but cannot be upgraded from shared to exclusive.
+ *
+ *   boolean ok = FileCoordinator.withExclusive(FileCoordinator.STOCK, () -> {
+ *       ... append / rewrite ...
+ *   });
+ *
+ * If goldenhour.lock cannot be locked (e.g. a read-only share) taking a
+ * lock fails, since terminals would otherwise overwrite each other's
+ * records unnoticed. -Dgoldenhour.singleTerminal=true runs with in-JVM
+ * locks only, for a data directory nobody else uses.
+ *
+ * Writer role: background upkeep that only one process should do (folding
+ * the stock journal into model.csv) goes to the holder of writer.lease.
+ * The holder bumps a counter in the file every HEARTBEAT_MS; the others
+ * take over if the counter stops moving for LEASE_TIMEOUT_MS of their own
+ * time, so clocks on different machines do not have to agree.
+ *
+ * Terminal numbers (TerminalIdentity) are claimed as bytes past the
+ * resource regions, held until the process exits, so two running copies
+ * in one directory cannot both use the same number.
+ *
+ * Every wait for a lock is timed; see metrics() / report().
+ */
+public final class FileCoordinator {
+
+    /** model.csv, stock.journal and stock.checkpoint. */
+    public static final String STOCK = "stock";
+    /** sales.dat (the name matches the file so PersistenceWriter can use it). */
+    public static final String SALES = SalesJournal.FILE_NAME;
+    private static final String LEASE = "lease";
+
+    private static final String LOCK_FILE = "goldenhour.lock";
+    private static final String LEASE_FILE = "writer.lease";
+    private static final int REGIONS = 64;
+    private static final long MAX_BACKOFF_MS = 16;
+    private static final long HEARTBEAT_MS = Long.getLong("goldenhour.heartbeatMs", 5000);
+    private static final long LEASE_TIMEOUT_MS = HEARTBEAT_MS * 3;
+    private static final boolean SINGLE_TERMINAL = Boolean.getBoolean("goldenhour.singleTerminal");
+
+    private static final List<FileLock> terminalClaims = new ArrayList<>(); // held for the process lifetime
+    private static final Map<String, Region> regions = new ConcurrentHashMap<>();
+    private static final Map<Integer, Region> byPosition = new ConcurrentHashMap<>();
+    private static FileChannel lockChannel;
+    private static volatile String osLockProblem; // set once cross-process locking has failed
+
+    // Writer lease
+    private static final String OWNER_ID = (ProcessHandle.current().pid() + "@"
+            + System.getenv().getOrDefault("COMPUTERNAME", System.getenv().getOrDefault("HOSTNAME", "localhost"))
+            + "/" + UUID.randomUUID().toString().substring(0, 8)).replace(' ', '_');
+    private static final List<Runnable> writerTasks = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService heartbeat;
+    private static volatile boolean writer = false;
+    private static volatile String leaseHolder = "";
+    private static long leaseCounter = -1;
+    private static long leaseSeenAt = 0;
+
+    private FileCoordinator() { }
+
+    /** A held lock; close() releases it. */
+    public static final class Lock implements AutoCloseable {
+        private final Region region;
+        private final boolean shared;
+        private final boolean heldOsLock;
+        private boolean closed = false;
+
+        private Lock(Region region, boolean shared, boolean heldOsLock) {
+            this.region = region;
+            this.shared = shared;
+            this.heldOsLock = heldOsLock;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (shared) region.releaseShared(heldOsLock);
+            else region.releaseExclusive();
+        }
+    }
+
+    /** Work done under a lock. */
+    @FunctionalInterface
+    public interface Body<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /** Work done under a lock that returns nothing. */
+    @FunctionalInterface
+    public interface Action<E extends Exception> {
+        void run() throws E;
+    }
+
+    /** Lock wait figures for one resource since start-up. */
+    public static final class Metrics {
+        public final String resource;
+        public final long sharedCount;
+        public final long exclusiveCount;
+        public final long contended;      // acquisitions that waited over 1 ms
+        public final long totalWaitNanos;
+        public final long maxWaitNanos;
+
+        Metrics(String resource, Region r) {
+            this.resource = resource;
+            this.sharedCount = r.sharedCount.get();
+            this.exclusiveCount = r.exclusiveCount.get();
+            this.contended = r.contended.get();
+            this.totalWaitNanos = r.totalWaitNanos.get();
+            this.maxWaitNanos = r.maxWaitNanos.get();
+        }
+
+        public double averageWaitMillis() {
+            long n = sharedCount + exclusiveCount;
+            return n == 0 ? 0 : totalWaitNanos / 1e6 / n;
+        }
+    }
+
+    // =================================================================
+    // LOCKING
+    // =================================================================
+
+    /**
+     * Waits for a shared (read) lock on a resource, in this JVM and across processes.
+     * @param resource e.g. STOCK or SALES
+     * @return the lock; use try-with-resources
+     */
+    public static Lock shared(String resource) {
+        return region(resource).acquireShared();
+    }
+
+    /**
+     * Waits for the exclusive (write) lock on a resource.
+     * @param resource e.g. STOCK or SALES
+     * @return the lock; use try-with-resources
+     */
+    public static Lock exclusive(String resource) {
+        return region(resource).acquireExclusive();
+    }
+
+    /**
+     * Runs body holding the shared lock on a resource.
+     * @param resource
+     * @param body
+     * @return what body returns
+     * @throws E whatever body throws
+     */
+    public static <T, E extends Exception> T withShared(String resource, Body<T, E> body) throws E {
+        Lock lock = shared(resource);
+        try {
+            return body.run();
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Runs body holding the exclusive lock on a resource.
+     * @param resource
+     * @param body
+     * @return what body returns
+     * @throws E whatever body throws
+     */
+    public static <T, E extends Exception> T withExclusive(String resource, Body<T, E> body) throws E {
+        Lock lock = exclusive(resource);
+        try {
+            return body.run();
+        } finally {
+            lock.close();
+        }
+    }
+
+    public static <E extends Exception> void runShared(String resource, Action<E> body) throws E {
+        withShared(resource, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    public static <E extends Exception> void runExclusive(String resource, Action<E> body) throws E {
+        withExclusive(resource, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    // Names that hash to the same byte share one Region, so this JVM never
+    // asks the OS for two overlapping locks
+    private static Region region(String resource) {
+        return regions.computeIfAbsent(resource, name -> {
+            int position;
+            switch (name) {
+                case STOCK: position = 0; break;
+                case SALES: position = 1; break;
+                case LEASE: position = 2; break;
+                default: position = 8 + Math.floorMod(name.hashCode(), REGIONS - 8);
+            }
+            return byPosition.computeIfAbsent(position, Region::new);
+        });
+    }
+
+    private static synchronized FileChannel lockChannel() throws IOException {
+        if (lockChannel == null || !lockChannel.isOpen()) {
+            lockChannel = FileChannel.open(Paths.get(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return lockChannel;
+    }
+
+    private static final class Region {
+        private final int position;
+        private final ReentrantReadWriteLock jvmLock = new ReentrantReadWriteLock(true);
+        private FileLock osLock;   // guarded by this
+        private int osReaders = 0; // readers in this JVM sharing osLock
+
+        private final AtomicLong sharedCount = new AtomicLong();
+        private final AtomicLong exclusiveCount = new AtomicLong();
+        private final AtomicLong contended = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        Region(int position) {
+            this.position = position;
+        }
+
+        Lock acquireShared() {
+            long start = System.nanoTime();
+            jvmLock.readLock().lock();
+            // Under our own exclusive lock the file is already ours
+            boolean needOs = !jvmLock.isWriteLockedByCurrentThread();
+            if (needOs) {
+                synchronized (this) {
+                    try {
+                        if (osReaders == 0) osLock = lockOs(true);
+                    } catch (RuntimeException e) {
+                        jvmLock.readLock().unlock();
+                        throw e;
+                    }
+                    osReaders++;
+                }
+            }
+            record(sharedCount, start);
+            return new Lock(this, true, needOs);
+        }
+
+        void releaseShared(boolean heldOsLock) {
+            if (heldOsLock) {
+                synchronized (this) {
+                    if (--osReaders == 0) osLock = releaseOs(osLock);
+                }
+            }
+            jvmLock.readLock().unlock();
+        }
+
+        Lock acquireExclusive() {
+            long start = System.nanoTime();
+            jvmLock.writeLock().lock();
+            if (jvmLock.getWriteHoldCount() == 1) {
+                synchronized (this) {
+                    try {
+                        osLock = lockOs(false);
+                    } catch (RuntimeException e) {
+                        jvmLock.writeLock().unlock();
+                        throw e;
+                    }
+                }
+            }
+            record(exclusiveCount, start);
+            return new Lock(this, false, true);
+        }
+
+        void releaseExclusive() {
+            if (jvmLock.getWriteHoldCount() == 1) {
+                synchronized (this) {
+                    osLock = releaseOs(osLock);
+                }
+            }
+            jvmLock.writeLock().unlock();
+        }
+
+        // Polls with tryLock() rather than a blocking lock(): POSIX locks belong to
+        // the process, so a blocking lock can be refused as a "deadlock" when two
+        // terminals' different threads merely hold different regions.
+        // If the lock file cannot be used this fails, unless goldenhour.singleTerminal says
+        // no other terminal uses the directory (then in-JVM locking is enough).
+        private FileLock lockOs(boolean shared) {
+            long backoffMs = 1;
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    FileLock lock = lockChannel().tryLock(position, 1, shared);
+                    if (lock != null) return lock;
+                    try {
+                        Thread.sleep(backoffMs);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+                }
+            } catch (IOException e) {
+                String problem = "cannot lock " + LOCK_FILE + ": " + e.getMessage();
+                if (!SINGLE_TERMINAL) {
+                    System.err.println("Error: " + problem + " - refusing to write without cross-terminal locking.");
+                    throw new UncheckedIOException(problem, e);
+                }
+                if (osLockProblem == null) {
+                    System.err.println("WARNING: " + problem + ". Running with in-JVM locks only"
+                            + " (goldenhour.singleTerminal); do not open this directory from another terminal.");
+                }
+                osLockProblem = problem;
+                return null;
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+
+        private static FileLock releaseOs(FileLock lock) {
+            if (lock == null) return null;
+            try {
+                lock.release();
+            } catch (IOException e) {
+                System.err.println("Warning: cannot release " + LOCK_FILE + ": " + e.getMessage());
+            }
+            return null;
+        }
+
+        private void record(AtomicLong counter, long start) {
+            long waited = System.nanoTime() - start;
+            counter.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            // Anything over 1 ms means another thread or process held it
+            if (waited > 1_000_000) contended.incrementAndGet();
+        }
+    }
+
+    /**
+     * Claims a terminal number in this data directory until the process
+     * exits (byte REGIONS + number of goldenhour.lock, locked exclusively).
+     * @param number
+     * @return false if another running process has claimed it
+     */
+    public static synchronized boolean claimTerminal(int number) {
+        try {
+            FileLock claim = lockChannel().tryLock(REGIONS + number, 1, false);
+            if (claim == null) return false;
+            terminalClaims.add(claim);
+            return true;
+        } catch (OverlappingFileLockException e) {
+            return false; // Already claimed by this JVM
+        } catch (IOException e) {
+            String problem = "cannot lock " + LOCK_FILE + ": " + e.getMessage();
+            if (!SINGLE_TERMINAL) throw new UncheckedIOException(problem, e);
+            osLockProblem = problem;
+            return true;
+        }
+    }
+
+    // =================================================================
+    // METRICS
+    // =================================================================
+
+    /** One entry per resource locked so far. */
+    public static List<Metrics> metrics() {
+        List<Metrics> list = new ArrayList<>();
+        for (Map.Entry<String, Region> e : regions.entrySet()) list.add(new Metrics(e.getKey(), e.getValue()));
+        list.sort((a, b) -> a.resource.compareTo(b.resource));
+        return list;
+    }
+
+    /** Plain-text summary of lock waits and the writer lease, for a status window. */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-12s %8s %8s %9s %10s %10s%n", "Resource", "Shared", "Excl.", "Waited", "Avg ms", "Max ms"));
+        for (Metrics m : metrics()) {
+            sb.append(String.format("%-12s %8d %8d %9d %10.3f %10.3f%n", m.resource, m.sharedCount, m.exclusiveCount,
+                    m.contended, m.averageWaitMillis(), m.maxWaitNanos / 1e6));
+        }
+        if (osLockProblem != null) sb.append("\nCross-terminal locking OFF: ").append(osLockProblem);
+        sb.append("\nThis terminal: ").append(OWNER_ID);
+        sb.append("\nWriter lease:  ").append(leaseHolder.isEmpty() ? "(none yet)" : leaseHolder);
+        sb.append(writer ? "  <- this terminal" : "");
+        return sb.toString();
+    }
+
+    // =================================================================
+    // WRITER LEASE
+    // =================================================================
+
+    /** True while this process holds writer.lease. */
+    public static boolean isWriter() {
+        return writer;
+    }
+
+    /**
+     * Runs a task after every heartbeat while this process is the writer
+     * (and starts the heartbeat if it is not running yet).
+     * @param task runs on the heartbeat thread
+     */
+    public static synchronized void whileWriter(Runnable task) {
+        writerTasks.add(task);
+        startLease();
+    }
+
+    /** Starts competing for writer.lease; safe to call more than once. */
+    public static synchronized void startLease() {
+        if (heartbeat != null) return;
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "writer-lease");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleWithFixedDelay(FileCoordinator::beat, 0, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+        // Hand the role over straight away on a normal exit
+        Runtime.getRuntime().addShutdownHook(new Thread(FileCoordinator::resign, "writer-lease-release"));
+    }
+
+    private static void beat() {
+        try {
+            runExclusive(LEASE, FileCoordinator::renewOrTakeOver);
+            if (writer) {
+                for (Runnable task : writerTasks) task.run();
+            }
+        } catch (RuntimeException e) {
+            // Keep the heartbeat alive whatever a task does
+            System.err.println("Writer lease task failed: " + e);
+        }
+    }
+
+    // Lease file: "<owner id> <counter>"
+    private static void renewOrTakeOver() {
+        Path file = Paths.get(LEASE_FILE);
+        String owner = "";
+        long counter = 0;
+        try {
+            if (Files.exists(file)) {
+                String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split(" ");
+                if (parts.length == 2) {
+                    owner = parts[0];
+                    counter = Long.parseLong(parts[1]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            owner = ""; // Unreadable: treat as free
+        }
+
+        long now = System.currentTimeMillis();
+        if (!owner.isEmpty() && !owner.equals(OWNER_ID)) {
+            // Someone else's lease: still alive while its counter keeps moving
+            if (counter != leaseCounter) {
+                leaseCounter = counter;
+                leaseSeenAt = now;
+            }
+            if (now - leaseSeenAt < LEASE_TIMEOUT_MS) {
+                writer = false;
+                leaseHolder = owner;
+                return;
+            }
+            System.err.println("Writer lease of " + owner + " expired; taking over.");
+        }
+
+        try {
+            AtomicFileWriter.writeString(file, OWNER_ID + " " + (counter + 1));
+            leaseCounter = counter + 1;
+            leaseSeenAt = now;
+            writer = true;
+            leaseHolder = OWNER_ID;
+        } catch (IOException e) {
+            System.err.println("Error renewing writer lease: " + e.getMessage());
+            writer = false;
+        }
+    }
+
+    private static void resign() {
+        if (!writer) return;
+        try {
+            runExclusive(LEASE, () -> {
+                Path file = Paths.get(LEASE_FILE);
+                String content = Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : "";
+                if (content.startsWith(OWNER_ID + " ")) Files.deleteIfExists(file);
+                writer = false;
+            });
+        } catch (IOException | UncheckedIOException e) {
+            // The others take over after LEASE_TIMEOUT_MS anyway
+        }
+    }
+}
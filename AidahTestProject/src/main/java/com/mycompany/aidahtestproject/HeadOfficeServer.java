@@ -0,0 +1,432 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Head office end of SalesReplicator: receives every outlet's sales and
+ * stock changes and keeps a consolidated copy.
+ *
+ * Everything for one outlet node lives in the data directory:
+ *   C60.sales.log    every sale received, as CSV (appended, forced to disk;
+ *                    rewritten without superseded copies once they make up half of it)
+ *   C60.position     sales offset and fingerprint acknowledged so far
+ *   C60.stock.csv    latest stock seq, then model,outlet,qty rows
+ *
+ * Applying a frame twice changes nothing: sales are kept by Reference No
+ * (an edit, or a later copy, replaces the earlier one), stock entries at
+ * or below the stored seq are skipped, and a frame that does not start
+ * where the last one ended is refused with the position the outlet
+ * should resume from. Positions are only written after the
+ * records they cover are on disk, so a crash at head office means some
+ * records arrive again, never that some go missing.
+ *
+ * Only outlets that prove they hold the shared secret get past the
+ * handshake (see SalesReplicator). The server listens on loopback unless
+ * told which address to bind (third argument or goldenhour.headOfficeBind).
+ *
+ *   java ... HeadOfficeServer 7460 headoffice 10.0.0.5
+ */
+public final class HeadOfficeServer implements AutoCloseable {
+
+    private static final String SALES_LOG = ".sales.log";
+    private static final String POSITION = ".position";
+    private static final String STOCK = ".stock.csv";
+
+    private static final String BIND = System.getProperty("goldenhour.headOfficeBind", "127.0.0.1");
+
+    private final File dir;
+    private final byte[] secret;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private ServerSocket server;
+
+    /**
+     * @param dir where each outlet node's files are kept
+     * @param secret shared with the outlets (SalesReplicator.sharedSecret)
+     * @throws java.io.IOException
+     */
+    public HeadOfficeServer(File dir, byte[] secret) throws IOException {
+        this.dir = dir;
+        this.secret = secret.clone();
+        dir.mkdirs();
+        // Outlets received before a restart are in the report straight away
+        File[] logs = dir.listFiles((d, name) -> name.endsWith(POSITION) || name.endsWith(STOCK));
+        if (logs != null) {
+            for (File f : logs) {
+                String name = f.getName();
+                node(name.substring(0, name.length() - (name.endsWith(POSITION) ? POSITION : STOCK).length()));
+            }
+        }
+    }
+
+    /**
+     * Starts accepting outlets on loopback, on a daemon thread.
+     * @param port 0 picks a free port
+     * @return the port listened on
+     * @throws java.io.IOException
+     */
+    public int listen(int port) throws IOException {
+        return listen(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Starts accepting outlets on a daemon thread.
+     * @param address local address to bind; only outlets that can reach it can connect
+     * @param port 0 picks a free port
+     * @return the port listened on
+     * @throws java.io.IOException
+     */
+    public synchronized int listen(InetAddress address, int port) throws IOException {
+        server = new ServerSocket(port, 50, address);
+        Thread acceptor = new Thread(this::acceptLoop, "head-office-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                Thread t = new Thread(() -> serve(s), "head-office-" + s.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) System.err.println("Head office accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (server != null) server.close();
+    }
+
+    // =================================================================
+    // CONNECTION
+    // =================================================================
+
+    private void serve(Socket socket) {
+        String from = String.valueOf(socket.getRemoteSocketAddress());
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            // 1. Handshake: who is this, and what do we already have from it
+            int magic = in.readInt();
+            if (magic != SalesReplicator.MAGIC && magic != SalesReplicator.MAGIC_V1) {
+                System.err.println("Head office: " + from + " is not an outlet node.");
+                return;
+            }
+            boolean recordKinds = magic == SalesReplicator.MAGIC;
+            String code = in.readUTF();
+            byte[] challenge = new byte[SalesReplicator.CHALLENGE_BYTES];
+            random.nextBytes(challenge);
+            out.write(challenge);
+            out.flush();
+            byte[] proof = new byte[SalesReplicator.PROOF_BYTES];
+            in.readFully(proof);
+            if (!MessageDigest.isEqual(proof, SalesReplicator.proof(secret, challenge, code))) {
+                System.err.println("Head office: " + from + " (" + code + ") does not know the shared secret.");
+                return;
+            }
+            Node node = node(code);
+            synchronized (node) {
+                out.writeLong(node.salesOffset);
+                out.writeLong(node.salesFingerprint);
+                out.writeLong(node.stockSeq);
+            }
+            out.flush();
+
+            // 2. Frames until the outlet hangs up
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                long fromPos = in.readLong();
+                long toPos = in.readLong();
+                long fingerprint = in.readLong();
+                int count = in.readInt();
+                int rawLength = in.readInt();
+                int packedLength = in.readInt();
+                if (rawLength < 0 || packedLength < 0
+                        || rawLength > SalesReplicator.MAX_FRAME_BYTES || packedLength > SalesReplicator.MAX_FRAME_BYTES) {
+                    throw new IOException("frame too large");
+                }
+                byte[] packed = new byte[packedLength];
+                in.readFully(packed);
+                DataInputStream records = new DataInputStream(
+                        new ByteArrayInputStream(SalesReplicator.inflate(packed, rawLength)));
+
+                long acked;
+                synchronized (node) {
+                    switch (type) {
+                        case SalesReplicator.SALES:
+                            acked = node.applySales(fromPos, toPos, fingerprint, count, records, recordKinds);
+                            break;
+                        case SalesReplicator.STOCK:
+                            acked = node.applyStock(fromPos, toPos, count, records);
+                            break;
+                        case SalesReplicator.STOCK_SNAPSHOT:
+                            acked = node.applySnapshot(toPos, count, records);
+                            break;
+                        default:
+                            throw new IOException("unknown frame type " + type);
+                    }
+                }
+                out.writeLong(acked);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Head office: connection from " + from + " dropped (" + e.getMessage() + ").");
+        }
+    }
+
+    private Node node(String code) throws IOException {
+        String safe = code.trim().replaceAll("[^A-Za-z0-9_-]", "_");
+        if (safe.isEmpty()) throw new IOException("empty node code");
+        Node node = nodes.computeIfAbsent(safe, c -> new Node(c));
+        synchronized (node) {
+            node.loadIfNeeded();
+        }
+        return node;
+    }
+
+    // =================================================================
+    // PER-OUTLET STATE
+    // =================================================================
+
+    /** What head office holds for one outlet node. Guarded by its own monitor. */
+    private final class Node {
+        final String code;
+        boolean loaded = false;
+        long salesOffset = 0;
+        long salesFingerprint = -1;
+        long stockSeq = -1; // -1: no stock yet, so the outlet starts with a snapshot
+        final Map<String, String[]> sales = new LinkedHashMap<>(); // Reference No -> fields
+        int logLines = 0; // lines in the sales log, superseded copies included
+        final Map<String, Integer> stock = new TreeMap<>();        // "model,outlet" -> qty
+
+        Node(String code) {
+            this.code = code;
+        }
+
+        File file(String suffix) {
+            return new File(dir, code + suffix);
+        }
+
+        void loadIfNeeded() throws IOException {
+            if (loaded) return;
+
+            File log = file(SALES_LOG);
+            if (log.exists()) {
+                // A torn last line from a crash is parsed short and skipped; the sale comes again
+                CsvTokenizer t = CsvTokenizer.fromFile(log);
+                while (t.next()) {
+                    if (t.fieldCount() < 9) continue;
+                    String[] f = new String[9];
+                    for (int i = 0; i < 9; i++) f[i] = t.getString(i);
+                    sales.put(f[0], f);
+                    logLines++;
+                }
+                compactIfNeeded();
+            }
+            File position = file(POSITION);
+            if (position.exists()) {
+                CsvTokenizer t = CsvTokenizer.fromFile(position);
+                if (t.next() && t.fieldCount() >= 2) {
+                    salesOffset = t.getLong(0);
+                    salesFingerprint = t.getLong(1);
+                }
+            }
+            File stockFile = file(STOCK);
+            if (stockFile.exists()) {
+                CsvTokenizer t = CsvTokenizer.fromFile(stockFile);
+                if (t.next() && t.fieldCount() >= 2) stockSeq = t.getLong(1);
+                while (t.next()) {
+                    if (t.fieldCount() < 3) continue;
+                    stock.put(t.getString(0) + "," + t.getString(1), t.getInt(2));
+                }
+            }
+            loaded = true;
+        }
+
+        long applySales(long from, long to, long fingerprint, int count, DataInputStream in, boolean recordKinds) throws IOException {
+            // 0 means the outlet started over (its sales.dat was replaced); anything
+            // else must continue exactly where the last frame ended
+            if (from != 0 && from != salesOffset) return salesOffset;
+
+            List<String[]> received = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                // NEW_SALE or EDITED_SALE: either way the record replaces any sale with its Reference No
+                if (recordKinds) in.readByte();
+                String ref = in.readUTF();
+                long millis = in.readLong();
+                String outlet = in.readUTF();
+                String model = in.readUTF();
+                int qty = in.readInt();
+                long cents = in.readLong();
+                String payment = in.readUTF();
+                String staff = in.readUTF();
+                String customer = in.readUTF();
+                received.add(new String[] { ref, SalesJournal.formatDate(millis), outlet, model,
+                        String.valueOf(qty), String.valueOf(cents), payment, staff, customer });
+            }
+
+            // 1. Records to disk, 2. position to disk, 3. memory
+            try (FileOutputStream fos = new FileOutputStream(file(SALES_LOG), true);
+                 Writer w = new OutputStreamWriter(fos, StandardCharsets.UTF_8)) {
+                for (String[] f : received) w.write(csvLine(f));
+                w.flush();
+                fos.getFD().sync();
+            }
+            AtomicFileWriter.writeString(file(POSITION).toPath(), to + "," + fingerprint + "\n");
+            for (String[] f : received) sales.put(f[0], f);
+            logLines += received.size();
+            salesOffset = to;
+            salesFingerprint = fingerprint;
+            compactIfNeeded();
+            return salesOffset;
+        }
+
+        // Edits and resends leave superseded copies in the log; drop them once they are half of it
+        private void compactIfNeeded() {
+            if (logLines <= 2 * sales.size()) return;
+            try {
+                AtomicFileWriter.writeText(file(SALES_LOG).toPath(), w -> {
+                    for (String[] f : sales.values()) w.write(csvLine(f));
+                });
+                logLines = sales.size();
+            } catch (IOException e) {
+                // The full log is still there and still right; try again after the next frame
+                System.err.println("Head office: could not compact " + code + SALES_LOG + ": " + e.getMessage());
+            }
+        }
+
+        long applyStock(long from, long to, int count, DataInputStream in) throws IOException {
+            if (from != stockSeq) return stockSeq;
+            for (int i = 0; i < count; i++) {
+                long seq = in.readLong();
+                in.readLong(); // timestamp
+                String model = in.readUTF();
+                String outlet = in.readUTF();
+                int delta = in.readInt();
+                if (seq <= stockSeq) continue; // already applied
+                stock.merge(model + "," + outlet, delta, Integer::sum);
+                stockSeq = seq;
+            }
+            stockSeq = Math.max(stockSeq, to);
+            saveStock();
+            return stockSeq;
+        }
+
+        long applySnapshot(long seq, int rows, DataInputStream in) throws IOException {
+            Map<String, Integer> replaced = new TreeMap<>();
+            for (int r = 0; r < rows; r++) {
+                String model = in.readUTF();
+                int outlets = in.readInt();
+                for (int o = 0; o < outlets; o++) {
+                    String outlet = in.readUTF();
+                    replaced.put(model + "," + outlet, in.readInt());
+                }
+            }
+            if (seq < stockSeq) return stockSeq; // older than what we have
+            stock.clear();
+            stock.putAll(replaced);
+            stockSeq = seq;
+            saveStock();
+            return stockSeq;
+        }
+
+        private String csvLine(String[] fields) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) line.append(',');
+                line.append(CsvTokenizer.escape(fields[i]));
+            }
+            return line.append('\n').toString();
+        }
+
+        private void saveStock() throws IOException {
+            AtomicFileWriter.writeText(file(STOCK).toPath(), w -> {
+                w.write("seq," + stockSeq + "\n");
+                for (Map.Entry<String, Integer> e : stock.entrySet()) {
+                    int comma = e.getKey().lastIndexOf(',');
+                    w.write(CsvTokenizer.escape(e.getKey().substring(0, comma)) + ","
+                            + e.getKey().substring(comma + 1) + "," + e.getValue() + "\n");
+                }
+            });
+        }
+    }
+
+    // =================================================================
+    // REPORT
+    // =================================================================
+
+    /** Consolidated sales and stock per outlet node, plus the group total. */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HEAD OFFICE - CONSOLIDATED\n");
+        sb.append(String.format("%-8s %8s %8s %16s %12s%n", "Node", "Sales", "Units", "Revenue (RM)", "Stock units"));
+        long totalSales = 0, totalUnits = 0, totalCents = 0, totalStock = 0;
+        for (String code : new TreeMap<>(nodes).keySet()) {
+            Node node = nodes.get(code);
+            long units = 0, cents = 0, stockUnits = 0;
+            int count;
+            synchronized (node) {
+                count = node.sales.size();
+                for (String[] f : node.sales.values()) {
+                    units += Long.parseLong(f[4]);
+                    cents += Long.parseLong(f[5]);
+                }
+                for (int qty : node.stock.values()) stockUnits += qty;
+            }
+            sb.append(String.format("%-8s %8d %8d %,16.2f %12d%n", code, count, units, cents / 100.0, stockUnits));
+            totalSales += count;
+            totalUnits += units;
+            totalCents += cents;
+            totalStock += stockUnits;
+        }
+        sb.append(String.format("%-8s %8d %8d %,16.2f %12d%n", "TOTAL", totalSales, totalUnits, totalCents / 100.0, totalStock));
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : SalesReplicator.DEFAULT_PORT;
+        File dir = new File(args.length > 1 ? args[1] : "headoffice");
+        InetAddress address = InetAddress.getByName(args.length > 2 ? args[2] : BIND);
+        HeadOfficeServer office = new HeadOfficeServer(dir, SalesReplicator.sharedSecret());
+        office.listen(address, port);
+        System.out.println("Head office listening on " + address.getHostAddress() + ":" + port
+                + ", data in " + dir.getAbsolutePath());
+        while (true) {
+            Thread.sleep(60000);
+            System.out.print(office.report());
+        }
+    }
+}
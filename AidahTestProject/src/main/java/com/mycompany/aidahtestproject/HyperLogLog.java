@@ -0,0 +1,154 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Approximate count of distinct values (HyperLogLog, 2^12 registers,
+ * about 1.6% standard error).
+ *
+ * A sketch starts sparse, as a small sorted list of (register, rank)
+ * pairs, so the many days with only a handful of customers cost a few
+ * bytes. It switches to the dense 4 KB register array once the list would
+ * be larger than that. Two sketches merge by taking the register-wise
+ * maximum, which is what lets days roll up into months, years and
+ * "all outlets" without keeping any names.
+ */
+public class HyperLogLog {
+
+    private static final int P = 12;
+    private static final int M = 1 << P;
+    private static final int SPARSE_MAX = M / 4; // pairs are ints, registers bytes
+
+    private byte[] dense;                  // null while sparse
+    private int[] sparse = new int[4];     // sorted (register << 8 | rank)
+    private int sparseSize = 0;
+
+    public void add(long hash) {
+        int register = (int) (hash >>> (64 - P));
+        int rank = Long.numberOfLeadingZeros((hash << P) | (1L << (P - 1))) + 1;
+        set(register, rank);
+    }
+
+    public void addString(String value) {
+        add(hash(value));
+    }
+
+    private void set(int register, int rank) {
+        if (dense != null) {
+            if (rank > dense[register]) dense[register] = (byte) rank;
+            return;
+        }
+        int pos = findSparse(register);
+        if (pos >= 0) {
+            if (rank > (sparse[pos] & 0xFF)) sparse[pos] = register << 8 | rank;
+            return;
+        }
+        if (sparseSize == SPARSE_MAX) {
+            toDense();
+            set(register, rank);
+            return;
+        }
+        pos = -pos - 1;
+        if (sparseSize == sparse.length) sparse = Arrays.copyOf(sparse, sparseSize * 2);
+        System.arraycopy(sparse, pos, sparse, pos + 1, sparseSize - pos);
+        sparse[pos] = register << 8 | rank;
+        sparseSize++;
+    }
+
+    private int findSparse(int register) {
+        int lo = 0, hi = sparseSize - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int r = sparse[mid] >>> 8;
+            if (r < register) lo = mid + 1;
+            else if (r > register) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private void toDense() {
+        dense = new byte[M];
+        for (int i = 0; i < sparseSize; i++) dense[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    /** Adds everything counted by another sketch into this one. */
+    public void merge(HyperLogLog other) {
+        if (other.dense == null) {
+            for (int i = 0; i < other.sparseSize; i++) set(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+            return;
+        }
+        if (dense == null) toDense();
+        for (int r = 0; r < M; r++) if (other.dense[r] > dense[r]) dense[r] = other.dense[r];
+    }
+
+    /** Estimated number of distinct values added. */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        if (dense != null) {
+            for (int r = 0; r < M; r++) {
+                sum += 1.0 / (1L << dense[r]);
+                if (dense[r] == 0) zeros++;
+            }
+        } else {
+            zeros = M - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) sum += 1.0 / (1L << (sparse[i] & 0xFF));
+        }
+        double alpha = 0.7213 / (1 + 1.079 / M);
+        double e = alpha * M * M / sum;
+        // Small range: linear counting on the empty registers is far more accurate
+        if (e <= 2.5 * M && zeros > 0) e = M * Math.log((double) M / zeros);
+        return Math.round(e);
+    }
+
+    // 64-bit FNV-1a over the chars, then the MurmurHash3 finalizer to spread the bits
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // =================================================================
+    // PERSISTENCE
+    // =================================================================
+
+    public void write(DataOutputStream out) throws IOException {
+        if (dense != null) {
+            out.writeInt(-1);
+            out.write(dense);
+        } else {
+            out.writeInt(sparseSize);
+            for (int i = 0; i < sparseSize; i++) out.writeInt(sparse[i]);
+        }
+    }
+
+    public static HyperLogLog read(DataInputStream in) throws IOException {
+        HyperLogLog h = new HyperLogLog();
+        int n = in.readInt();
+        if (n < 0) {
+            h.dense = new byte[M];
+            in.readFully(h.dense);
+            h.sparse = null;
+        } else {
+            h.sparse = new int[Math.max(4, n)];
+            for (int i = 0; i < n; i++) h.sparse[i] = in.readInt();
+            h.sparseSize = n;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,407 @@
+package com.mycompany.aidahtestproject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * All stock for all models and outlets in one flat int array.
+ *
+ * Layout is row-major: stock[row * outletCount + outlet], where a row is
+ * one model and a column is one outlet (its OutletRegistry index). Prices
+ * sit in a parallel double[] and model IDs are mapped to dense row numbers,
+ * so totals and low-stock scans are simple loops over primitive arrays.
+ * The ID lookup is case-insensitive: keys are case-folded once on insert,
+ * so rowOf() is a single hash probe however big the catalogue gets.
+ * Model objects are thin views onto a row of this matrix.
+ *
+ * Thread safety: every stock cell is an atomic int, so cashiers updating
+ * different (or the same) cells never block each other and tryDecrement()
+ * is a compare-and-set, not check-then-act. The StampedLock only guards
+ * the layout: cell operations share its read lock, and the write lock is
+ * taken just to add a model or an outlet column (which re-allocates).
+ *
+ * Every row also carries a version stamp, bumped BEFORE any of its cells
+ * or its price change. An editor that read a row at version v can then
+ * compare-and-set a cell: if anything touched the row in the meantime,
+ * either the stamp or the cell itself no longer matches and the edit is
+ * refused instead of overwriting the newer value.
+ *
+ * Cell operations check the row and outlet and throw
+ * IndexOutOfBoundsException, rather than let an outlet past the last
+ * column land in the next model's row.
+ */
+public class InventoryMatrix {
+
+    private static final int INITIAL_ROWS = 16;
+    /** Returned by compareAndSetStock() when the row changed since it was read. */
+    public static final int CONFLICT = Integer.MIN_VALUE;
+
+    private final StampedLock layout = new StampedLock();
+    private int outletCount;
+    private int rowCount = 0;
+    private AtomicIntegerArray stock;
+    private AtomicLongArray versions;
+    private double[] prices;
+    private String[] modelIds;
+    private final Map<String, Integer> rowById = new HashMap<>();
+
+    public InventoryMatrix(int outletCount) {
+        this.outletCount = outletCount;
+        this.stock = new AtomicIntegerArray(INITIAL_ROWS * outletCount);
+        this.versions = new AtomicLongArray(INITIAL_ROWS);
+        this.prices = new double[INITIAL_ROWS];
+        this.modelIds = new String[INITIAL_ROWS];
+    }
+
+    // =================================================================
+    // STRUCTURE (exclusive)
+    // =================================================================
+
+    /**
+     * Adds a model (or overwrites it if the ID already exists).
+     * @param modelId
+     * @param price
+     * @param stockRow one entry per outlet; shorter rows are padded with 0
+     * @return the dense row number of the model
+     */
+    public int addModel(String modelId, double price, int[] stockRow) {
+        long stamp = layout.writeLock();
+        try {
+            if (stockRow.length > outletCount) ensureOutlets(stockRow.length);
+
+            String key = key(modelId);
+            Integer existing = rowById.get(key);
+            int row = existing != null ? existing : rowCount;
+            if (existing == null) {
+                ensureRows(rowCount + 1);
+                rowCount++;
+                modelIds[row] = modelId;
+                rowById.put(key, row);
+            }
+            versions.incrementAndGet(row);
+            prices[row] = price;
+            writeRow(row, stockRow);
+            return row;
+        } finally {
+            layout.unlockWrite(stamp);
+        }
+    }
+
+    private void ensureRows(int rows) {
+        if (rows <= prices.length) return;
+        int capacity = Math.max(rows, prices.length * 2);
+        AtomicIntegerArray bigger = new AtomicIntegerArray(capacity * outletCount);
+        for (int i = 0; i < rowCount * outletCount; i++) bigger.set(i, stock.get(i));
+        stock = bigger;
+        AtomicLongArray moreVersions = new AtomicLongArray(capacity);
+        for (int r = 0; r < rowCount; r++) moreVersions.set(r, versions.get(r));
+        versions = moreVersions;
+        prices = Arrays.copyOf(prices, capacity);
+        modelIds = Arrays.copyOf(modelIds, capacity);
+    }
+
+    // Widening the matrix re-lays every row; only happens when a new outlet column appears
+    private void ensureOutlets(int outlets) {
+        AtomicIntegerArray wider = new AtomicIntegerArray(prices.length * outlets);
+        for (int r = 0; r < rowCount; r++) {
+            for (int o = 0; o < outletCount; o++) wider.set(r * outlets + o, stock.get(r * outletCount + o));
+        }
+        stock = wider;
+        outletCount = outlets;
+    }
+
+    public void setPrice(int row, double price) {
+        long stamp = layout.writeLock();
+        try {
+            versions.incrementAndGet(row);
+            prices[row] = price;
+        } finally {
+            layout.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Changes the price only if the row is still at the expected version.
+     * @return false (and nothing changed) if the row was changed since
+     */
+    public boolean compareAndSetPrice(int row, long expectedVersion, double price) {
+        long stamp = layout.writeLock();
+        try {
+            // No cell operation can run under the write lock, so check-then-set is safe here
+            if (versions.get(row) != expectedVersion) return false;
+            versions.incrementAndGet(row);
+            prices[row] = price;
+            return true;
+        } finally {
+            layout.unlockWrite(stamp);
+        }
+    }
+
+    /** Case-insensitive; returns -1 if the model is not in the matrix. */
+    public int rowOf(String modelId) {
+        long stamp = layout.readLock();
+        try {
+            Integer row = rowById.get(key(modelId));
+            return row == null ? -1 : row;
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    // Case-folded with Locale.ROOT so e.g. a Turkish default locale cannot change the key
+    private static String key(String modelId) {
+        return modelId == null ? "" : modelId.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public int getModelCount() {
+        long stamp = layout.readLock();
+        try { return rowCount; } finally { layout.unlockRead(stamp); }
+    }
+
+    public int getOutletCount() {
+        long stamp = layout.readLock();
+        try { return outletCount; } finally { layout.unlockRead(stamp); }
+    }
+
+    // =================================================================
+    // CELL ACCESS (shared; each cell is updated atomically)
+    // =================================================================
+
+    public String getModelId(int row) {
+        long stamp = layout.readLock();
+        try { return modelIds[row]; } finally { layout.unlockRead(stamp); }
+    }
+
+    public double getPrice(int row) {
+        long stamp = layout.readLock();
+        try { return prices[row]; } finally { layout.unlockRead(stamp); }
+    }
+
+    /** Version stamp of a row; read it BEFORE the cells it is meant to cover. */
+    public long getVersion(int row) {
+        long stamp = layout.readLock();
+        try { return versions.get(row); } finally { layout.unlockRead(stamp); }
+    }
+
+    public int getStock(int row, int outlet) {
+        long stamp = layout.readLock();
+        try { return stock.get(cell(row, outlet)); } finally { layout.unlockRead(stamp); }
+    }
+
+    /** @return the quantity it replaced */
+    public int setStock(int row, int outlet, int qty) {
+        long stamp = layout.readLock();
+        try {
+            int i = cell(row, outlet);
+            versions.incrementAndGet(row);
+            return stock.getAndSet(i, qty);
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    /** @return the new quantity */
+    public int adjustStock(int row, int outlet, int delta) {
+        long stamp = layout.readLock();
+        try {
+            int i = cell(row, outlet);
+            versions.incrementAndGet(row);
+            return stock.addAndGet(i, delta);
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Takes qty units only if at least that many are in stock.
+     * @param row
+     * @param outlet
+     * @param qty
+     * @return false (and nothing changed) if the stock is too low
+     */
+    public boolean tryDecrement(int row, int outlet, int qty) {
+        long stamp = layout.readLock();
+        try {
+            int i = cell(row, outlet);
+            versions.incrementAndGet(row);
+            while (true) {
+                int current = stock.get(i);
+                if (current < qty) return false;
+                if (stock.compareAndSet(i, current, current - qty)) return true;
+            }
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Lowers a cell by up to qty units, stopping at zero.
+     * @return the units actually taken
+     */
+    public int decrementUpTo(int row, int outlet, int qty) {
+        long stamp = layout.readLock();
+        try {
+            int i = cell(row, outlet);
+            versions.incrementAndGet(row);
+            while (true) {
+                int current = stock.get(i);
+                int taken = Math.max(0, Math.min(qty, current));
+                if (stock.compareAndSet(i, current, current - taken)) return taken;
+            }
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Sets a cell to qty only if the row is still at expectedVersion.
+     *
+     * Lock-free: the cell is read, the stamp is moved on from the expected
+     * version, and the cell is swapped from the value read. Writers bump
+     * the stamp before touching a cell, so a change that lands anywhere in
+     * between fails one of the two compare-and-sets.
+     * @param row
+     * @param outlet
+     * @param expectedVersion from getVersion() when the editor read the row
+     * @param qty
+     * @return the quantity replaced, or CONFLICT (nothing changed)
+     */
+    public int compareAndSetStock(int row, int outlet, long expectedVersion, int qty) {
+        long stamp = layout.readLock();
+        try {
+            int i = cell(row, outlet);
+            int current = stock.get(i);
+            if (!versions.compareAndSet(row, expectedVersion, expectedVersion + 1)) return CONFLICT;
+            return stock.compareAndSet(i, current, qty) ? current : CONFLICT;
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    // Index of a cell in the flat array; call with the layout lock held
+    private int cell(int row, int outlet) {
+        Objects.checkIndex(row, rowCount);
+        Objects.checkIndex(outlet, outletCount);
+        return row * outletCount + outlet;
+    }
+
+    public int[] copyRow(int row) {
+        long stamp = layout.readLock();
+        try {
+            int[] out = new int[outletCount];
+            for (int o = 0; o < outletCount; o++) out[o] = stock.get(row * outletCount + o);
+            return out;
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    public void setRow(int row, int[] stockRow) {
+        long stamp = layout.readLock();
+        try {
+            versions.incrementAndGet(row);
+            writeRow(row, stockRow);
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    private void writeRow(int row, int[] stockRow) {
+        int base = row * outletCount;
+        for (int o = 0; o < outletCount; o++) stock.set(base + o, o < stockRow.length ? stockRow[o] : 0);
+    }
+
+    // =================================================================
+    // SCANS (each cell read atomically; not a point-in-time snapshot)
+    // =================================================================
+
+    /** Total units of one model across every outlet (one contiguous row). */
+    public int modelTotal(int row) {
+        long stamp = layout.readLock();
+        try {
+            int sum = 0;
+            int base = row * outletCount;
+            for (int i = base; i < base + outletCount; i++) sum += stock.get(i);
+            return sum;
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    /** Total units held by one outlet (strided walk down a column). */
+    public int outletTotal(int outlet) {
+        long stamp = layout.readLock();
+        try {
+            Objects.checkIndex(outlet, outletCount);
+            int sum = 0;
+            int end = rowCount * outletCount;
+            for (int i = outlet; i < end; i += outletCount) sum += stock.get(i);
+            return sum;
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    /** Totals for every outlet in a single sequential pass over the array. */
+    public int[] outletTotals() {
+        long stamp = layout.readLock();
+        try {
+            int[] totals = new int[outletCount];
+            int end = rowCount * outletCount;
+            for (int i = 0; i < end; i++) totals[i % outletCount] += stock.get(i);
+            return totals;
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Rows whose stock at the outlet is at or below the threshold.
+     * @param outlet
+     * @param threshold
+     * @return row numbers, in catalogue order
+     */
+    public int[] lowStock(int outlet, int threshold) {
+        long stamp = layout.readLock();
+        try {
+            Objects.checkIndex(outlet, outletCount);
+            int[] hits = new int[rowCount];
+            int n = 0;
+            for (int r = 0, i = outlet; r < rowCount; r++, i += outletCount) {
+                if (stock.get(i) <= threshold) hits[n++] = r;
+            }
+            return Arrays.copyOf(hits, n);
+        } finally {
+            layout.unlockRead(stamp);
+        }
+    }
+
+    // =================================================================
+    // VIEWS
+    // =================================================================
+
+    public Model model(int row) {
+        return new Model(this, row);
+    }
+
+    /** Case-insensitive lookup; null if the model is not in the matrix. */
+    public Model find(String modelId) {
+        int row = rowOf(modelId);
+        return row < 0 ? null : new Model(this, row);
+    }
+
+    /** One Model view per row, in catalogue order. */
+    public ArrayList<Model> models() {
+        int rows = getModelCount();
+        ArrayList<Model> list = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) list.add(new Model(this, r));
+        return list;
+    }
+}
@@ -0,0 +1,409 @@
+package com.mycompany.aidahtestproject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The one in-memory inventory shared by every window and thread.
+ *
+ * Loaded once (model.csv + stock journal). Every stock change goes
+ * through here so it is applied to the shared InventoryMatrix with an
+ * atomic cell operation and journalled in the same step.
+ *
+ * Single-cell changes (sales, stock in/out, edits) are decided by the
+ * cell's CAS. Their journal records go to the PersistenceWriter's single
+ * writer thread (StockJournal.appendIf), which takes the STOCK file lock
+ * once per batch to catch up with other terminals and append, so
+ * concurrent sales share one lock hold and one force() instead of queuing
+ * on a monitor. If the others' records, read just then, took the stock
+ * this change counted on, the change is undone. A refused change first
+ * catches up and tries once more, so a restock at another terminal is
+ * not missed.
+ *
+ * Changes that span cells or write model.csv (batches, new models,
+ * prices, checkpoints, reloading another terminal's snapshot) hold the
+ * write side of an in-JVM lock whose read side every single-cell change
+ * holds, so a snapshot never contains a change whose journal record is
+ * not written yet (it would be replayed twice). Readers (tables,
+ * reports) never take either lock.
+ *
+ * Folding the journal into model.csv is left to the terminal holding the
+ * writer lease (FileCoordinator); the others only append.
+ *
+ * Every change that sticks, local or replayed from another terminal, is
+ * published as an EventBus.StockChanged so open windows update that row.
+ */
+public final class InventoryService implements StockJournal.Follower {
+
+    private static InventoryService instance;
+
+    private static final int REFUSED = Integer.MIN_VALUE;
+    private static final int FAILED = Integer.MIN_VALUE + 1;
+
+    private final InventoryMatrix matrix;
+    // Read side: a single-cell change in flight. Write side: snapshots and reloads
+    private final ReentrantReadWriteLock changes = new ReentrantReadWriteLock();
+
+    private InventoryService(InventoryMatrix matrix) {
+        this.matrix = matrix;
+    }
+
+    public static synchronized InventoryService getInstance() {
+        if (instance == null) {
+            instance = new InventoryService(ModelReader.loadMatrix());
+            StockJournal.follow(instance);
+            FileCoordinator.whileWriter(instance::foldJournal);
+        }
+        return instance;
+    }
+
+    // =================================================================
+    // READS
+    // =================================================================
+
+    public InventoryMatrix getMatrix() { return matrix; }
+
+    /** One live Model view per row, in catalogue order. */
+    public ArrayList<Model> models() { return matrix.models(); }
+
+    /** Case-insensitive; null if unknown. */
+    public Model find(String modelId) { return matrix.find(modelId); }
+
+    // =================================================================
+    // STOCK CHANGES
+    // =================================================================
+
+    /**
+     * Sells qty units if (and only if) the outlet has them.
+     * @param modelId
+     * @param outlet outlet index (OutletRegistry)
+     * @param qty
+     * @return false if the model is unknown, stock is too low or the journal failed
+     */
+    public boolean tryDecrement(String modelId, int outlet, int qty) {
+        int row = matrix.rowOf(modelId);
+        if (row < 0 || qty <= 0) return false;
+        int delta = changeCell(row, outlet, () -> matrix.tryDecrement(row, outlet, qty) ? -qty : REFUSED);
+        if (delta != -qty) return false;
+        changed(modelId, outlet);
+        return true;
+    }
+
+    /**
+     * Adds stock; an unknown model is added to the catalogue (price 0).
+     * @return true if recorded
+     */
+    public boolean stockIn(String modelId, int outlet, int qty) {
+        int row = matrix.rowOf(modelId);
+        if (row >= 0) return applyDelta(row, outlet, qty);
+
+        Boolean added = exclusively(() -> {
+            // Another window or terminal may have added it while we waited for the lock
+            if (matrix.rowOf(modelId) >= 0) return null;
+            // The journal only holds deltas, so a new model needs a fresh snapshot
+            int[] stock = new int[Math.max(outlet + 1, matrix.getOutletCount())];
+            stock[outlet] = qty;
+            matrix.addModel(modelId, 0.0, stock);
+            return StockJournal.checkpoint(matrix.models());
+        });
+        if (added == null) return applyDelta(matrix.rowOf(modelId), outlet, qty);
+        if (added) EventBus.publish(new EventBus.StockChanged(modelId, EventBus.StockChanged.ALL_OUTLETS));
+        return added;
+    }
+
+    /**
+     * Removes up to qty units, never going below zero.
+     * @return units actually removed, or -1 if the model is unknown or the journal failed
+     */
+    public int stockOut(String modelId, int outlet, int qty) {
+        int row = matrix.rowOf(modelId);
+        if (row < 0) return -1;
+        int delta = changeCell(row, outlet, () -> -matrix.decrementUpTo(row, outlet, qty));
+        if (delta == FAILED) return -1;
+        if (delta == REFUSED || delta == 0) return 0;
+        changed(modelId, outlet);
+        return -delta;
+    }
+
+    /**
+     * Sets a cell to an absolute count (stock take / manual edit).
+     * @return false if the model is unknown or the journal failed
+     */
+    public boolean setStock(String modelId, int outlet, int newQty) {
+        int row = matrix.rowOf(modelId);
+        if (row < 0) return false;
+        int delta = changeCell(row, outlet, () -> newQty - matrix.setStock(row, outlet, newQty));
+        if (delta == FAILED || delta == REFUSED) return false;
+        changed(modelId, outlet);
+        return true;
+    }
+
+    /**
+     * Changes a price. Prices are not journalled, so this writes a snapshot.
+     * @return false if the model is unknown or the snapshot failed
+     */
+    public boolean setPrice(String modelId, double price) {
+        int row = matrix.rowOf(modelId);
+        if (row < 0) return false;
+        boolean saved = exclusively(() -> {
+            matrix.setPrice(row, price);
+            return StockJournal.checkpoint(matrix.models());
+        });
+        if (saved) EventBus.publish(new EventBus.StockChanged(modelId, EventBus.StockChanged.ALL_OUTLETS));
+        return saved;
+    }
+
+    // =================================================================
+    // COMPARE-AND-SET EDITS (edit screens that stay open)
+    // =================================================================
+
+    /**
+     * Sets a cell to an absolute count, but only if the model's row is
+     * still at the version the editor read (Model.getVersion()). A sale or
+     * any other change to the row since then makes this a CONFLICT rather
+     * than silently overwriting it; sales are never blocked.
+     * @param modelId
+     * @param outlet
+     * @param expectedVersion
+     * @param newQty
+     * @return APPLIED, CONFLICT, NOT_FOUND or FAILED (journal write failed)
+     */
+    public EditResult compareAndSetStock(String modelId, int outlet, long expectedVersion, int newQty) {
+        int row = matrix.rowOf(modelId);
+        if (row < 0 || outlet < 0 || outlet >= matrix.getOutletCount()) return EditResult.NOT_FOUND;
+        int delta = changeCell(row, outlet, () -> {
+            int old = matrix.compareAndSetStock(row, outlet, expectedVersion, newQty);
+            return old == InventoryMatrix.CONFLICT ? REFUSED : newQty - old;
+        });
+        if (delta == REFUSED) return EditResult.CONFLICT;
+        if (delta == FAILED) return EditResult.FAILED;
+        changed(modelId, outlet);
+        return EditResult.APPLIED;
+    }
+
+    /**
+     * Changes a price only if the row is still at the expected version.
+     * @return APPLIED, CONFLICT, NOT_FOUND or FAILED (snapshot failed)
+     */
+    public EditResult compareAndSetPrice(String modelId, long expectedVersion, double price) {
+        int row = matrix.rowOf(modelId);
+        if (row < 0) return EditResult.NOT_FOUND;
+        EditResult result = exclusively(() -> {
+            if (!matrix.compareAndSetPrice(row, expectedVersion, price)) return EditResult.CONFLICT;
+            return StockJournal.checkpoint(matrix.models()) ? EditResult.APPLIED : EditResult.FAILED;
+        });
+        if (result == EditResult.APPLIED) {
+            EventBus.publish(new EventBus.StockChanged(modelId, EventBus.StockChanged.ALL_OUTLETS));
+        }
+        return result;
+    }
+
+    // =================================================================
+    // BATCHES (stock movements and transfers)
+    // =================================================================
+
+    /**
+     * Applies several stock changes all-or-nothing, with one durable
+     * write (StockJournal.appendBatch). Removals must be covered by stock:
+     * if any one is not, or the write fails, every change already made in
+     * memory is undone and nothing is recorded. A model that does not
+     * exist yet is added (price 0) when it receives stock, and a snapshot
+     * is written after the batch, since the journal only holds deltas.
+     * @param changes StockJournal.Entry.change(modelId, outlet, delta) per line
+     * @return null if applied, otherwise why nothing was
+     */
+    public String applyBatch(List<StockJournal.Entry> changes) {
+        List<StockJournal.Entry> lines = new ArrayList<>();
+        for (StockJournal.Entry c : changes) {
+            if (c.delta != 0) lines.add(c);
+        }
+        if (lines.isEmpty()) return null;
+
+        String problem = exclusively(() -> {
+            List<int[]> applied = new ArrayList<>(); // {row, outlet, delta}, to undo on failure
+            boolean newModels = false;
+
+            // 1. Removals first: they are the ones that can fail
+            for (StockJournal.Entry c : lines) {
+                if (c.delta > 0) continue;
+                int row = matrix.rowOf(c.modelId);
+                String error = row < 0 ? "Unknown model: " + c.modelId
+                        : c.outlet < 0 || c.outlet >= matrix.getOutletCount() ? "Unknown outlet: " + OutletRegistry.code(c.outlet)
+                        : !matrix.tryDecrement(row, c.outlet, -c.delta)
+                            ? "Not enough " + c.modelId + " at " + OutletRegistry.code(c.outlet)
+                                + " (have " + matrix.getStock(row, c.outlet) + ", need " + -c.delta + ")"
+                        : null;
+                if (error != null) {
+                    undo(applied);
+                    return error;
+                }
+                applied.add(new int[]{row, c.outlet, c.delta});
+            }
+
+            // 2. Additions, adding unknown models to the catalogue
+            for (StockJournal.Entry c : lines) {
+                if (c.delta < 0) continue;
+                int row = matrix.rowOf(c.modelId);
+                if (row < 0 && c.outlet >= 0) {
+                    row = matrix.addModel(c.modelId, 0.0, new int[Math.max(c.outlet + 1, matrix.getOutletCount())]);
+                    newModels = true;
+                }
+                if (c.outlet < 0 || c.outlet >= matrix.getOutletCount()) {
+                    undo(applied);
+                    return "Unknown outlet: " + OutletRegistry.code(c.outlet);
+                }
+                matrix.adjustStock(row, c.outlet, c.delta);
+                applied.add(new int[]{row, c.outlet, c.delta});
+            }
+
+            // 3. One durable write for the lot (models added above stay, with no stock)
+            if (!StockJournal.appendBatch(lines)) {
+                undo(applied);
+                return "Error saving stock updates.";
+            }
+            if (newModels && !StockJournal.checkpoint(matrix.models())) {
+                // The batch is in the journal; only the new catalogue rows are not yet in model.csv
+                System.err.println("Warning: new models could not be written to model.csv yet.");
+            }
+            return null;
+        });
+
+        if (problem == null) {
+            for (StockJournal.Entry c : lines) EventBus.publish(new EventBus.StockChanged(c.modelId, c.outlet));
+            checkpointIfDue();
+        }
+        return problem;
+    }
+
+    private void undo(List<int[]> applied) {
+        for (int i = applied.size() - 1; i >= 0; i--) {
+            int[] a = applied.get(i);
+            matrix.adjustStock(a[0], a[1], -a[2]);
+        }
+    }
+
+    private boolean applyDelta(int row, int outlet, int delta) {
+        int made = changeCell(row, outlet, () -> {
+            matrix.adjustStock(row, outlet, delta);
+            return delta;
+        });
+        if (made == FAILED || made == REFUSED) return false;
+        changed(matrix.getModelId(row), outlet);
+        return true;
+    }
+
+    /**
+     * Makes a change to one cell and journals it. attempt changes the cell
+     * with its atomic operation and returns the delta it made (0: nothing
+     * to record) or REFUSED. The delta is then appended with
+     * StockJournal.appendIf; if other terminals' records make it invalid,
+     * or a new snapshot must be loaded first, the change is undone, we
+     * catch up and attempt once more.
+     * @return the delta recorded, REFUSED or FAILED (journal write failed)
+     */
+    private int changeCell(int row, int outlet, IntSupplier attempt) {
+        for (int tries = 0; ; tries++) {
+            StockJournal.Outcome outcome;
+            changes.readLock().lock();
+            try {
+                int delta = attempt.getAsInt();
+                if (delta == 0) return 0;
+                if (delta == REFUSED) {
+                    outcome = StockJournal.Outcome.REJECTED;
+                } else {
+                    // Only a removal can be invalidated: the others cannot take stock we never had
+                    outcome = StockJournal.appendIf(matrix.getModelId(row), outlet, delta,
+                            () -> delta > 0 || matrix.getStock(row, outlet) >= 0);
+                    if (outcome == StockJournal.Outcome.WRITTEN) return delta;
+                    matrix.adjustStock(row, outlet, -delta); // not recorded: take it back
+                }
+            } finally {
+                changes.readLock().unlock();
+            }
+            if (outcome == StockJournal.Outcome.FAILED) return FAILED;
+            if (tries > 0) return REFUSED;
+            // Our copy may be behind: another terminal's restock or a new snapshot
+            catchUp();
+        }
+    }
+
+    // Applies other terminals' records; a new model.csv is only loaded with no change in flight
+    private void catchUp() {
+        if (StockJournal.catchUp(false)) return;
+        changes.writeLock().lock();
+        try {
+            StockJournal.catchUp(true);
+        } finally {
+            changes.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs body with no single-cell change in flight in this JVM and the
+     * STOCK lock held, after catching up with other terminals (so it may
+     * write model.csv, or read a consistent copy of the whole inventory).
+     * @param body
+     * @return what body returns
+     */
+    public <T> T exclusively(Supplier<T> body) {
+        changes.writeLock().lock();
+        try {
+            return StockJournal.update(body);
+        } finally {
+            changes.writeLock().unlock();
+        }
+    }
+
+    private void changed(String modelId, int outlet) {
+        EventBus.publish(new EventBus.StockChanged(modelId, outlet));
+        checkpointIfDue();
+    }
+
+    // =================================================================
+    // CHECKPOINTS
+    // =================================================================
+
+    /** Folds the journal into a fresh model.csv snapshot. */
+    public boolean checkpoint() {
+        // Exclusively, so the snapshot includes every terminal's changes and none unwritten
+        return exclusively(() -> StockJournal.checkpoint(matrix.models()));
+    }
+
+    // Only the writer-lease holder folds the journal; the other terminals just append
+    private void checkpointIfDue() {
+        if (FileCoordinator.isWriter() && StockJournal.checkpointDue()) foldJournal();
+    }
+
+    // Also run on every lease heartbeat, so the journal is folded even when
+    // the writer terminal itself is idle and only the others are selling.
+    // Checked again under the lock so concurrent callers fold it only once.
+    private void foldJournal() {
+        exclusively(() -> StockJournal.checkpointDue() && StockJournal.checkpoint(matrix.models()));
+    }
+
+    // =================================================================
+    // OTHER TERMINALS (called by StockJournal under the STOCK lock; reload
+    // only while exclusively() holds the write lock, see catchUp)
+    // =================================================================
+
+    @Override
+    public void apply(StockJournal.Entry e) {
+        int row = matrix.rowOf(e.modelId);
+        if (row < 0 || e.outlet < 0 || e.outlet >= matrix.getOutletCount()) {
+            System.err.println("Skipping stock journal entry for unknown model/outlet: " + e.modelId);
+            return;
+        }
+        matrix.adjustStock(row, e.outlet, e.delta);
+        EventBus.publish(new EventBus.StockChanged(e.modelId, e.outlet));
+    }
+
+    @Override
+    public void reload() {
+        // Overwrites every row (and its price) with the new snapshot; new models are added
+        ModelReader.readSnapshot(matrix);
+        EventBus.publish(new EventBus.StockChanged(null, EventBus.StockChanged.ALL_OUTLETS));
+    }
+}
@@ -0,0 +1,120 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative longs with log-spaced buckets (HDR style):
+ * values below 64 get a bucket each, larger values get 32 buckets per
+ * power of two, so any percentile is within about 3% of the true value.
+ *
+ * Only non-empty buckets are stored (sorted bucket numbers with their
+ * counts), and two histograms merge by adding counts, so per-day
+ * histograms roll up exactly into months, years and all outlets.
+ */
+public class LogHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS; // buckets per power of two
+    private static final int LINEAR = SUB * 2;    // values below this are exact
+
+    private int[] buckets = new int[4];
+    private long[] counts = new long[4];
+    private int size = 0;
+    private long total = 0;
+
+    public void record(long value) {
+        add(bucketOf(Math.max(0, value)), 1);
+    }
+
+    /** Takes back one earlier record(value), e.g. for an edited sale. */
+    public void unrecord(long value) {
+        add(bucketOf(Math.max(0, value)), -1);
+    }
+
+    public void merge(LogHistogram other) {
+        for (int i = 0; i < other.size; i++) add(other.buckets[i], other.counts[i]);
+    }
+
+    private void add(int bucket, long n) {
+        total += n;
+        // Values mostly land in buckets already seen; check the end first for ascending inserts
+        int pos = size > 0 && buckets[size - 1] < bucket ? -(size + 1) : Arrays.binarySearch(buckets, 0, size, bucket);
+        if (pos >= 0) {
+            counts[pos] += n;
+            return;
+        }
+        pos = -pos - 1;
+        if (size == buckets.length) {
+            buckets = Arrays.copyOf(buckets, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        System.arraycopy(buckets, pos, buckets, pos + 1, size - pos);
+        System.arraycopy(counts, pos, counts, pos + 1, size - pos);
+        buckets[pos] = bucket;
+        counts[pos] = n;
+        size++;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    /**
+     * Value at a percentile (0-100); 0 when empty.
+     * @param percent e.g. 95 for p95
+     * @return the middle of the bucket holding that rank
+     */
+    public long percentile(double percent) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percent / 100.0));
+        long seen = 0;
+        for (int i = 0; i < size; i++) {
+            seen += counts[i];
+            if (seen >= rank) return (lowerBound(buckets[i]) + upperBound(buckets[i])) / 2;
+        }
+        return upperBound(buckets[size - 1]);
+    }
+
+    // =================================================================
+    // BUCKET LAYOUT
+    // =================================================================
+
+    static int bucketOf(long value) {
+        if (value < LINEAR) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB + (int) (value >>> shift) - SUB;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int shift = bucket / SUB - 1;
+        return (long) (SUB + bucket % SUB) << shift;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        return lowerBound(bucket + 1) - 1;
+    }
+
+    // =================================================================
+    // PERSISTENCE
+    // =================================================================
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(buckets[i]);
+            out.writeLong(counts[i]);
+        }
+    }
+
+    public static LogHistogram read(DataInputStream in) throws IOException {
+        LogHistogram h = new LogHistogram();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) h.add(in.readInt(), in.readLong());
+        return h;
+    }
+}
@@ -14,7 +14,7 @@ public class LoginAttendance extends JFrame {
     
     private final CardLayout cardLayout = new CardLayout();
     private final JPanel mainPanel = new JPanel(cardLayout);
-    private ArrayList<Employee> employeeList = new ArrayList<>();
+    private final ArrayList<Employee> employeeList = new ArrayList<>();
     
     private final Employee currentUser; 
     private final HashMap<String, LocalDateTime> activeSessions = new HashMap<>(); 
@@ -23,12 +23,6 @@ public class LoginAttendance extends JFrame {
     public LoginAttendance(Employee user) {
         this.currentUser = user; 
 
-        try {
-            employeeList = EmployeeReader.loadEmployees();
-        } catch (Exception e) {
-            System.out.println("Warning: EmployeeReader not found.");
-        }
-
         setupGUI();
         
         setTitle("Attendance & Dashboard - Logged in as: " + currentUser.getName());
@@ -36,7 +30,18 @@ public class LoginAttendance extends JFrame {
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        checkForActiveSession();
+        // Employees and the open attendance session are read off the event thread
+        AsyncTasks.run(() -> {
+            try {
+                return EmployeeReader.loadEmployees();
+            } catch (Exception e) {
+                System.out.println("Warning: EmployeeReader not found.");
+                return new ArrayList<Employee>();
+            }
+        }, list -> employeeList.addAll(list));
+        AsyncTasks.run(this::hasActiveSession, active -> {
+            if (active) activeSessions.put(currentUser.getId(), LocalDateTime.now());
+        });
     }
 
     public LoginAttendance() {
@@ -126,6 +131,7 @@ public class LoginAttendance extends JFrame {
             Attendance session = new Attendance(currentUser.getId(), currentUser.getName());
             activeSessions.put(currentUser.getId(), session.getClockInTime());
             AttendanceWriter.saveAttendance(session);
+            EventBus.publish(new EventBus.ClockIn(currentUser.getId(), session.getClockInString()));
             JOptionPane.showMessageDialog(this, "Clocked In at " + session.getClockInString());
         });
 
@@ -138,16 +144,19 @@ public class LoginAttendance extends JFrame {
             Attendance session = new Attendance(currentUser.getId(), currentUser.getName());
             session.performClockOut(); 
             
-            // 2. Update Record AND Get the calculated hours back
-            double hoursWorked = updateAttendanceRecord(currentUser.getId(), session.getClockOutString());
-            
-            if (hoursWorked >= 0) {
-                activeSessions.remove(currentUser.getId());
-                // 3. Display the HOURS returned from the FILE calculation
-                JOptionPane.showMessageDialog(this, "Clocked Out Successfully.\nHours Worked: " + String.format("%.2f", hoursWorked));
-            } else {
-                JOptionPane.showMessageDialog(this, "Error updating attendance file.");
-            }
+            // 2. Update Record AND Get the calculated hours back (file rewrite in the background)
+            clockOutBtn.setEnabled(false);
+            AsyncTasks.run(() -> updateAttendanceRecord(currentUser.getId(), session.getClockOutString()), hoursWorked -> {
+                clockOutBtn.setEnabled(true);
+                if (hoursWorked >= 0) {
+                    activeSessions.remove(currentUser.getId());
+                    EventBus.publish(new EventBus.ClockOut(currentUser.getId(), hoursWorked));
+                    // 3. Display the HOURS returned from the FILE calculation
+                    JOptionPane.showMessageDialog(this, "Clocked Out Successfully.\nHours Worked: " + String.format("%.2f", hoursWorked));
+                } else {
+                    JOptionPane.showMessageDialog(this, "Error updating attendance file.");
+                }
+            });
         });
 
         salesBtn.addActionListener(e -> new SalesSystemGUI(this.currentUser).setVisible(true)); 
@@ -167,9 +176,10 @@ public class LoginAttendance extends JFrame {
         saveUserBtn.addActionListener(e -> {
             Employee newEmp = new Employee(newId.getText(), newName.getText(), (String)roleBox.getSelectedItem(), newPass.getText());
             employeeList.add(newEmp);
-            EmployeeWriter.saveEmployee(newEmp);
-            JOptionPane.showMessageDialog(this, "Employee Saved!");
-            cardLayout.show(mainPanel, "DASH");
+            AsyncTasks.run(() -> EmployeeWriter.saveEmployee(newEmp), saved -> {
+                JOptionPane.showMessageDialog(this, saved ? "Employee Saved!" : "Error saving employee.");
+                cardLayout.show(mainPanel, "DASH");
+            });
         });
     }
 
@@ -184,25 +194,30 @@ public class LoginAttendance extends JFrame {
         
         DateTimeFormatter fullFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                
-                if (line.startsWith("Employee ID")) {
+        // The clock-in line may still be queued in the background writer
+        PersistenceWriter writer = PersistenceWriter.getInstance();
+        writer.drain();
+        writer.release(file.toPath());
+
+        try {
+            CsvTokenizer csv = CsvTokenizer.fromFile(file);
+            while (csv.next()) {
+                // Rows we do not change are copied back exactly as they were
+                String line = csv.rowText();
+                if (csv.fieldEquals(0, "Employee ID")) {
                     lines.add(line);
                     continue;
                 }
 
-                String[] parts = line.split(",");
                 // ID[0], Name[1], Date[2], In[3], Out[4]
-                if (parts.length >= 2 && parts[0].equals(userId)) {
-                    String existingOut = (parts.length > 4) ? parts[4].trim() : "Active";
+                if (csv.fieldCount() >= 2 && csv.fieldEquals(0, userId)) {
+                    String existingOut = (csv.fieldCount() > 4) ? csv.getString(4) : "Active";
                     
                     if (existingOut.equals("Active") || existingOut.equals("00:00") || existingOut.equals("null")) {
                         try {
-                            String name = parts[1];
-                            String dateStr = parts[2];
-                            String timeInStr = parts[3];
+                            String name = csv.getString(1);
+                            String dateStr = csv.getString(2);
+                            String timeInStr = csv.getString(3);
                             
                             // Parse Original In Time from File
                             LocalDateTime inTime = LocalDateTime.parse(dateStr + " " + timeInStr, fullFormatter);
@@ -215,7 +230,8 @@ public class LoginAttendance extends JFrame {
                             calculatedHours = minutes / 60.0; // Store the result
 
                             String updatedLine = String.format("%s,%s,%s,%s,%s,%.2f", 
-                                    userId, name, dateStr, timeInStr, clockOutTimeOnly, calculatedHours);
+                                    CsvTokenizer.escape(userId), CsvTokenizer.escape(name), dateStr, timeInStr,
+                                    clockOutTimeOnly, calculatedHours);
                             
                             lines.add(updatedLine);
                             recordFound = true;
@@ -235,34 +251,33 @@ public class LoginAttendance extends JFrame {
         }
 
         if (recordFound) {
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
-                for (String s : lines) {
-                    bw.write(s);
-                    bw.newLine();
-                }
+            // Temp file + atomic rename: a crash here cannot lose the attendance history
+            try {
+                AtomicFileWriter.writeLines(file.toPath(), lines);
                 return calculatedHours; // Return the hours we calculated!
             } catch (IOException e) { return -1.0; }
         }
         return -1.0; 
     }
     
-    private void checkForActiveSession() {
+    // Runs in the background: true if the current user has an open (not clocked out) record
+    private boolean hasActiveSession() {
         File file = new File(ATTENDANCE_FILE);
-        if(!file.exists()) return;
+        if(!file.exists()) return false;
         
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.startsWith("Employee ID")) continue;
+        try {
+            CsvTokenizer csv = CsvTokenizer.fromFile(file);
+            while (csv.next()) {
+                if (csv.fieldEquals(0, "Employee ID")) continue;
 
-                String[] parts = line.split(",");
-                if (parts.length >= 5 && parts[0].equals(currentUser.getId())) {
-                      String existingOut = parts[4].trim();
-                      if (existingOut.equals("Active") || existingOut.equals("00:00") || existingOut.equals("null")) {
-                          activeSessions.put(currentUser.getId(), LocalDateTime.now()); 
+                // Compared in place: no String per line or per field
+                if (csv.fieldCount() >= 5 && csv.fieldEquals(0, currentUser.getId())) {
+                      if (csv.fieldEquals(4, "Active") || csv.fieldEquals(4, "00:00") || csv.fieldEquals(4, "null")) {
+                          return true;
                       }
                 }
             }
         } catch (IOException e) {}
+        return false;
     }
 }
\ No newline at end of file
@@ -10,7 +10,7 @@ public class LoginFrame extends JFrame {
     private JButton btnLogin;
 
     public LoginFrame() {
-        setTitle("C60 System Login");
+        setTitle(OutletRegistry.homeCode() + " System Login");
         setSize(350, 200);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
@@ -35,47 +35,47 @@ public class LoginFrame extends JFrame {
         String inputID = txtID.getText().trim();
         String inputPass = new String(txtPass.getPassword());
 
-        boolean success = false;
-        
-        // We will store the full user object here if login succeeds
-        Employee loggedInUser = null; 
+        // employee.csv is read off the event thread; the button is off meanwhile
+        btnLogin.setEnabled(false);
+        AsyncTasks.run(() -> findEmployee(inputID, inputPass), loggedInUser -> {
+            btnLogin.setEnabled(true);
+            if (loggedInUser != null) {
+                JOptionPane.showMessageDialog(this, "Welcome, " + loggedInUser.getName() + " (" + OutletRegistry.homeCode() + ")");
 
-        try (BufferedReader br = new BufferedReader(new FileReader("employee.csv"))) {
-            br.readLine(); // Skip header
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                
-                // Safety check to ensure line has enough columns
-                if (data.length < 4) continue; 
+                this.dispose(); // Close login window
 
-                // data[0]=ID, data[1]=Name, data[2]=Role, data[3]=Password
-                if (data[0].equals(inputID) && data[3].equals(inputPass)) {
-                    success = true;
-                    // CREATE THE FULL EMPLOYEE OBJECT
-                    loggedInUser = new Employee(data[0], data[1], data[2], data[3]);
-                    break;
-                }
+                // PASS THE FULL OBJECT TO DASHBOARD
+                new MainDashboard(loggedInUser).setVisible(true);
+
+            } else {
+                JOptionPane.showMessageDialog(this, "Invalid ID or Password!", "Login Failed", JOptionPane.ERROR_MESSAGE);
             }
-        } catch (IOException e) {
+        }, error -> {
+            btnLogin.setEnabled(true);
             JOptionPane.showMessageDialog(this, "Error reading employee database.");
-            return;
-        }
+        });
+    }
 
-        if (success && loggedInUser != null) {
-            JOptionPane.showMessageDialog(this, "Welcome, " + loggedInUser.getName() + " (C60)");
-            
-            this.dispose(); // Close login window
-            
-            // PASS THE FULL OBJECT TO DASHBOARD
-            new MainDashboard(loggedInUser).setVisible(true);
-            
-        } else {
-            JOptionPane.showMessageDialog(this, "Invalid ID or Password!", "Login Failed", JOptionPane.ERROR_MESSAGE);
+    // Returns the full user object if the ID and password match, otherwise null
+    private static Employee findEmployee(String inputID, String inputPass) throws IOException {
+        CsvTokenizer csv = CsvTokenizer.fromFile(new File("employee.csv"));
+        csv.next(); // Skip header
+        while (csv.next()) {
+            // Safety check to ensure line has enough columns
+            if (csv.fieldCount() < 4) continue;
+
+            // [0]=ID, [1]=Name, [2]=Role, [3]=Password (compared without allocating)
+            if (csv.fieldEquals(0, inputID) && csv.fieldEquals(3, inputPass)) {
+                // CREATE THE FULL EMPLOYEE OBJECT
+                return new Employee(csv.getString(0), csv.getString(1), csv.getString(2), csv.getString(3));
+            }
         }
+        return null;
     }
     
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new LoginFrame().setVisible(true));
+        SwingUtilities.invokeLater(() -> {
+            if (MAIN.claimTerminal()) new LoginFrame().setVisible(true);
+        });
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.mycompany.aidahtestproject;
 
+import java.io.UncheckedIOException;
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 
 public class MAIN {
@@ -8,7 +10,24 @@ public class MAIN {
         // Once the user logs in successfully, the LoginFrame 
         // will automatically open the MainDashboard for us.
         SwingUtilities.invokeLater(() -> {
+            if (!claimTerminal()) return;
             new LoginFrame().setVisible(true);
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Claims this till's terminal number (TerminalIdentity) before anything
+     * can issue a reference number; on a clash, says why and exits.
+     * @return true if the app may start
+     */
+    static boolean claimTerminal() {
+        try {
+            TerminalIdentity.number();
+            return true;
+        } catch (IllegalStateException | UncheckedIOException e) {
+            JOptionPane.showMessageDialog(null, e.getMessage(), "Cannot start", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+            return false;
+        }
+    }
+}
@@ -16,7 +16,7 @@ public class MainDashboard extends JFrame {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); 
         } catch (Exception e) {}
 
-        setTitle("C60 Outlet Management System - Logged in as: " + user.getName());
+        setTitle(OutletRegistry.homeCode() + " Outlet Management System - Logged in as: " + user.getName());
         setSize(550, 500); 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null); 
@@ -44,6 +44,7 @@ public class MainDashboard extends JFrame {
         JButton btnStockCount = new JButton("Stock Count");
         JButton btnSearchEdit = new JButton("Search & Edit Data"); 
         JButton btnAnalytics = new JButton("Analytics Report");
+        JButton btnStatus = new JButton("Terminal Status");
         JButton btnExit = new JButton("Logout"); 
 
         buttonPanel.add(btnAttendance);
@@ -52,10 +53,22 @@ public class MainDashboard extends JFrame {
         buttonPanel.add(btnStockCount);
         buttonPanel.add(btnSearchEdit);
         buttonPanel.add(btnAnalytics);
+        buttonPanel.add(btnStatus);
         buttonPanel.add(btnExit);
 
         add(buttonPanel, BorderLayout.CENTER);
 
+        // Load the shared inventory and sales in the background while the menu is up,
+        // so the windows below open without reading files on the event thread
+        AsyncTasks.run(() -> {
+            InventoryService.getInstance();
+            SalesRepository.getInstance();
+        });
+
+        // Outlets with a head office configured ship their sales there as they happen
+        String headOffice = System.getProperty("goldenhour.headOffice");
+        if (headOffice != null && !headOffice.isBlank()) SalesReplicator.start(headOffice);
+
         // --- NAVIGATION LOGIC ---
         
         // 1. Attendance
@@ -89,7 +102,15 @@ public class MainDashboard extends JFrame {
             }
         });
 
-        // 7. Logout Logic
+        // 7. Terminal Status: lock waits and which terminal holds the writer role
+        btnStatus.addActionListener(e -> {
+            JTextArea report = new JTextArea(FileCoordinator.report());
+            report.setFont(new Font("Monospaced", Font.PLAIN, 12));
+            report.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(report), "Terminal Status", JOptionPane.INFORMATION_MESSAGE);
+        });
+
+        // 8. Logout Logic
         btnExit.addActionListener(e -> {
             int confirm = JOptionPane.showConfirmDialog(this, 
                 "Are you sure you want to logout?", "Logout", JOptionPane.YES_NO_OPTION);
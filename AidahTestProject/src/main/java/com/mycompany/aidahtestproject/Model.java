@@ -10,35 +10,67 @@ package com.mycompany.aidahtestproject;
  */
 import java.util.Arrays;
 
+/**
+ * A single model's row in an InventoryMatrix. Holds no stock of its own:
+ * every getter and setter reads or writes the shared matrix.
+ */
 public class Model {
-    private String modelId;
-    private double price; // Changed to double for RM/Currency
-    private int[] stockQuantity;
+    private final InventoryMatrix matrix;
+    private final int row;
     
+    // Standalone model (e.g. a new model not loaded from model.csv yet)
     public Model (String modelId, double price, int[] stockQuantity){
-        this.modelId = modelId;
-        this.price = price;
-        this.stockQuantity = stockQuantity;
+        this.matrix = new InventoryMatrix(stockQuantity.length);
+        this.row = matrix.addModel(modelId, price, stockQuantity);
+    }
+    
+    // View onto an existing matrix row
+    Model (InventoryMatrix matrix, int row){
+        this.matrix = matrix;
+        this.row = row;
     }
     
     // Getters
-    public String getModelId (){ return modelId; }
-    public double getPrice (){ return price; }
-    public int[] getStockQuantity (){ return stockQuantity; }
+    public String getModelId (){ return matrix.getModelId(row); }
+    public double getPrice (){ return matrix.getPrice(row); }
+    public int getRow (){ return row; }
+    public InventoryMatrix getMatrix (){ return matrix; }
+    public int getOutletCount (){ return matrix.getOutletCount(); }
+    // Changes whenever this row's stock or price does (see InventoryMatrix)
+    public long getVersion (){ return matrix.getVersion(row); }
+    
+    // Stock for one outlet (index from OutletRegistry)
+    public int getStock (int outletIndex){ return matrix.getStock(row, outletIndex); }
+    public int getTotalStock (){ return matrix.modelTotal(row); }
+    
+    // Returns a COPY of the stock row; use setStock/adjustStock to change stock
+    public int[] getStockQuantity (){ return matrix.copyRow(row); }
+    
+    public void setPrice (double price){
+        matrix.setPrice(row, price);
+    }
+    
+    public void setStock (int outletIndex, int qty){
+        matrix.setStock(row, outletIndex, qty);
+    }
+    
+    public int adjustStock (int outletIndex, int delta){
+        return matrix.adjustStock(row, outletIndex, delta);
+    }
     
     // Fixed Setter: Now accepts an array to actually update stock
     public void setStockQuantity (int[] stockQuantity){
-        this.stockQuantity = stockQuantity;
+        matrix.setRow(row, stockQuantity);
     }
 
     // Helper for GUI Tables: Returns stock as a simple string
     public String getStockDisplay() {
-        return Arrays.toString(stockQuantity).replace("[", "").replace("]", "");
+        return Arrays.toString(getStockQuantity()).replace("[", "").replace("]", "");
     }
     
     @Override
     public String toString (){
         return String.format("%s | Price: RM%.2f | Stock: %s", 
-            modelId, price, Arrays.toString(stockQuantity));
+            getModelId(), getPrice(), Arrays.toString(getStockQuantity()));
     }
 }
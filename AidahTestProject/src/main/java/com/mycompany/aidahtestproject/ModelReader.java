@@ -11,57 +11,93 @@ package com.mycompany.aidahtestproject;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 public class ModelReader {
     
     /**
      * Loads models from the CSV file.Improved to handle variable stock lengths and prevent crashes.
-     * @return
+     * @return one Model view per row of a freshly loaded InventoryMatrix
      */
     public static ArrayList<Model> loadModels() {
-        ArrayList<Model> models = new ArrayList<>();
+        return loadMatrix().models();
+    }
+
+    /**
+     * Loads model.csv (plus the stock journal) into one InventoryMatrix.
+     * @return
+     */
+    public static InventoryMatrix loadMatrix() {
+        // Starts with no outlet columns; the matrix widens to the longest row
+        InventoryMatrix matrix = new InventoryMatrix(0);
+        // Locked so another terminal cannot checkpoint between the snapshot and the journal
+        FileCoordinator.runShared(FileCoordinator.STOCK, () -> {
+            readSnapshot(matrix);
+            // model.csv is only a snapshot: bring it up to date from the stock journal
+            StockJournal.replay(matrix.models());
+        });
+        return matrix;
+    }
+
+    /**
+     * Reads model.csv into a matrix; rows for models already in it are
+     * overwritten (price and stock), new models are added. Stock columns
+     * are placed by the outlet code in the header (OutletRegistry), not by
+     * their position in the file.
+     * @param matrix
+     */
+    static void readSnapshot(InventoryMatrix matrix) {
         File file = new File("model.csv");
 
         // Check if file exists first to avoid FileNotFoundException
         if (!file.exists()) {
             System.err.println("Critical Error: model.csv not found!");
-            return models; 
+            return;
         }
 
-        try (Scanner sc = new Scanner(file)) {
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine().trim();
-                
-                // Skip empty lines
-                if (line.isEmpty()) continue;
+        try {
+            CsvTokenizer csv = CsvTokenizer.fromFile(file);
+            boolean header = true;
+            int[] outletOfColumn = null; // null: no header, columns are outlet indices in order
+            while (csv.next()) {
+                // First line: seq,N (how far the stock journal is folded in; StockJournal reads it)
+                if (header && csv.fieldEquals(0, StockJournal.SEQ_FIELD)) continue;
+                // Header row: Model, Price, C60, C61, ...
+                if (header) {
+                    header = false;
+                    if (csv.fieldEquals(0, "Model")) {
+                        outletOfColumn = new int[Math.max(0, csv.fieldCount() - 2)];
+                        for (int i = 0; i < outletOfColumn.length; i++) {
+                            outletOfColumn[i] = OutletRegistry.indexOrAdd(csv.getString(i + 2));
+                        }
+                        continue;
+                    }
+                }
 
-                String[] data = line.split(",");
-                
                 try {
-                    String modelId = data[0];
-                    // Changed to Double.parseDouble to match the new Model class
-                    double price = Double.parseDouble(data[1]);
+                    // Price parsed in place (no substring per field)
+                    double price = csv.getDouble(1);
 
                     // Dynamically calculate stock columns 
                     // This allows you to have more or fewer than 10 outlets
-                    int stockCount = data.length - 2;
-                    int[] stockQuantity = new int[stockCount];
+                    int stockCount = csv.fieldCount() - 2;
+                    // One slot per known outlet, so every outlet has a column even if the file lacks it
+                    int[] stockQuantity = new int[Math.max(stockCount, OutletRegistry.count())];
                     
                     for (int i = 0; i < stockCount; i++) {
-                        stockQuantity[i] = Integer.parseInt(data[i + 2].trim());
+                        int outlet = outletOfColumn != null && i < outletOfColumn.length ? outletOfColumn[i] : i;
+                        if (outlet >= stockQuantity.length) stockQuantity = java.util.Arrays.copyOf(stockQuantity, outlet + 1);
+                        stockQuantity[outlet] = csv.getInt(i + 2);
                     }
 
-                    models.add(new Model(modelId, price, stockQuantity));
+                    matrix.addModel(csv.getString(0), price, stockQuantity);
                     
                 } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
                     // Skips only the "bad" line in the CSV instead of crashing the whole load
-                    System.err.println("Skipping malformed data row: " + line);
+                    System.err.println("Skipping malformed data row: " + csv.rowText());
                 }
             }
         } catch (IOException e) {
+            System.err.println("Error reading model.csv: " + e.getMessage());
         }
-        
-        return models;
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The outlets, read once from outlet.csv (OutletCode,OutletName).
+ *
+ * Each outlet gets a dense index in file order: the stock column in the
+ * InventoryMatrix, the outlet field of a sale in sales.dat and the outlet
+ * of a stock journal record. model.csv columns are matched to outlets by
+ * their header code, so its column order does not matter, and a code it
+ * has that outlet.csv lacks is added at the next index.
+ *
+ * A terminal works for one outlet, set with -Dgoldenhour.outlet=C61
+ * (default C60). Sales, stock counts and movements use home().
+ */
+public final class OutletRegistry {
+
+    public static final String OUTLET_FILE = "outlet.csv";
+    private static final String DEFAULT_HOME = "C60";
+
+    // Replaced (never changed in place) when an outlet is added, so readers need no lock
+    private static volatile String[] codes = new String[0];
+    private static volatile String[] names = new String[0];
+    private static final Map<String, Integer> indexByCode = new ConcurrentHashMap<>();
+    private static volatile boolean loaded = false;
+    private static int home;
+
+    private OutletRegistry() { }
+
+    // =================================================================
+    // LOOKUP
+    // =================================================================
+
+    /** Number of known outlets (indices 0 .. count()-1). */
+    public static int count() {
+        ensureLoaded();
+        return codes.length;
+    }
+
+    /**
+     * @param code e.g. "C61" (case-insensitive)
+     * @return the outlet's index, or -1 if unknown
+     */
+    public static int indexOf(String code) {
+        ensureLoaded();
+        Integer i = code == null ? null : indexByCode.get(key(code));
+        return i == null ? -1 : i;
+    }
+
+    /** Outlet code for an index, e.g. "C60". */
+    public static String code(int index) {
+        String[] c = codes;
+        return index >= 0 && index < c.length ? c[index] : "OUTLET" + index;
+    }
+
+    /** Outlet name for an index, e.g. "Kuala Lumpur City Centre". */
+    public static String name(int index) {
+        String[] n = names;
+        return index >= 0 && index < n.length ? n[index] : code(index);
+    }
+
+    /** "C60 - Kuala Lumpur City Centre" */
+    public static String label(int index) {
+        return code(index) + " - " + name(index);
+    }
+
+    /** Index of the outlet this terminal works for. */
+    public static int home() {
+        ensureLoaded();
+        return home;
+    }
+
+    public static String homeCode() { return code(home()); }
+
+    /**
+     * Index for a code, adding it (named after its code) if it is new.
+     * Used for outlet columns found in model.csv.
+     * @param code
+     * @return
+     */
+    static synchronized int indexOrAdd(String code) {
+        int i = indexOf(code);
+        if (i >= 0) return i;
+        add(code.trim(), code.trim());
+        System.err.println("Outlet " + code + " is not in " + OUTLET_FILE + "; added as index " + (codes.length - 1));
+        return codes.length - 1;
+    }
+
+    // =================================================================
+    // LOADING
+    // =================================================================
+
+    private static void ensureLoaded() {
+        if (!loaded) load();
+    }
+
+    private static synchronized void load() {
+        if (loaded) return;
+        File file = new File(OUTLET_FILE);
+        if (file.exists()) {
+            try {
+                CsvTokenizer csv = CsvTokenizer.fromFile(file);
+                boolean header = true;
+                while (csv.next()) {
+                    if (header) {
+                        header = false;
+                        if (csv.fieldEquals(0, "OutletCode")) continue;
+                    }
+                    if (csv.fieldCount() < 1 || csv.getString(0).trim().isEmpty()) continue;
+                    String code = csv.getString(0).trim();
+                    if (indexByCode.containsKey(key(code))) continue; // first one wins
+                    add(code, csv.fieldCount() >= 2 ? csv.getString(1).trim() : code);
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading " + OUTLET_FILE + ": " + e.getMessage());
+            }
+        } else {
+            System.err.println(OUTLET_FILE + " not found; outlets are taken from model.csv.");
+        }
+
+        String homeCode = System.getProperty("goldenhour.outlet", DEFAULT_HOME).trim();
+        if (!indexByCode.containsKey(key(homeCode))) add(homeCode, homeCode);
+        home = indexByCode.get(key(homeCode));
+        loaded = true;
+    }
+
+    private static void add(String code, String name) {
+        String[] c = Arrays.copyOf(codes, codes.length + 1);
+        String[] n = Arrays.copyOf(names, names.length + 1);
+        c[c.length - 1] = code;
+        n[n.length - 1] = name;
+        indexByCode.put(key(code), c.length - 1);
+        // Names before codes: a reader that sees the new code also sees its name
+        names = n;
+        codes = c;
+    }
+
+    private static String key(String code) {
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+}
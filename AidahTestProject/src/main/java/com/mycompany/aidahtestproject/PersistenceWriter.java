@@ -0,0 +1,390 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One background thread that does all appends for sales, attendance and
+ * receipts ("group commit").
+ *
+ * Callers hand over a record and get a CompletableFuture straight away,
+ * so the Swing thread never waits for the disk. The writer thread keeps
+ * each file's channel open, gathers everything that arrives within the
+ * commit window into one batch, writes it, calls force() once per file
+ * and then completes every future in the batch. In a busy period many
+ * sales share a single fsync. A file that cannot be written or forced
+ * fails only its own records, and what was written of them is cut off
+ * again; anything else going wrong fails the batch in hand, and the
+ * thread carries on with the next one.
+ *
+ * Other terminals may append to the same files, so each batch holds the
+ * FileCoordinator lock of every file it writes (named after the file,
+ * unless the caller names one), and a cached channel is reopened if
+ * another terminal has replaced the file since. A Deferred record is
+ * only built on the writer thread with that lock held, for journals
+ * whose next record depends on what the others wrote (stock.journal).
+ *
+ * The commit window (ms) can be set with -Dgoldenhour.commitWindowMs.
+ */
+public class PersistenceWriter {
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final long COMMIT_WINDOW_MS = Long.getLong("goldenhour.commitWindowMs", 10);
+
+    private static PersistenceWriter instance;
+
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<Path, FileChannel> channels = new LinkedHashMap<>();
+    private final Map<Path, Object> fileKeys = new HashMap<>();
+    private final long windowNanos;
+    private final Thread thread;
+
+    private enum Kind { WRITE, BARRIER, CLOSE }
+
+    /**
+     * A record built on the writer thread, with its lock held, just
+     * before it is written.
+     */
+    public interface Deferred {
+        /**
+         * @return the bytes to append, or null to write nothing (the future then completes with -1)
+         * @throws java.io.IOException fails just this record
+         */
+        ByteBuffer encode() throws IOException;
+
+        /** The encoded record did not make it to disk; called before the lock is released. */
+        default void failed() { }
+    }
+
+    private static class Request {
+        final Kind kind;
+        final Path file;
+        final String lock;
+        final ByteBuffer data;
+        final Deferred deferred;
+        final ByteBuffer headerIfEmpty;
+        final ByteBuffer separatorIfNotEmpty;
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+        boolean encoded = false;
+
+        Request(Kind kind, Path file, String lock, ByteBuffer data, Deferred deferred,
+                ByteBuffer headerIfEmpty, ByteBuffer separatorIfNotEmpty) {
+            this.kind = kind;
+            this.file = file;
+            this.lock = lock;
+            this.data = data;
+            this.deferred = deferred;
+            this.headerIfEmpty = headerIfEmpty;
+            this.separatorIfNotEmpty = separatorIfNotEmpty;
+        }
+
+        static Request control(Kind kind, Path file) {
+            return new Request(kind, file, null, null, null, null, null);
+        }
+
+        void fail(Throwable e) {
+            if (encoded && deferred != null) deferred.failed();
+            done.completeExceptionally(e);
+        }
+    }
+
+    public PersistenceWriter(long commitWindowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(commitWindowMillis);
+        this.thread = new Thread(this::run, "persistence-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public static synchronized PersistenceWriter getInstance() {
+        if (instance == null) {
+            instance = new PersistenceWriter(COMMIT_WINDOW_MS);
+            // Make sure queued records reach the disk when the app closes
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::shutdown, "persistence-writer-shutdown"));
+        }
+        return instance;
+    }
+
+    // =================================================================
+    // CALLER SIDE
+    // =================================================================
+
+    /**
+     * Queues bytes to append to a file.
+     * @param file
+     * @param data
+     * @param headerIfEmpty written first if the file is empty (may be null)
+     * @param separatorIfNotEmpty written first if the file already has data (may be null)
+     * @return completes with the offset of data once it has been forced to disk
+     */
+    public CompletableFuture<Long> append(Path file, ByteBuffer data, ByteBuffer headerIfEmpty, ByteBuffer separatorIfNotEmpty) {
+        Path path = file.toAbsolutePath();
+        return enqueue(new Request(Kind.WRITE, path, path.getFileName().toString(), data, null,
+                headerIfEmpty, separatorIfNotEmpty));
+    }
+
+    /**
+     * Queues a record that is only built on the writer thread, holding the
+     * FileCoordinator lock named lock. Records queued here share the
+     * batch's force() like any other.
+     * @param file
+     * @param lock FileCoordinator resource that guards the file
+     * @param record
+     * @return completes with the offset of the record once it is on disk, or -1 if encode() wrote nothing
+     */
+    public CompletableFuture<Long> append(Path file, String lock, Deferred record) {
+        return enqueue(new Request(Kind.WRITE, file.toAbsolutePath(), lock, null, record, null, null));
+    }
+
+    public CompletableFuture<Long> append(Path file, ByteBuffer data) {
+        return append(file, data, null, null);
+    }
+
+    /** Appends UTF-8 text; headerIfEmpty/separatorIfNotEmpty may be null. */
+    public CompletableFuture<Long> appendText(Path file, String text, String headerIfEmpty, String separatorIfNotEmpty) {
+        return append(file, utf8(text), headerIfEmpty == null ? null : utf8(headerIfEmpty),
+                separatorIfNotEmpty == null ? null : utf8(separatorIfNotEmpty));
+    }
+
+    /**
+     * Blocks until everything queued before this call is on disk, or has
+     * failed (which only that record's own future reports).
+     */
+    public void drain() {
+        enqueue(Request.control(Kind.BARRIER, null)).join();
+    }
+
+    /**
+     * Closes the cached channel for a file (e.g. before it is replaced by a
+     * new snapshot). The next append reopens it.
+     */
+    public void release(Path file) {
+        enqueue(Request.control(Kind.CLOSE, file.toAbsolutePath())).join();
+    }
+
+    private CompletableFuture<Long> enqueue(Request r) {
+        try {
+            // Only blocks if 4096 records are already waiting (disk far behind)
+            queue.put(r);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            r.fail(e);
+        }
+        return r.done;
+    }
+
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // =================================================================
+    // WRITER THREAD
+    // =================================================================
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                // Collect whatever else arrives within the commit window
+                long deadline = System.nanoTime() + windowNanos;
+                long wait;
+                while ((wait = deadline - System.nanoTime()) > 0) {
+                    Request next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                queue.drainTo(batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // E.g. a file lock could not be taken: fail what is still open, keep the thread
+                System.err.println("Error committing " + batch.size() + " queued write(s): " + e);
+                for (Request r : batch) r.fail(e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        List<FileCoordinator.Lock> locks = lockFiles(batch);
+        try {
+            writeBatch(batch);
+        } catch (RuntimeException e) {
+            // Fail what is still open while the locks are held, so Deferred.failed() runs under them
+            System.err.println("Error committing " + batch.size() + " queued write(s): " + e);
+            for (Request r : batch) {
+                if (!r.done.isDone()) r.fail(e);
+            }
+        } finally {
+            for (FileCoordinator.Lock lock : locks) lock.close();
+        }
+    }
+
+    // Sorted by name, so two terminals always lock in the same order and cannot deadlock
+    private static List<FileCoordinator.Lock> lockFiles(List<Request> batch) {
+        TreeSet<String> names = new TreeSet<>();
+        for (Request r : batch) {
+            if (r.kind == Kind.WRITE) names.add(r.lock);
+        }
+        List<FileCoordinator.Lock> locks = new ArrayList<>(names.size());
+        try {
+            for (String name : names) locks.add(FileCoordinator.exclusive(name));
+        } catch (RuntimeException e) {
+            for (FileCoordinator.Lock lock : locks) lock.close();
+            throw e;
+        }
+        return locks;
+    }
+
+    private void writeBatch(List<Request> batch) {
+        // 1. Write everything in arrival order, remembering which files were touched
+        //    and how long each was before this batch, to cut off a failed write
+        Map<Path, FileChannel> touched = new LinkedHashMap<>();
+        Map<Path, Long> sizeBefore = new HashMap<>();
+        List<Request> written = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        for (Request r : batch) {
+            if (r.kind == Kind.CLOSE) {
+                forceAll(touched, sizeBefore, written, offsets);
+                closeChannel(r.file);
+                r.done.complete(0L);
+                continue;
+            }
+            if (r.kind == Kind.BARRIER) {
+                written.add(r);
+                offsets.add(0L);
+                continue;
+            }
+            long start = -1;
+            FileChannel ch = null;
+            try {
+                ch = channel(r.file);
+                start = ch.size();
+                ByteBuffer data = r.data;
+                if (r.deferred != null) {
+                    data = r.deferred.encode();
+                    if (data == null) {
+                        r.done.complete(-1L);
+                        continue;
+                    }
+                    r.encoded = true;
+                }
+                if (start == 0 && r.headerIfEmpty != null) writeFully(ch, r.headerIfEmpty);
+                else if (start > 0 && r.separatorIfNotEmpty != null) writeFully(ch, r.separatorIfNotEmpty);
+                long offset = ch.size();
+                writeFully(ch, data);
+                sizeBefore.putIfAbsent(r.file, start);
+                touched.put(r.file, ch);
+                written.add(r);
+                offsets.add(offset);
+            } catch (IOException e) {
+                System.err.println("Error writing " + r.file.getFileName() + ": " + e.getMessage());
+                if (ch != null && start >= 0) truncate(r.file, ch, start);
+                closeChannel(r.file);
+                r.fail(e);
+            }
+        }
+        // 2. One force per file, then tell the callers
+        forceAll(touched, sizeBefore, written, offsets);
+    }
+
+    // A failed force only fails the records written to that file, which are cut off again
+    private void forceAll(Map<Path, FileChannel> touched, Map<Path, Long> sizeBefore, List<Request> written, List<Long> offsets) {
+        Map<Path, IOException> failures = new HashMap<>();
+        for (Map.Entry<Path, FileChannel> e : touched.entrySet()) {
+            try {
+                e.getValue().force(false);
+            } catch (IOException ex) {
+                System.err.println("Error forcing " + e.getKey().getFileName() + ": " + ex.getMessage());
+                failures.put(e.getKey(), ex);
+                truncate(e.getKey(), e.getValue(), sizeBefore.get(e.getKey()));
+                closeChannel(e.getKey());
+            }
+        }
+        for (int i = 0; i < written.size(); i++) {
+            Request r = written.get(i);
+            IOException failure = r.file == null ? null : failures.get(r.file);
+            if (failure != null) r.fail(failure);
+            else r.done.complete(offsets.get(i));
+        }
+        touched.clear();
+        sizeBefore.clear();
+        written.clear();
+        offsets.clear();
+    }
+
+    // Best effort: a record that is not acknowledged should not turn up in the file later
+    private static void truncate(Path file, FileChannel ch, long size) {
+        try {
+            if (ch.size() > size) ch.truncate(size);
+        } catch (IOException e) {
+            System.err.println("Error cutting off a failed write to " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private FileChannel channel(Path file) throws IOException {
+        FileChannel ch = channels.get(file);
+        if (ch != null && ch.isOpen() && !Objects.equals(fileKeys.get(file), fileKey(file))) {
+            // Replaced by another terminal: appending to the old one would lose the record
+            closeChannel(file);
+            ch = null;
+        }
+        if (ch == null || !ch.isOpen()) {
+            ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            channels.put(file, ch);
+            fileKeys.put(file, fileKey(file));
+        }
+        return ch;
+    }
+
+    // Identifies the file itself (inode), not its name; null where unsupported
+    private static Object fileKey(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void closeChannel(Path file) {
+        FileChannel ch = channels.remove(file);
+        fileKeys.remove(file);
+        if (ch == null) return;
+        try {
+            ch.close();
+        } catch (IOException e) {
+            // Nothing useful to do; the next append reopens the file
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        ByteBuffer b = buf.duplicate();
+        while (b.hasRemaining()) ch.write(b);
+    }
+
+    private void shutdown() {
+        if (!thread.isAlive()) return;
+        drain();
+        thread.interrupt();
+        for (Path p : new ArrayList<>(channels.keySet())) closeChannel(p);
+    }
+}
@@ -1,39 +1,33 @@
 package com.mycompany.aidahtestproject;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 public class ReceiptWriter {
 
-    public static String saveReceiptToFile(Sale sale) {
+    /**
+     * Queues a receipt for the daily receipt file.
+     * @param sale
+     * @return completes with the file name once the receipt is on disk
+     */
+    public static CompletableFuture<String> saveReceiptToFile(Sale sale) {
         // 1. Get the date part only (yyyy-MM-dd) to be used as filename
         // Assumes sale.getDate() returns format "yyyy-MM-dd HH:mm"
         String dateOnly = sale.getDate().split(" ")[0]; 
         String fileName = "SalesReceipts_" + dateOnly + ".txt";
-        
-        File file = new File(fileName);
 
-        // 2. Open FileWriter with 'true' to enable APPEND mode
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file, true))) {
-            
-            // Add a separator if the file already exists (not the first receipt of the day)
-            if (file.length() > 0) {
-                bw.newLine();
-                bw.write("------------------------------------------------------------");
-                bw.newLine();
-                bw.newLine();
-            }
+        // 2. Separator goes in front if this is not the first receipt of the day
+        String nl = System.lineSeparator();
+        String separator = nl + "------------------------------------------------------------" + nl + nl;
 
-            // 3. Write the receipt content
-            bw.write(sale.generateReceipt());
-            
-            return fileName; // Return filename to confirm success
-            
-        } catch (IOException e) {
-            System.err.println("Error saving receipt: " + e.getMessage());
-            return null;
-        }
+        return PersistenceWriter.getInstance()
+                .appendText(Paths.get(fileName), sale.generateReceipt(), null, separator)
+                .handle((offset, error) -> {
+                    if (error != null) {
+                        System.err.println("Error saving receipt: " + error.getMessage());
+                        return null;
+                    }
+                    return fileName; // Return filename to confirm success
+                });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,148 @@
+package com.mycompany.aidahtestproject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues unique, increasing sale reference numbers without locking.
+ *
+ * Each ID is a 64-bit number in the style of Snowflake:
+ *   41 bits  milliseconds since 2024-01-01 UTC
+ *   10 bits  terminal ID (0-1023, from TerminalIdentity)
+ *   12 bits  sequence within the millisecond
+ *
+ * The last (millisecond, sequence) pair lives in one AtomicLong and is
+ * advanced with compare-and-set, so concurrent callers never get the same
+ * value. If the sequence runs out, or the system clock steps backwards,
+ * the generator simply keeps counting from the last millisecond it used
+ * instead of waiting or repeating.
+ *
+ * As text: "REF" + yyMMddHHmmssSSS (UTC) + 4-digit terminal + 4-digit sequence,
+ * e.g. REF25101714351200700010042.
+ */
+public final class ReferenceGenerator {
+
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+
+    private static final int TERMINAL_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_TERMINAL = (1 << TERMINAL_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // Created on first use, so a missing or clashing terminal number fails there rather than in class init
+    private static volatile ReferenceGenerator defaultGenerator;
+
+    private final int terminalId;
+    // (millis since EPOCH << SEQUENCE_BITS) | sequence of the last ID issued
+    private final AtomicLong last = new AtomicLong();
+
+    public ReferenceGenerator(int terminalId) {
+        if (terminalId < 0 || terminalId > MAX_TERMINAL) {
+            throw new IllegalArgumentException("Terminal ID must be 0-" + MAX_TERMINAL + ": " + terminalId);
+        }
+        this.terminalId = terminalId;
+    }
+
+    /**
+     * The generator for this terminal's number (TerminalIdentity).
+     * @return
+     * @throws IllegalStateException if this terminal has no usable number
+     */
+    public static ReferenceGenerator getDefault() {
+        ReferenceGenerator g = defaultGenerator;
+        if (g == null) {
+            synchronized (ReferenceGenerator.class) {
+                if (defaultGenerator == null) defaultGenerator = new ReferenceGenerator(TerminalIdentity.number());
+                g = defaultGenerator;
+            }
+        }
+        return g;
+    }
+
+    /** A new reference number from the default generator. */
+    public static String nextReference() {
+        return format(getDefault().nextId());
+    }
+
+    public long nextId() {
+        while (true) {
+            long prev = last.get();
+            long prevMillis = prev >>> SEQUENCE_BITS;
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+
+            long next;
+            if (now > prevMillis) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                // Same millisecond, or the clock went backwards: keep counting.
+                // A full sequence carries into the next millisecond.
+                next = prev + 1;
+            }
+            if (last.compareAndSet(prev, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                long seq = next & SEQUENCE_MASK;
+                return (millis << (TERMINAL_BITS + SEQUENCE_BITS)) | ((long) terminalId << SEQUENCE_BITS) | seq;
+            }
+        }
+    }
+
+    public int getTerminalId() {
+        return terminalId;
+    }
+
+    // =================================================================
+    // DECODING / FORMATTING
+    // =================================================================
+
+    public static long timestampOf(long id) {
+        return (id >>> (TERMINAL_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int terminalOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_TERMINAL);
+    }
+
+    public static int sequenceOf(long id) {
+        return (int) (id & SEQUENCE_MASK);
+    }
+
+    /** Formats an ID as its reference string (no DateTimeFormatter, so it stays cheap). */
+    public static String format(long id) {
+        long millis = timestampOf(id);
+        long days = Math.floorDiv(millis, DAY_MS);
+        long msOfDay = millis - days * DAY_MS;
+
+        // Civil date from days since 1970-01-01 (H. Hinnant's algorithm)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] out = new char[3 + 15 + 4 + 4];
+        out[0] = 'R'; out[1] = 'E'; out[2] = 'F';
+        int p = 3;
+        p = put(out, p, year % 100, 2);
+        p = put(out, p, month, 2);
+        p = put(out, p, day, 2);
+        p = put(out, p, msOfDay / 3_600_000, 2);
+        p = put(out, p, msOfDay / 60_000 % 60, 2);
+        p = put(out, p, msOfDay / 1000 % 60, 2);
+        p = put(out, p, msOfDay % 1000, 3);
+        p = put(out, p, terminalOf(id), 4);
+        put(out, p, sequenceOf(id), 4);
+        return new String(out);
+    }
+
+    private static int put(char[] out, int at, long value, int width) {
+        for (int i = at + width - 1; i >= at; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + width;
+    }
+}
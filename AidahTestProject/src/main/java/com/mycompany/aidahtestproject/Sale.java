@@ -1,7 +1,5 @@
 package com.mycompany.aidahtestproject;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 public class Sale {
     
@@ -13,11 +11,22 @@ public class Sale {
     private double totalPrice;
     private String transactionMethod;
     private final String employeeName;
+    private final int outlet; // OutletRegistry index
     
     public Sale (String date, String customerName, String modelId, int quantity, double totalPrice, String transactionMethod, String employeeName){
-        // Generate a unique Reference No: REF + YYMMDD + HHMMSS (e.g., REF231025143000)
-        this.referenceNo = "REF" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyMMddHHmmss"));
-        
+        // New sale: unique Reference No from the lock-free generator (time + terminal + sequence)
+        this(ReferenceGenerator.nextReference(),
+                date, customerName, modelId, quantity, totalPrice, transactionMethod, employeeName);
+    }
+    
+    // Used when loading a stored sale: keeps its original Reference No
+    public Sale (String referenceNo, String date, String customerName, String modelId, int quantity, double totalPrice, String transactionMethod, String employeeName){
+        this(referenceNo, date, customerName, modelId, quantity, totalPrice, transactionMethod, employeeName, OutletRegistry.home());
+    }
+    
+    // As above, for a sale rung up at a given outlet
+    public Sale (String referenceNo, String date, String customerName, String modelId, int quantity, double totalPrice, String transactionMethod, String employeeName, int outlet){
+        this.referenceNo = referenceNo;
         this.date = date;
         this.customerName = customerName;
         this.modelId = modelId;
@@ -25,6 +34,7 @@ public class Sale {
         this.totalPrice = totalPrice;
         this.transactionMethod = transactionMethod;
         this.employeeName = employeeName;
+        this.outlet = outlet;
     }
     
     // Getters
@@ -36,6 +46,7 @@ public class Sale {
     public double getTotalPrice (){ return totalPrice;}
     public String getTransactionMethod (){ return transactionMethod;}
     public String getEmployeeName (){ return employeeName;}
+    public int getOutlet (){ return outlet;}
     
     public Object[] toTableRow() {
         return new Object[] {
@@ -65,7 +76,7 @@ public class Sale {
 
         sb.append(doubleLine);
         sb.append("        GOLDEN HOUR PREMIUM WATCHES       \n");
-        sb.append("      Kuala Lumpur City Centre (C60)      \n");
+        sb.append(center(OutletRegistry.name(outlet) + " (" + OutletRegistry.code(outlet) + ")", 42)).append("\n");
         sb.append(doubleLine);
         
         // Metadata Section
@@ -104,4 +115,10 @@ public class Sale {
         
         return sb.toString();
     }
+
+    // Pads text on both sides to the receipt width
+    private static String center(String text, int width) {
+        int left = Math.max(0, (width - text.length()) / 2);
+        return String.format("%-" + width + "s", " ".repeat(left) + text);
+    }
 }
\ No newline at end of file
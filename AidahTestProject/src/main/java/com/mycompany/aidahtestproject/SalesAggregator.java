@@ -0,0 +1,147 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Incrementally maintained sales totals for the analytics dashboard.
+ *
+ * The totals live in a SalesRollupCube (dense arrays per day, rolled up
+ * to months and years); best sellers live in a SalesLeaderboard, distinct
+ * customers and ticket sizes in SalesDistributions.
+ *
+ * Remembers how far into sales.dat it has read (plus a fingerprint of
+ * the journal's generation and the bytes just before that point) and
+ * saves its totals to analytics.state. Opening the dashboard then only
+ * folds in the sales appended since last time. An edit record takes the
+ * sale's old values back out and folds in the new ones. If the journal
+ * was replaced (e.g. by a CSV import) its generation changes, the
+ * fingerprint no longer matches and everything is rebuilt from the start.
+ */
+public class SalesAggregator {
+
+    private static final String STATE_FILE = "analytics.state";
+    private static final int STATE_VERSION = 4;
+
+    private final SalesRollupCube cube = new SalesRollupCube();
+    private final SalesLeaderboard leaderboard = new SalesLeaderboard();
+    private final SalesDistributions distributions = new SalesDistributions();
+
+    private long offset = 0;
+    private long fingerprint = 0;
+
+    /**
+     * Loads the saved totals, folds in any new sales and saves again.
+     * @return an up-to-date aggregator
+     */
+    public static SalesAggregator loadAndUpdate() {
+        return loadAndUpdate(null);
+    }
+
+    /**
+     * As loadAndUpdate(), reporting how far through sales.dat it is.
+     * @param progress may be null; if cancelled, throws CancellationException and saves nothing
+     * @return an up-to-date aggregator
+     */
+    public static SalesAggregator loadAndUpdate(AsyncTasks.Progress progress) {
+        while (true) {
+            long generation = SalesJournal.generation();
+            SalesAggregator agg = new SalesAggregator();
+            if (!agg.loadState() || SalesJournal.fingerprint(agg.offset) != agg.fingerprint) {
+                agg = new SalesAggregator(); // Journal was replaced or state is missing: rebuild
+            }
+            boolean changed = agg.update(progress);
+            // Replaced while we read: the totals may mix both versions, so start over
+            if (SalesJournal.generation() != generation) continue;
+            if (changed) agg.saveState();
+            return agg;
+        }
+    }
+
+    /**
+     * Folds in sales appended since the last call.
+     * @return true if anything new was read
+     */
+    public boolean update() {
+        return update(null);
+    }
+
+    private boolean update(AsyncTasks.Progress progress) {
+        long before = offset;
+        long size = Math.max(1, SalesJournal.size());
+        int[] seen = {0};
+        offset = SalesJournal.scan(offset, c -> {
+            fold(c);
+            // Every few thousand records: report and honour Cancel
+            if (progress != null && (++seen[0] & 4095) == 0) {
+                if (progress.isCancelled()) throw new CancellationException();
+                progress.update((int) (c.offset() * 100 / size), "Reading sales: " + seen[0]);
+            }
+        });
+        fingerprint = SalesJournal.fingerprint(offset);
+        return offset != before;
+    }
+
+    // The cube reads only primitive fields; model and staff names are shared dictionary Strings
+    private void fold(SalesJournal.Cursor c) {
+        if (c.isEdit()) retract(c.before());
+        cube.fold(c.epochMillis(), c.modelId(), c.outlet(), c.paymentId(), c.staffId(), c.quantity(), c.totalCents());
+        String customer = c.customerName();
+        leaderboard.fold(c.epochMillis(), c.modelName(), c.staffName(), customer, c.quantity(), c.totalCents());
+        distributions.fold(c.epochMillis(), c.outlet(), customer, c.quantity(), c.totalCents());
+    }
+
+    private void retract(SalesJournal.Cursor c) {
+        cube.retract(c.epochMillis(), c.modelId(), c.outlet(), c.paymentId(), c.staffId(), c.quantity(), c.totalCents());
+        leaderboard.retract(c.epochMillis(), c.modelName(), c.staffName(), c.customerName(), c.quantity(), c.totalCents());
+        distributions.retract(c.epochMillis(), c.outlet(), c.quantity(), c.totalCents());
+    }
+
+    // ================= GETTERS =================
+    public SalesRollupCube getCube() { return cube; }
+    public SalesLeaderboard getLeaderboard() { return leaderboard; }
+    public SalesDistributions getDistributions() { return distributions; }
+
+    // ================= PERSISTENCE =================
+
+    private boolean loadState() {
+        File file = new File(STATE_FILE);
+        if (!file.exists()) return false;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != STATE_VERSION) return false;
+            offset = in.readLong();
+            fingerprint = in.readLong();
+            cube.read(in);
+            leaderboard.read(in);
+            distributions.read(in);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Analytics state unreadable, rebuilding: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void saveState() {
+        try {
+            AtomicFileWriter.write(new File(STATE_FILE).toPath(), raw -> writeState(new DataOutputStream(raw)));
+        } catch (IOException e) {
+            System.err.println("Error saving analytics state: " + e.getMessage());
+        }
+    }
+
+    private void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(STATE_VERSION);
+        out.writeLong(offset);
+        out.writeLong(fingerprint);
+        cube.write(out);
+        leaderboard.write(out);
+        distributions.write(out);
+        out.flush();
+    }
+}
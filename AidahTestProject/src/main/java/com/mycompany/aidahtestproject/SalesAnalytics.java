@@ -3,9 +3,6 @@ package com.mycompany.aidahtestproject;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.util.*;
 import java.util.List;
 
@@ -13,16 +10,16 @@ public class SalesAnalytics extends JFrame {
 
     private final Employee currentUser;
     
-    // Data Structures for Analytics
-    // Using TreeMap to keep dates sorted automatically
-    private final Map<String, Double> salesByDay = new TreeMap<>();   
-    private final Map<String, Double> salesByMonth = new TreeMap<>(); 
-    private final Map<String, Double> salesByYear = new TreeMap<>();  
-    
-    private final Map<String, Map<String, Integer>> productsByMonth = new TreeMap<>();
-    private final Map<String, Map<String, Integer>> productsByYear = new TreeMap<>();
+    // Pre-aggregated totals kept by SalesAggregator; charts read the revenue series from it
+    private SalesRollupCube cube;
+    private SalesLeaderboard leaderboard;
+    private SalesDistributions distributions;
+    private Map<String, Double> salesByDay;
+    private Map<String, Double> salesByMonth;
+    private Map<String, Double> salesByYear;
 
     private JTabbedPane tabbedPane;
+    private static final int TOP_K = 5;
 
     public SalesAnalytics(Employee user) {
         this.currentUser = user;
@@ -34,9 +31,22 @@ public class SalesAnalytics extends JFrame {
         setLocationRelativeTo(null);
         setLayout(new BorderLayout());
 
-        // Load Data & Setup GUI
-        loadSalesData();
-        initGUI();
+        // Load Data in the background (progress + Cancel), then Setup GUI
+        JLabel lblLoading = new JLabel("Loading sales data...", SwingConstants.CENTER);
+        add(lblLoading, BorderLayout.CENTER);
+        // Counts as an update in progress: sales recorded meanwhile are folded in right after
+        updating = true;
+        AsyncTasks.runWithProgress(this, "Loading analytics", SalesAggregator::loadAndUpdate, agg -> {
+            remove(lblLoading);
+            loadSalesData(agg);
+            initGUI();
+            revalidate();
+            repaint();
+            finishUpdate();
+        });
+        // New or edited sales: fold them in (only the new part of sales.dat is read) and redraw
+        EventBus.subscribe(this, EventBus.SaleRecorded.class, events -> updateAnalytics());
+        EventBus.subscribe(this, EventBus.SaleEdited.class, events -> updateAnalytics());
     }
     
     public SalesAnalytics() {
@@ -46,12 +56,7 @@ public class SalesAnalytics extends JFrame {
     private void initGUI() {
         tabbedPane = new JTabbedPane();
         tabbedPane.setFont(new Font("Arial", Font.PLAIN, 14));
-
-        tabbedPane.addTab("📄 Summary Report", createSummaryPanel());
-        tabbedPane.addTab("📅 Daily Sales Chart", createChartWrapper(salesByDay, "Daily Revenue (RM)"));
-        tabbedPane.addTab("📊 Monthly Sales Chart", createChartWrapper(salesByMonth, "Monthly Revenue (RM)"));
-        tabbedPane.addTab("📈 Yearly Sales Chart", createChartWrapper(salesByYear, "Yearly Revenue (RM)"));
-        tabbedPane.addTab("🏆 Best Sellers Analysis", createBestSellersPanel());
+        addTabs();
 
         add(tabbedPane, BorderLayout.CENTER);
 
@@ -65,35 +70,53 @@ public class SalesAnalytics extends JFrame {
         add(btnBack, BorderLayout.SOUTH);
     }
 
-    // ================= DATA LOADING (Unchanged) =================
-    private void loadSalesData() {
-        File file = new File("sales.csv");
-        if (!file.exists()) return;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line = br.readLine(); // Skip Header
-            while ((line = br.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] data = line.split(",");
-                String dateStr = "", model = "";
-                int qty = 0; double total = 0.0;
-
-                if (data.length >= 8) { dateStr = data[1]; model = data[3]; qty = Integer.parseInt(data[4]); total = Double.parseDouble(data[5]); }
-                else if (data.length == 7) { dateStr = data[0]; model = data[2]; qty = Integer.parseInt(data[3]); total = Double.parseDouble(data[4]); }
-                else { continue; }
-
-                String dayKey = dateStr.length() >= 10 ? dateStr.substring(0, 10) : "Unknown";
-                String monthKey = dateStr.length() >= 7 ? dateStr.substring(0, 7) : "Unknown";
-                String yearKey = dateStr.length() >= 4 ? dateStr.substring(0, 4) : "Unknown";
-
-                salesByDay.put(dayKey, salesByDay.getOrDefault(dayKey, 0.0) + total);
-                salesByMonth.put(monthKey, salesByMonth.getOrDefault(monthKey, 0.0) + total);
-                salesByYear.put(yearKey, salesByYear.getOrDefault(yearKey, 0.0) + total);
-
-                productsByMonth.computeIfAbsent(monthKey, k -> new HashMap<>()).merge(model, qty, Integer::sum);
-                productsByYear.computeIfAbsent(yearKey, k -> new HashMap<>()).merge(model, qty, Integer::sum);
-            }
-        } catch (Exception e) { System.out.println("Error loading analytics: " + e.getMessage()); }
+    private void addTabs() {
+        tabbedPane.addTab("📄 Summary Report", createSummaryPanel());
+        tabbedPane.addTab("📅 Daily Sales Chart", createChartWrapper(salesByDay, "Daily Revenue (RM)"));
+        tabbedPane.addTab("📊 Monthly Sales Chart", createChartWrapper(salesByMonth, "Monthly Revenue (RM)"));
+        tabbedPane.addTab("📈 Yearly Sales Chart", createChartWrapper(salesByYear, "Yearly Revenue (RM)"));
+        tabbedPane.addTab("🏆 Best Sellers Analysis", createBestSellersPanel());
+    }
+
+    // One update at a time; events arriving meanwhile are folded into one more
+    private boolean updating = false, updateAgain = false;
+
+    private void updateAnalytics() {
+        if (updating) {
+            updateAgain = true;
+            return;
+        }
+        updating = true;
+        AsyncTasks.run(SalesAggregator::loadAndUpdate, agg -> {
+            loadSalesData(agg);
+            int selected = tabbedPane.getSelectedIndex();
+            tabbedPane.removeAll();
+            addTabs();
+            if (selected >= 0) tabbedPane.setSelectedIndex(selected);
+            finishUpdate();
+        }, error -> {
+            updating = false;
+            System.err.println("Error updating analytics: " + error.getMessage());
+        });
+    }
+
+    private void finishUpdate() {
+        updating = false;
+        if (updateAgain) {
+            updateAgain = false;
+            updateAnalytics();
+        }
+    }
+
+    // ================= DATA LOADING (Incremental) =================
+    // Only sales appended since the last time the dashboard was opened are read
+    private void loadSalesData(SalesAggregator agg) {
+        cube = agg.getCube();
+        leaderboard = agg.getLeaderboard();
+        distributions = agg.getDistributions();
+        salesByDay = cube.revenueSeries(SalesRollupCube.DAY);
+        salesByMonth = cube.revenueSeries(SalesRollupCube.MONTH);
+        salesByYear = cube.revenueSeries(SalesRollupCube.YEAR);
     }
 
     // ================= GUI PANELS =================
@@ -108,17 +131,37 @@ public class SalesAnalytics extends JFrame {
         StringBuilder sb = new StringBuilder();
         sb.append("GENERAL SALES SUMMARY\n");
         sb.append("================================\n\n");
-        double grandTotal = salesByYear.values().stream().mapToDouble(Double::doubleValue).sum();
+        double grandTotal = cube.totalRevenueCents() / 100.0;
         sb.append(String.format("Total Lifetime Revenue:  RM %,.2f\n\n", grandTotal));
         sb.append("Total Active Trading Days: " + salesByDay.size() + "\n");
         sb.append("Total Active Months:       " + salesByMonth.size() + "\n");
-        sb.append("Total Active Years:        " + salesByYear.size() + "\n");
+        sb.append("Total Active Years:        " + salesByYear.size() + "\n\n");
+
+        // Estimated from mergeable sketches (about 2% on customers, 3% on percentiles)
+        sb.append("CUSTOMERS & TICKET SIZE (estimated)\n");
+        sb.append("================================\n");
+        sb.append(String.format("%-14s %10s %12s %12s %10s\n", "Period", "Customers", "Median RM", "p95 RM", "p95 Units"));
+        appendStatsRow(sb, "Lifetime", distributions.lifetime(SalesDistributions.ALL_OUTLETS));
+        for (int year : cube.activePeriods(SalesRollupCube.YEAR)) {
+            appendStatsRow(sb, SalesRollupCube.label(SalesRollupCube.YEAR, year),
+                    distributions.stats(SalesRollupCube.YEAR, year, SalesDistributions.ALL_OUTLETS));
+        }
+        sb.append("\nBy outlet (lifetime)\n");
+        for (int outlet : distributions.outlets()) {
+            appendStatsRow(sb, "Outlet " + outlet, distributions.lifetime(outlet));
+        }
         
         area.setText(sb.toString());
         panel.add(new JScrollPane(area), BorderLayout.CENTER);
         return panel;
     }
 
+    private void appendStatsRow(StringBuilder sb, String label, SalesDistributions.Stats stats) {
+        sb.append(String.format("%-14s %,10d %,12.2f %,12.2f %10d\n", label, stats.uniqueCustomers(),
+                stats.ticketCents.percentile(50) / 100.0, stats.ticketCents.percentile(95) / 100.0,
+                stats.quantity.percentile(95)));
+    }
+
     // 2. ADJUSTMENT: Calculate required width dynamically based on data size
     private JScrollPane createChartWrapper(Map<String, Double> data, String yAxisLabel) {
         SimpleBarChart chart = new SimpleBarChart(data, yAxisLabel);
@@ -144,24 +187,44 @@ public class SalesAnalytics extends JFrame {
         area.setBorder(BorderFactory.createEmptyBorder(10,10,10,10));
 
         StringBuilder sb = new StringBuilder();
-        sb.append("🏆 MOST SOLD PRODUCTS BY MONTH\n");
+        sb.append("🏆 BEST SELLERS BY MONTH (top " + TOP_K + ")\n");
         sb.append("===================================\n");
-        productsByMonth.forEach((month, products) -> sb.append(String.format("📅 %s : %s\n", month, getBestProduct(products))));
+        for (int month : cube.activePeriods(SalesRollupCube.MONTH)) {
+            appendBestSellers(sb, SalesRollupCube.MONTH, month);
+        }
 
-        sb.append("\n\n🏆 MOST SOLD PRODUCTS BY YEAR\n");
+        sb.append("\n\n🏆 BEST SELLERS BY YEAR (top " + TOP_K + ")\n");
         sb.append("===================================\n");
-        productsByYear.forEach((year, products) -> sb.append(String.format("📅 %s : %s\n", year, getBestProduct(products))));
+        for (int year : cube.activePeriods(SalesRollupCube.YEAR)) {
+            appendBestSellers(sb, SalesRollupCube.YEAR, year);
+        }
+        sb.append("\n(±n: the count may be overstated by up to n; only shown for estimated entries)\n");
 
         area.setText(sb.toString());
         panel.add(new JScrollPane(area), BorderLayout.CENTER);
         return panel;
     }
 
-    private String getBestProduct(Map<String, Integer> map) {
-        return map.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(entry -> entry.getKey() + " (" + entry.getValue() + " units)")
-                .orElse("None");
+    private void appendBestSellers(StringBuilder sb, int level, int period) {
+        sb.append(String.format("📅 %s\n", SalesRollupCube.label(level, period)));
+        sb.append("   Models:    ").append(formatTop(leaderboard.top(level, period, SalesLeaderboard.MODELS, TOP_K), false)).append("\n");
+        sb.append("   Staff:     ").append(formatTop(leaderboard.top(level, period, SalesLeaderboard.STAFF, TOP_K), true)).append("\n");
+        sb.append("   Customers: ").append(formatTop(leaderboard.top(level, period, SalesLeaderboard.CUSTOMERS, TOP_K), true)).append("\n");
+    }
+
+    // "A (12 units), B (9 units ±2)" or the same in RM for revenue rankings
+    private String formatTop(List<SpaceSaving.Entry> entries, boolean revenue) {
+        if (entries.isEmpty()) return "None";
+        StringBuilder sb = new StringBuilder();
+        for (SpaceSaving.Entry e : entries) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(e.key).append(" (");
+            if (revenue) sb.append(String.format("RM %,.2f", e.count / 100.0));
+            else sb.append(e.count).append(" units");
+            if (e.error > 0) sb.append(" ±").append(revenue ? String.format("%,.2f", e.error / 100.0) : e.error);
+            sb.append(")");
+        }
+        return sb.toString();
     }
 
     // ================= CUSTOM CHART COMPONENT (UPDATED) =================
@@ -0,0 +1,159 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves sales between the CSV format and the binary journal.
+ * The CSV is now only an import/export format; sales.dat is the live store.
+ */
+public class SalesCsvMigrator {
+
+    private static final String CSV_FILE = "sales.csv";
+    private static final String HEADER = "ReferenceNo,Date,Customer,Model,Quantity,TotalPrice,PaymentMethod,Staff";
+
+    /**
+     * One-shot migration: while there is a sales.csv, import it into a new
+     * sales.dat and then rename it to sales.csv.migrated.
+     *
+     * Runs under the SALES lock, so of two terminals starting together only
+     * one imports. The journal is built in a temp file and renamed into
+     * place (AtomicFileWriter) before the CSV is renamed: a crash at any
+     * point leaves sales.csv in place and the import simply runs again.
+     * Sales already in sales.dat are kept (unless the CSV has the same
+     * Reference No), so a rerun after a crash between the two renames
+     * does not double anything.
+     */
+    public static void migrateIfNeeded() {
+        File csv = new File(CSV_FILE);
+        if (!csv.exists()) return;
+        try {
+            FileCoordinator.runExclusive(FileCoordinator.SALES, () -> {
+                // Another terminal may have finished it while we waited
+                if (!csv.exists()) return;
+                int imported = importCsv(csv);
+                Files.move(csv.toPath(), Paths.get(CSV_FILE + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Migrated " + imported + " sales from " + CSV_FILE + " to " + SalesJournal.FILE_NAME);
+            });
+        } catch (IOException e) {
+            System.err.println("Error migrating " + CSV_FILE + " (it will be tried again): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces sales.dat with every sale in a CSV file, followed by the
+     * sales already in sales.dat that the CSV does not have. Handles both
+     * the 8-column (with ReferenceNo) and the older 7-column layout.
+     * Call with the SALES lock held.
+     * @param csv
+     * @return number of sales imported from the CSV
+     * @throws java.io.IOException if it cannot be read or written; sales.dat is then untouched
+     */
+    static int importCsv(File csv) throws IOException {
+        int[] count = {0};
+        Set<String> imported = new HashSet<>();
+        // sales.csv has no outlet column: every sale in it was rung up at C60
+        int c60 = OutletRegistry.indexOf("C60");
+        int outlet = c60 >= 0 ? c60 : OutletRegistry.home();
+        CsvTokenizer p = CsvTokenizer.fromFile(csv);
+
+        AtomicFileWriter.write(Paths.get(SalesJournal.FILE_NAME), out -> {
+            // 1. Every row of the CSV, through one stream into the temp file
+            out.write(SalesJournal.header(SalesJournal.newGeneration()).array());
+            int row = 0;
+            while (p.next()) {
+                row++;
+                Sale sale;
+                try {
+                    if (p.fieldCount() >= 8) {
+                        // RefNo, Date, Cust, Model, Qty, Total, Pay, Staff
+                        sale = new Sale(uniqueRef(p.getString(0), row, imported), p.getString(1), p.getString(2),
+                                p.getString(3), p.getInt(4), p.getDouble(5), p.getString(6), p.getString(7), outlet);
+                    } else if (p.fieldCount() == 7) {
+                        // Date, Cust, Model, Qty, Total, Pay, Staff (no reference was stored).
+                        // Sales in the same minute must not share one, so the row number goes in too
+                        String date = p.getString(0);
+                        String ref = "REF" + date.replaceAll("[^0-9]", "").substring(2) + "00-" + row;
+                        sale = new Sale(ref, date, p.getString(1), p.getString(2),
+                                p.getInt(3), p.getDouble(4), p.getString(5), p.getString(6), outlet);
+                    } else {
+                        continue;
+                    }
+                } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                    // Header row or corrupted line
+                    continue;
+                }
+                try {
+                    SalesJournal.validate(sale);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping " + CSV_FILE + " line " + row + ": " + e.getMessage());
+                    continue;
+                }
+                ByteBuffer record = SalesJournal.encode(sale);
+                out.write(record.array(), 0, record.limit());
+                imported.add(sale.getReferenceNo());
+                count[0]++;
+            }
+
+            // 2. Sales already in sales.dat (e.g. from a run that crashed before renaming the CSV),
+            //    with their edits applied
+            for (Sale s : SalesJournal.loadAll()) {
+                if (imported.contains(s.getReferenceNo())) continue;
+                ByteBuffer record = SalesJournal.encode(s);
+                out.write(record.array(), 0, record.limit());
+            }
+        });
+        return count[0];
+    }
+
+    // Old terminals made references to the second, so two sales can share one
+    private static String uniqueRef(String ref, int row, Set<String> seen) {
+        return seen.contains(ref) ? ref + "-" + row : ref;
+    }
+
+    /**
+     * Writes the whole journal out as a CSV file (for Excel / backups).
+     * Edited sales appear once, in their original place, as they are now.
+     * @param csv
+     * @return true if successful
+     */
+    public static boolean exportCsv(File csv) {
+        try {
+            // 1. Latest values of the (few) edited sales
+            Map<String, Sale> edited = new HashMap<>();
+            SalesJournal.scan(c -> {
+                if (c.isEdit()) edited.put(c.referenceNo(), c.toSale());
+            });
+
+            // 2. One line per sale; text fields are quoted when needed (e.g. a customer name with a comma)
+            AtomicFileWriter.writeText(csv.toPath(), pw -> {
+                pw.println(HEADER);
+                SalesJournal.scan(c -> {
+                    if (c.isEdit()) return;
+                    Sale s = edited.getOrDefault(c.referenceNo(), c.toSale());
+                    pw.println(String.format("%s,%s,%s,%s,%d,%.2f,%s,%s",
+                            CsvTokenizer.escape(s.getReferenceNo()),
+                            s.getDate(),
+                            CsvTokenizer.escape(s.getCustomerName()),
+                            CsvTokenizer.escape(s.getModelId()),
+                            s.getQuantity(),
+                            s.getTotalPrice(),
+                            CsvTokenizer.escape(s.getTransactionMethod()),
+                            CsvTokenizer.escape(s.getEmployeeName())));
+                });
+            });
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error exporting sales: " + e.getMessage());
+            return false;
+        }
+    }
+}
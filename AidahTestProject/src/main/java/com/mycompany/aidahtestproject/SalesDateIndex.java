@@ -0,0 +1,161 @@
+package com.mycompany.aidahtestproject;
+
+import java.util.Arrays;
+
+/**
+ * Sales ordered by time, for date-range filters.
+ *
+ * Keeps three parallel primitive arrays in time order: the sale time,
+ * the repository row, and a running (prefix) sum of the sale totals.
+ * A date range is then two binary searches, the rows are one contiguous
+ * slice and the total is prefix[to] - prefix[from], whatever the size of
+ * the range.
+ *
+ * Sales normally arrive in time order and are simply appended. If one
+ * arrives out of order (an old CSV import, a back-dated entry) the
+ * arrays are re-sorted once, on the next query. An edited sale is
+ * changed in place by replace().
+ */
+public class SalesDateIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size = 0;
+    private long[] epochs = new long[INITIAL_CAPACITY];
+    private int[] rows = new int[INITIAL_CAPACITY];
+    private long[] cents = new long[INITIAL_CAPACITY];
+    private long[] prefixCents = new long[INITIAL_CAPACITY + 1]; // prefixCents[i] = sum of the first i
+    private boolean sorted = true;
+
+    /** Result of a range query: a slice of the time-ordered rows. */
+    public static class Slice {
+        private final int[] rows;
+        private final long totalCents;
+
+        Slice(int[] rows, long totalCents) {
+            this.rows = rows;
+            this.totalCents = totalCents;
+        }
+
+        /** Repository row numbers, oldest sale first. */
+        public int[] rows() { return rows; }
+        public long totalCents() { return totalCents; }
+        public int size() { return rows.length; }
+    }
+
+    public void add(int row, long epochMillis, long totalCents) {
+        ensureCapacity(size + 1);
+        if (size > 0 && epochMillis < epochs[size - 1]) sorted = false;
+        epochs[size] = epochMillis;
+        rows[size] = row;
+        cents[size] = totalCents;
+        prefixCents[size + 1] = prefixCents[size] + totalCents;
+        size++;
+    }
+
+    /**
+     * Changes the time and total of a row already in the index (after an
+     * edit). Costs a binary search plus a pass over the prefix sums after it.
+     * @param row
+     * @param oldEpochMillis the time it was added (or last replaced) with
+     * @param epochMillis
+     * @param totalCents
+     */
+    public void replace(int row, long oldEpochMillis, long epochMillis, long totalCents) {
+        if (!sorted) resort();
+        int i = lowerBound(oldEpochMillis);
+        while (i < size && epochs[i] == oldEpochMillis && rows[i] != row) i++;
+        if (i == size || rows[i] != row) return;
+        cents[i] = totalCents;
+        if (epochMillis != oldEpochMillis) {
+            // Moved in time: the next query re-sorts and rebuilds the sums
+            epochs[i] = epochMillis;
+            sorted = false;
+            return;
+        }
+        for (int k = i; k < size; k++) prefixCents[k + 1] = prefixCents[k] + cents[k];
+    }
+
+    public void clear() {
+        size = 0;
+        sorted = true;
+    }
+
+    /**
+     * Sales with fromMillis <= time <= toMillis.
+     * @param fromMillis
+     * @param toMillis
+     * @return
+     */
+    public Slice range(long fromMillis, long toMillis) {
+        if (!sorted) resort();
+        if (toMillis < fromMillis) return new Slice(new int[0], 0);
+        int from = lowerBound(fromMillis);
+        int to = lowerBound(toMillis + 1);
+        return new Slice(Arrays.copyOfRange(rows, from, to), prefixCents[to] - prefixCents[from]);
+    }
+
+    /** Every sale, oldest first. */
+    public Slice all() {
+        if (!sorted) resort();
+        return new Slice(Arrays.copyOf(rows, size), prefixCents[size]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // First position whose time is >= t
+    private int lowerBound(long t) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochs[mid] < t) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= epochs.length) return;
+        int cap = Math.max(needed, epochs.length * 2);
+        epochs = Arrays.copyOf(epochs, cap);
+        rows = Arrays.copyOf(rows, cap);
+        cents = Arrays.copyOf(cents, cap);
+        prefixCents = Arrays.copyOf(prefixCents, cap + 1);
+    }
+
+    // Stable sort by time (ties keep journal order), then rebuild the prefix sums
+    private void resort() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        mergeSort(order, new int[size], 0, size);
+
+        long[] e = new long[epochs.length];
+        int[] r = new int[rows.length];
+        long[] c = new long[cents.length];
+        for (int i = 0; i < size; i++) {
+            e[i] = epochs[order[i]];
+            r[i] = rows[order[i]];
+            c[i] = cents[order[i]];
+            prefixCents[i + 1] = prefixCents[i] + c[i];
+        }
+        epochs = e;
+        rows = r;
+        cents = c;
+        sorted = true;
+    }
+
+    private void mergeSort(int[] a, int[] tmp, int from, int to) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(a, tmp, from, mid);
+        mergeSort(a, tmp, mid, to);
+        if (epochs[a[mid - 1]] <= epochs[a[mid]]) return; // already in order
+        System.arraycopy(a, from, tmp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) a[k++] = epochs[tmp[j]] < epochs[tmp[i]] ? tmp[j++] : tmp[i++];
+        while (i < mid) a[k++] = tmp[i++];
+        while (j < to) a[k++] = tmp[j++];
+    }
+}
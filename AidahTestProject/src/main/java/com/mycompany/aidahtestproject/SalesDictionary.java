@@ -0,0 +1,184 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the repeating text columns of a sale (model, staff, payment method)
+ * to small integer IDs so the binary sales journal can store them as ints.
+ * Entries are only ever appended, so an ID never changes meaning.
+ *
+ * An ID is the value's position among the entries of its kind in
+ * sales.dict, so every terminal sharing the directory must see the same
+ * file order. A new value is therefore only added with the file locked
+ * (FileCoordinator), after reading whatever other terminals appended, and
+ * it is on disk before the sale that uses it is queued. Lookups that meet
+ * an ID or value not seen yet read the new tail of the file first.
+ */
+public class SalesDictionary {
+
+    public static final int MODEL = 0;
+    public static final int STAFF = 1;
+    public static final int PAYMENT = 2;
+    private static final int KINDS = 3;
+
+    private static final String FILE_NAME = "sales.dict";
+
+    private final File file;
+    private final List<List<String>> values = new ArrayList<>();
+    private final List<Map<String, Integer>> ids = new ArrayList<>();
+    private long loadedLength = 0; // bytes of complete entries read so far
+
+    public SalesDictionary(File file) {
+        this.file = file;
+        for (int k = 0; k < KINDS; k++) {
+            values.add(new ArrayList<>());
+            ids.add(new HashMap<>());
+        }
+        load();
+    }
+
+    public SalesDictionary() {
+        this(new File(FILE_NAME));
+    }
+
+    private void load() {
+        FileCoordinator.runShared(file.getName(), () -> readTail(false));
+    }
+
+    // File layout: repeated [byte kind][UTF string]
+    // Reads the entries appended since loadedLength. With the exclusive lock
+    // held, a torn last entry (crash mid-write) is cut off before we append.
+    private void readTail(boolean exclusive) {
+        long length = file.length();
+        if (length <= loadedLength) return;
+
+        byte[] data;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ch.position(loadedLength);
+            data = Channels.newInputStream(ch).readAllBytes();
+        } catch (IOException e) {
+            System.err.println("Error reading sales.dict: " + e.getMessage());
+            return;
+        }
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        long start = loadedLength;
+        try {
+            while (bytes.available() > 0) {
+                int kind = in.readByte();
+                String value = in.readUTF();
+                if (kind < 0 || kind >= KINDS) throw new IOException("unknown entry kind " + kind);
+                register(kind, value);
+                loadedLength = start + data.length - bytes.available();
+            }
+        } catch (EOFException e) {
+            // A torn last entry is simply ignored; it was never referenced by a sale
+            System.err.println("Warning: sales.dict ends with a partial entry.");
+        } catch (IOException e) {
+            System.err.println("Error reading sales.dict: " + e.getMessage());
+        }
+
+        if (exclusive && loadedLength < start + data.length) {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(loadedLength);
+            } catch (IOException e) {
+                System.err.println("Error repairing sales.dict: " + e.getMessage());
+            }
+        }
+    }
+
+    // Picks up values other terminals added; a length check when nothing changed
+    private void catchUp() {
+        if (file.length() > loadedLength) FileCoordinator.runShared(file.getName(), () -> readTail(false));
+    }
+
+    private int register(int kind, String value) {
+        List<String> list = values.get(kind);
+        list.add(value);
+        ids.get(kind).put(value, list.size() - 1);
+        return list.size() - 1;
+    }
+
+    /**
+     * Returns the ID for a value. A new value is appended to sales.dict and
+     * forced to disk, with the file locked against other terminals, before
+     * its ID is returned, so it always lands ahead of the sale using it.
+     * @param kind MODEL, STAFF or PAYMENT
+     * @param value
+     * @return
+     * @throws java.io.IOException
+     */
+    public synchronized int idFor(int kind, String value) throws IOException {
+        String v = value == null ? "" : value;
+        Integer existing = ids.get(kind).get(v);
+        if (existing != null) return existing;
+
+        return FileCoordinator.withExclusive(file.getName(), () -> {
+            // Another terminal may have added it (and others) since we last read the file
+            readTail(true);
+            Integer added = ids.get(kind).get(v);
+            if (added != null) return added;
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(kind);
+                out.writeUTF(v);
+            }
+            try (FileChannel ch = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(false);
+            }
+            loadedLength += bytes.size();
+            return register(kind, v);
+        });
+    }
+
+    public synchronized String lookup(int kind, int id) {
+        List<String> list = values.get(kind);
+        if (id >= list.size()) {
+            // Added by another terminal after we loaded
+            catchUp();
+            list = values.get(kind);
+        }
+        if (id < 0 || id >= list.size()) return "Unknown";
+        return list.get(id);
+    }
+
+    /** Returns -1 when the value has never been recorded. */
+    public synchronized int find(int kind, String value) {
+        Integer id = ids.get(kind).get(value);
+        if (id == null) {
+            catchUp();
+            id = ids.get(kind).get(value);
+        }
+        return id == null ? -1 : id;
+    }
+
+    /** Every value recorded for a kind, in ID order. */
+    public synchronized List<String> values(int kind) {
+        catchUp();
+        return new ArrayList<>(values.get(kind));
+    }
+
+    public synchronized int size(int kind) {
+        catchUp();
+        return values.get(kind).size();
+    }
+}
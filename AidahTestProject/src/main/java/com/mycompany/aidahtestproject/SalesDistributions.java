@@ -0,0 +1,151 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Distinct customers and basket/ticket distributions for the dashboard.
+ *
+ * One cell per (day, outlet) holds a HyperLogLog of customer names and
+ * LogHistograms of units per sale and sale value in sen. All three merge,
+ * so a month, a year, one outlet or all outlets is answered by merging
+ * the cells in range; no customer names or sale values are kept.
+ * An edited sale's old values are taken back out of the histograms; a
+ * HyperLogLog cannot forget a name, so an edited-away customer is still
+ * counted as distinct.
+ */
+public class SalesDistributions {
+
+    /** Pass as the outlet to combine every outlet. */
+    public static final int ALL_OUTLETS = -1;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // (day << 16 | outlet) -> cell, so one day's outlets are adjacent
+    private final TreeMap<Long, Cell> cells = new TreeMap<>();
+
+    /** Merged figures for a period and outlet selection. */
+    public static class Stats {
+        public final HyperLogLog customers = new HyperLogLog();
+        public final LogHistogram quantity = new LogHistogram();
+        public final LogHistogram ticketCents = new LogHistogram();
+
+        public long uniqueCustomers() { return customers.estimate(); }
+    }
+
+    private static class Cell extends Stats { }
+
+    public void fold(long epochMillis, int outlet, String customer, int quantity, long totalCents) {
+        Cell cell = cell(epochMillis, outlet);
+        if (customer != null && !customer.isBlank()) cell.customers.addString(CustomerIndex.normalize(customer));
+        cell.quantity.record(quantity);
+        cell.ticketCents.record(totalCents);
+    }
+
+    /** Takes back a sale folded in earlier, except for its customer (see above). */
+    public void retract(long epochMillis, int outlet, int quantity, long totalCents) {
+        Cell cell = cell(epochMillis, outlet);
+        cell.quantity.unrecord(quantity);
+        cell.ticketCents.unrecord(totalCents);
+    }
+
+    private Cell cell(long epochMillis, int outlet) {
+        int day = (int) Math.floorDiv(epochMillis, DAY_MS);
+        long key = (long) day << 16 | (outlet & 0xFFFF);
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    // =================================================================
+    // QUERIES
+    // =================================================================
+
+    /**
+     * @param level SalesRollupCube.DAY, MONTH or YEAR
+     * @param period period number at that level
+     * @param outlet outlet index or ALL_OUTLETS
+     * @return merged stats (empty if nothing sold)
+     */
+    public Stats stats(int level, int period, int outlet) {
+        LocalDate first, next;
+        switch (level) {
+            case SalesRollupCube.DAY:
+                first = LocalDate.ofEpochDay(period);
+                next = first.plusDays(1);
+                break;
+            case SalesRollupCube.MONTH:
+                first = LocalDate.of(period / 12, period % 12 + 1, 1);
+                next = first.plusMonths(1);
+                break;
+            default:
+                first = LocalDate.of(period, 1, 1);
+                next = first.plusYears(1);
+        }
+        return merge(first.toEpochDay(), next.toEpochDay(), outlet);
+    }
+
+    /** Everything ever sold, at one outlet or all of them. */
+    public Stats lifetime(int outlet) {
+        return merge(Integer.MIN_VALUE, Integer.MAX_VALUE, outlet);
+    }
+
+    /** Outlet indexes that have at least one sale. */
+    public int[] outlets() {
+        boolean[] seen = new boolean[1 << 16];
+        int n = 0;
+        for (long key : cells.keySet()) {
+            int outlet = (int) (key & 0xFFFF);
+            if (!seen[outlet]) { seen[outlet] = true; n++; }
+        }
+        int[] out = new int[n];
+        n = 0;
+        for (int o = 0; o < seen.length; o++) if (seen[o]) out[n++] = o;
+        return out;
+    }
+
+    // Days [fromDay, toDay)
+    private Stats merge(long fromDay, long toDay, int outlet) {
+        Stats s = new Stats();
+        for (Map.Entry<Long, Cell> e : cells.subMap(fromDay << 16, toDay << 16).entrySet()) {
+            if (outlet != ALL_OUTLETS && (e.getKey() & 0xFFFF) != outlet) continue;
+            Cell c = e.getValue();
+            s.customers.merge(c.customers);
+            s.quantity.merge(c.quantity);
+            s.ticketCents.merge(c.ticketCents);
+        }
+        return s;
+    }
+
+    // =================================================================
+    // PERSISTENCE
+    // =================================================================
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(cells.size());
+        for (Map.Entry<Long, Cell> e : cells.entrySet()) {
+            out.writeLong(e.getKey());
+            e.getValue().customers.write(out);
+            e.getValue().quantity.write(out);
+            e.getValue().ticketCents.write(out);
+        }
+    }
+
+    public void read(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            long key = in.readLong();
+            Cell c = new Cell();
+            c.customers.merge(HyperLogLog.read(in));
+            c.quantity.merge(LogHistogram.read(in));
+            c.ticketCents.merge(LogHistogram.read(in));
+            cells.put(key, c);
+        }
+    }
+}
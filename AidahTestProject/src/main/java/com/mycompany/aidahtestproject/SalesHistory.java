@@ -4,60 +4,67 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class SalesHistory extends JFrame {
 
-    // Data Structure
-    static class SaleRecord {
-        String date, time, customer, model, payment, staff;
-        int qty;
-        double total;
-
-        public SaleRecord(String d, String t, String c, String m, int q, double tot, String p, String s) {
-            this.date = d; 
-            this.time = t; 
-            this.customer = c; 
-            this.model = m;
-            this.qty = q; 
-            this.total = tot; 
-            this.payment = p;
-            this.staff = s; // New Field
-        }
-    }
-
-    private List<SaleRecord> allRecords = new ArrayList<>();
+    // Data comes from the shared SalesRepository (no private copy of the file)
+    private SalesRepository repository;
+    private SalesDateIndex.Slice allSales;
     private JTable table;
     private DefaultTableModel tableModel;
     private JTextField txtStartDate, txtEndDate;
+    private JComboBox<String> cmbStaff, cmbModel, cmbPayment;
+    private static final String ALL = "All";
     private JLabel lblGrandTotal;
+    // What the table currently shows, so new and edited sales can be applied to it.
+    // viewRefs and viewCents follow the table model's rows (not the sorted view)
+    private SalesQuery viewQuery = new SalesQuery();
+    private long viewTotalCents;
+    private final List<String> viewRefs = new ArrayList<>();
+    private final List<Long> viewCents = new ArrayList<>();
 
     public SalesHistory() {
-        allRecords = loadAllSales();
-
         setTitle("Sales History Analytics");
         setSize(1000, 600); // Made slightly wider for the extra column
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
 
-        // --- TOP PANEL: Filtering ---
-        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 10));
-        filterPanel.setBorder(BorderFactory.createTitledBorder("Filter by Date Range"));
+        // --- TOP PANEL: Filtering (dates on the first line, fields on the second) ---
+        JPanel filterPanel = new JPanel(new GridLayout(2, 1));
+        filterPanel.setBorder(BorderFactory.createTitledBorder("Filter Sales"));
+        JPanel datePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 5));
+        JPanel fieldPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 5));
 
-        filterPanel.add(new JLabel("Start (YYYY-MM-DD):"));
+        datePanel.add(new JLabel("Start (YYYY-MM-DD):"));
         txtStartDate = new JTextField(10);
-        filterPanel.add(txtStartDate);
+        datePanel.add(txtStartDate);
 
-        filterPanel.add(new JLabel("End (YYYY-MM-DD):"));
+        datePanel.add(new JLabel("End (YYYY-MM-DD):"));
         txtEndDate = new JTextField(10);
-        filterPanel.add(txtEndDate);
+        datePanel.add(txtEndDate);
+
+        // Filled once the repository has loaded
+        cmbStaff = filterCombo();
+        cmbModel = filterCombo();
+        cmbPayment = filterCombo();
+        fieldPanel.add(new JLabel("Staff:"));
+        fieldPanel.add(cmbStaff);
+        fieldPanel.add(new JLabel("Model:"));
+        fieldPanel.add(cmbModel);
+        fieldPanel.add(new JLabel("Payment:"));
+        fieldPanel.add(cmbPayment);
 
         JButton btnFilter = new JButton("Apply Filter");
         JButton btnReset = new JButton("Show All");
-        filterPanel.add(btnFilter);
-        filterPanel.add(btnReset);
+        fieldPanel.add(btnFilter);
+        fieldPanel.add(btnReset);
+
+        filterPanel.add(datePanel);
+        filterPanel.add(fieldPanel);
 
         // --- CENTER PANEL: Table ---
         // Added "Staff" to columns
@@ -92,115 +99,173 @@ public class SalesHistory extends JFrame {
         btnReset.addActionListener(e -> {
             txtStartDate.setText("");
             txtEndDate.setText("");
-            refreshTable(allRecords);
+            cmbStaff.setSelectedIndex(0);
+            cmbModel.setSelectedIndex(0);
+            cmbPayment.setSelectedIndex(0);
+            allSales = loadAllSales();
+            refreshTable(allSales, new SalesQuery());
         });
 
-        // Initial Load
-        refreshTable(allRecords);
+        // Initial Load: sales.dat is read in the background, filters work once it is done
+        btnFilter.setEnabled(false);
+        btnReset.setEnabled(false);
+        lblGrandTotal.setText("Loading sales...");
+        AsyncTasks.runWithProgress(this, "Loading sales history", SalesRepository::getInstance, repo -> {
+            repository = repo;
+            allSales = loadAllSales();
+            fillCombo(cmbStaff, SalesDictionary.STAFF);
+            fillCombo(cmbModel, SalesDictionary.MODEL);
+            fillCombo(cmbPayment, SalesDictionary.PAYMENT);
+            btnFilter.setEnabled(true);
+            btnReset.setEnabled(true);
+            // Same query object: sales recorded during the load still apply to it
+            refreshTable(allSales, viewQuery);
+        });
+        // New sales are added to the view as they are made; edited ones are updated in place
+        EventBus.subscribe(this, EventBus.SaleRecorded.class,
+                events -> applySaleChanges(events.stream().map(e -> e.sale.getReferenceNo()).collect(Collectors.toList())));
+        EventBus.subscribe(this, EventBus.SaleEdited.class,
+                events -> applySaleChanges(events.stream().map(e -> e.referenceNo).collect(Collectors.toList())));
         setLocationRelativeTo(null);
     }
 
-    private void refreshTable(List<SaleRecord> records) {
+    private void refreshTable(SalesDateIndex.Slice slice, SalesQuery query) {
         tableModel.setRowCount(0);
-        double grandTotal = 0;
-        for (SaleRecord r : records) {
-            // Add Staff to row data
-            Object[] row = {r.date, r.time, r.customer, r.model, r.qty, String.format("%.2f", r.total), r.payment, r.staff};
-            tableModel.addRow(row);
-            grandTotal += r.total;
+        viewRefs.clear();
+        viewCents.clear();
+        for (int row : slice.rows()) addRow(repository.getSale(row), repository.getTotalCents(row));
+        viewQuery = query;
+        // Total comes from the index's prefix sums, not a re-sum of the rows
+        viewTotalCents = slice.totalCents();
+        showTotal();
+    }
+
+    private static Object[] tableRow(Sale s) {
+        // Dates are "yyyy-MM-dd HH:mm"; split into the two table columns
+        String fullDate = s.getDate();
+        return new Object[]{fullDate.substring(0, 10), fullDate.substring(11), s.getCustomerName(), s.getModelId(),
+                s.getQuantity(), String.format("%.2f", s.getTotalPrice()), s.getTransactionMethod(), s.getEmployeeName()};
+    }
+
+    private void addRow(Sale s, long cents) {
+        tableModel.addRow(tableRow(s));
+        viewRefs.add(s.getReferenceNo());
+        viewCents.add(cents);
+    }
+
+    private void showTotal() {
+        lblGrandTotal.setText(String.format("Total Sales in View: RM %.2f", viewTotalCents / 100.0));
+    }
+
+    /** A new or edited sale as the current filter sees it (sale is null if it does not pass). */
+    private static class SaleDelta {
+        final String referenceNo;
+        final Sale sale;
+        final long cents;
+
+        SaleDelta(String referenceNo, Sale sale, long cents) {
+            this.referenceNo = referenceNo;
+            this.sale = sale;
+            this.cents = cents;
         }
-        lblGrandTotal.setText(String.format("Total Sales in View: RM %.2f", grandTotal));
+    }
+
+    // Adds, updates or removes just the rows of these sales, and adjusts the total to match
+    private void applySaleChanges(List<String> referenceNos) {
+        SalesQuery query = viewQuery;
+        AsyncTasks.run(() -> {
+            SalesRepository repo = SalesRepository.getInstance(); // picks up the new rows
+            List<SaleDelta> deltas = new ArrayList<>();
+            synchronized (repo) {
+                for (String ref : referenceNos) {
+                    int row = repo.findByReference(ref);
+                    if (row < 0) continue;
+                    boolean listed = repo.matches(row, query);
+                    deltas.add(new SaleDelta(ref, listed ? repo.getSale(row) : null, listed ? repo.getTotalCents(row) : 0));
+                }
+            }
+            return deltas;
+        }, deltas -> {
+            if (query != viewQuery) return; // the filter changed meanwhile and already includes them
+            for (SaleDelta d : deltas) {
+                int r = viewRefs.indexOf(d.referenceNo);
+                if (r >= 0) {
+                    viewTotalCents -= viewCents.get(r);
+                    if (d.sale == null) {
+                        tableModel.removeRow(r);
+                        viewRefs.remove(r);
+                        viewCents.remove(r);
+                        continue;
+                    }
+                    Object[] values = tableRow(d.sale);
+                    for (int c = 0; c < values.length; c++) tableModel.setValueAt(values[c], r, c);
+                    viewCents.set(r, d.cents);
+                } else if (d.sale != null) {
+                    addRow(d.sale, d.cents);
+                } else {
+                    continue;
+                }
+                viewTotalCents += d.cents;
+            }
+            showTotal();
+        });
+    }
+
+    // The rows for a query, from the date index when only dates are set
+    private SalesDateIndex.Slice viewSlice(SalesQuery query) {
+        boolean byField = !query.staff.isEmpty() || !query.models.isEmpty() || !query.payments.isEmpty();
+        if (!byField) {
+            return query.startDate != null ? repository.dateSlice(query.startDate, query.endDate) : loadAllSales();
+        }
+        int[] rows = repository.query(query);
+        return new SalesDateIndex.Slice(rows, repository.totalCents(rows));
     }
 
     private void applyFilter() {
         String start = txtStartDate.getText().trim();
         String end = txtEndDate.getText().trim();
+        boolean byDate = !start.isEmpty() || !end.isEmpty();
 
-        if (start.isEmpty() || end.isEmpty()) {
+        if (byDate && (start.isEmpty() || end.isEmpty())) {
             JOptionPane.showMessageDialog(this, "Please enter both Start and End dates.");
             return;
         }
 
-        List<SaleRecord> filtered = new ArrayList<>();
-        for (SaleRecord r : allRecords) {
-            if (r.date.compareTo(start) >= 0 && r.date.compareTo(end) <= 0) {
-                filtered.add(r);
+        SalesQuery query = new SalesQuery();
+        addChoice(cmbStaff, query::staff);
+        addChoice(cmbModel, query::model);
+        addChoice(cmbPayment, query::payment);
+        if (byDate) {
+            try {
+                query.dateRange(start, end);
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(this, "Please enter dates as yyyy-MM-dd.");
+                return;
             }
         }
-        refreshTable(filtered);
+        // Date only (or nothing) is answered straight from the date index
+        refreshTable(viewSlice(query), query);
     }
 
-    // --- UPDATED CSV READER ---
-    public ArrayList<SaleRecord> loadAllSales() {
-        ArrayList<SaleRecord> records = new ArrayList<>();
-        File file = new File("sales.csv"); 
-        
-        if (!file.exists()) return records;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            br.readLine(); // Skip Header if exists
-            
-            while ((line = br.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] p = line.split(",");
-                
-                // Variables to extract
-                String fullDate = "";
-                String cust = "";
-                String model = "";
-                int qty = 0;
-                double total = 0.0;
-                String pay = "";
-                String staff = "Unknown";
-
-                try {
-                    // CASE 1: New Format (8 Columns) - Includes RefNo at start
-                    // RefNo, Date, Cust, Model, Qty, Total, Pay, Staff
-                    if (p.length >= 8) {
-                        fullDate = p[1];
-                        cust = p[2];
-                        model = p[3];
-                        qty = Integer.parseInt(p[4]);
-                        total = Double.parseDouble(p[5]);
-                        pay = p[6];
-                        staff = p[7];
-                    } 
-                    // CASE 2: Old Format (7 Columns) - Starts with Date
-                    // Date, Cust, Model, Qty, Total, Pay, Staff
-                    else if (p.length == 7) {
-                        fullDate = p[0];
-                        cust = p[1];
-                        model = p[2];
-                        qty = Integer.parseInt(p[3]);
-                        total = Double.parseDouble(p[4]);
-                        pay = p[5];
-                        staff = p[6];
-                    } 
-                    else {
-                        continue; // Skip invalid rows
-                    }
+    // Adds the selected value to the query unless "All" is selected
+    private void addChoice(JComboBox<String> box, Consumer<String> filter) {
+        String value = (String) box.getSelectedItem();
+        if (value != null && !value.equals(ALL)) filter.accept(value);
+    }
 
-                    // Split Date and Time (Assuming format "YYYY-MM-DD HH:mm:ss")
-                    String datePart = fullDate;
-                    String timePart = "";
-                    if (fullDate.contains(" ")) {
-                        String[] dt = fullDate.split(" ");
-                        datePart = dt[0];
-                        timePart = dt[1];
-                    }
+    private JComboBox<String> filterCombo() {
+        JComboBox<String> box = new JComboBox<>();
+        box.addItem(ALL);
+        return box;
+    }
 
-                    records.add(new SaleRecord(datePart, timePart, cust, model, qty, total, pay, staff));
+    private void fillCombo(JComboBox<String> box, int kind) {
+        for (String value : repository.distinctValues(kind)) box.addItem(value);
+    }
 
-                } catch (NumberFormatException e) {
-                    // Skip corrupted lines
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error reading sales.csv: " + e.getMessage());
-        }
-        
-        return records;
+    // --- SHARED REPOSITORY ---
+    public SalesDateIndex.Slice loadAllSales() {
+        return repository.allByDate();
     }
 
     public static void main(String[] args) {
@@ -4,6 +4,9 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class SalesHistoryGUI extends JFrame {
     
@@ -23,31 +26,12 @@ public class SalesHistoryGUI extends JFrame {
         };
         JTable table = new JTable(model);
         
-        // 2. Load Data and Calculate Total
-        ArrayList<Sale> sales = SaleReader.loadSales();
-        double grandTotal = 0;
-        
-        // Use a standard loop for clarity and safety
-        for (Sale s : sales) {
-            Object[] row = {
-                s.getDate(),
-                s.getCustomerName(),
-                s.getModelId(),
-                s.getQuantity(),
-                String.format("%.2f", s.getTotalPrice()), // Formats price to 2 decimals
-                s.getTransactionMethod(),
-                s.getEmployeeName()
-            };
-            model.addRow(row);
-            grandTotal += s.getTotalPrice();
-        }
-        
-        // 3. Layout
+        // 2. Layout
         setLayout(new BorderLayout());
         add(new JScrollPane(table), BorderLayout.CENTER);
         
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        JLabel lblTotal = new JLabel("Total Revenue: RM " + String.format("%.2f", grandTotal));
+        JLabel lblTotal = new JLabel("Loading sales...");
         lblTotal.setFont(new Font("Arial", Font.BOLD, 14));
         bottomPanel.add(lblTotal);
         
@@ -55,11 +39,89 @@ public class SalesHistoryGUI extends JFrame {
         bottomPanel.add(refreshBtn);
         
         add(bottomPanel, BorderLayout.NORTH);
-        
-        // 4. Refresh Button Logic
-        refreshBtn.addActionListener(e -> {
-            dispose();
-            new SalesHistoryGUI().setVisible(true);
+
+        // 3. Load Data and Calculate Total (file read off the event thread)
+        load(model, lblTotal);
+
+        // 4. New sales are appended as they are recorded; an edited sale's row is updated in place
+        EventBus.subscribe(this, EventBus.SaleRecorded.class, events -> {
+            for (EventBus.SaleRecorded e : events) applyChange(model, e.sale);
+            showTotal(lblTotal);
+        });
+        EventBus.subscribe(this, EventBus.SaleEdited.class, events -> {
+            for (EventBus.SaleEdited e : events) applyChange(model, e.sale);
+            showTotal(lblTotal);
+        });
+
+        // 5. Refresh Button Logic: reloads the rows in place
+        refreshBtn.addActionListener(e -> load(model, lblTotal));
+    }
+
+    private double grandTotal;
+    // Row of each reference number on screen (rows are only ever appended). A sale
+    // recorded or edited while the file was being read may or may not be in it, so
+    // it is applied again afterwards, by reference: never listed twice
+    private final Map<String, Integer> rowByRef = new HashMap<>();
+    private final List<Sale> rows = new ArrayList<>();
+    private final List<Sale> changedDuringLoad = new ArrayList<>();
+    private int loading = 0;
+
+    private void load(DefaultTableModel model, JLabel lblTotal) {
+        loading++;
+        AsyncTasks.run(SaleReader::loadSales, sales -> {
+            loading--;
+            model.setRowCount(0);
+            rowByRef.clear();
+            rows.clear();
+            grandTotal = 0;
+
+            // Use a standard loop for clarity and safety
+            for (Sale s : sales) putSale(model, s);
+            if (loading == 0) {
+                for (Sale s : changedDuringLoad) putSale(model, s);
+                changedDuringLoad.clear();
+            }
+            showTotal(lblTotal);
+        }, error -> {
+            loading--;
+            System.err.println("Error loading sales history: " + error.getMessage());
         });
     }
-}
\ No newline at end of file
+
+    private void applyChange(DefaultTableModel model, Sale s) {
+        if (loading > 0) changedDuringLoad.add(s);
+        else putSale(model, s);
+    }
+
+    // Adds a sale, or replaces the row already showing its reference number
+    private void putSale(DefaultTableModel model, Sale s) {
+        Integer r = rowByRef.get(s.getReferenceNo());
+        if (r == null) {
+            rowByRef.put(s.getReferenceNo(), rows.size());
+            rows.add(s);
+            model.addRow(toRow(s));
+        } else {
+            grandTotal -= rows.get(r).getTotalPrice();
+            rows.set(r, s);
+            Object[] values = toRow(s);
+            for (int c = 0; c < values.length; c++) model.setValueAt(values[c], r, c);
+        }
+        grandTotal += s.getTotalPrice();
+    }
+
+    private static Object[] toRow(Sale s) {
+        return new Object[] {
+            s.getDate(),
+            s.getCustomerName(),
+            s.getModelId(),
+            s.getQuantity(),
+            String.format("%.2f", s.getTotalPrice()), // Formats price to 2 decimals
+            s.getTransactionMethod(),
+            s.getEmployeeName()
+        };
+    }
+
+    private void showTotal(JLabel lblTotal) {
+        lblTotal.setText("Total Revenue: RM " + String.format("%.2f", grandTotal));
+    }
+}
@@ -0,0 +1,494 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of every sale (sales.dat).
+ *
+ * Record layout (big endian):
+ *   int   length of the rest of the record
+ *   long  sale time as wall-clock epoch millis
+ *   int   model id, staff id, payment id (see SalesDictionary)
+ *   short outlet index
+ *   int   quantity
+ *   long  total price in sen
+ *   short + bytes  reference number (UTF-8, at most 65535 bytes)
+ *   short + bytes  customer name (UTF-8, at most 65535 bytes)
+ *
+ * An edited sale is not rewritten in place: an edit record is appended
+ * instead. Its length has the top bit (EDIT_FLAG) set, and it holds the
+ * sale as it was followed by the sale as it is now, both laid out as
+ * above and with the same reference number. Readers apply it to the
+ * earlier sale as they come to it; builds from before edit records see
+ * one as a torn tail and stop there.
+ *
+ * The file starts with "GHS2" and a long generation, which only changes
+ * when the journal is created anew (e.g. by a CSV import), so readers
+ * can tell a replaced journal from one that only grew.
+ * Older files start with just "GHS1" and count as generation 0.
+ *
+ * Readers map the file a window at a time (so it may grow past 2 GB) and
+ * walk it with a reusable Cursor, so scanning does not create any Strings
+ * unless a caller asks for the text fields.
+ */
+public class SalesJournal {
+
+    public static final String FILE_NAME = "sales.dat";
+
+    private static final int MAGIC_V1 = 0x47485331; // "GHS1"
+    private static final int MAGIC = 0x47485332; // "GHS2"
+    private static final int HEADER_SIZE_V1 = 4;
+    static final int HEADER_SIZE = 12;
+    private static final int FIXED_SIZE = 8 + 4 + 4 + 4 + 2 + 4 + 8;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+    private static final int MAX_BODY = FIXED_SIZE + 2 * (2 + MAX_FIELD_BYTES);
+    private static final int EDIT_FLAG = 0x80000000;
+    private static final int MAX_EDIT_BODY = 2 * MAX_BODY;
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    private static final int FINGERPRINT_WINDOW = 4096;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // Volatile so readers (e.g. the writer thread checking an edit) skip this class's lock once set
+    private static volatile SalesDictionary dictionary;
+    private static volatile boolean migrationChecked = false;
+    private static boolean migrationStarted = false;
+
+    public interface Visitor {
+        void visit(Cursor c);
+    }
+
+    // =================================================================
+    // WRITING
+    // =================================================================
+
+    /**
+     * Queues a sale for the journal on the PersistenceWriter thread.
+     * Records are queued in call order, so the file order matches.
+     * @param sale
+     * @return completes with the byte offset of the record once it is on disk
+     */
+    public static synchronized CompletableFuture<Long> appendAsync(Sale sale) {
+        ensureMigrated();
+        ByteBuffer record;
+        try {
+            record = encode(sale);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return PersistenceWriter.getInstance().append(Paths.get(FILE_NAME), record, header(newGeneration()), null);
+    }
+
+    /**
+     * Queues an edit record: after replaces before, the sale with the same
+     * Reference No. Like a compare-and-set, it is only written if no record
+     * from checkedTo on mentions that reference (and the journal is still
+     * the one the caller read). That is checked on the writer thread with
+     * the SALES lock held, so of two terminals editing one sale only the
+     * first wins.
+     * @param before the sale as the caller read it
+     * @param after
+     * @param checkedTo offset up to which the caller had read the journal
+     * @param fingerprint fingerprint(checkedTo) when it read it
+     * @return completes with the record's offset once it is on disk, or -1 if the sale changed in the meantime
+     */
+    public static synchronized CompletableFuture<Long> appendEdit(Sale before, Sale after, long checkedTo, long fingerprint) {
+        ensureMigrated();
+        String referenceNo = before.getReferenceNo();
+        ByteBuffer record;
+        try {
+            if (!referenceNo.equals(after.getReferenceNo())) {
+                throw new IOException("The Reference No of sale " + referenceNo + " cannot be changed.");
+            }
+            record = encodeEdit(before, after);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return PersistenceWriter.getInstance().append(Paths.get(FILE_NAME), FileCoordinator.SALES,
+                () -> unchangedSince(checkedTo, fingerprint, referenceNo) ? record : null);
+    }
+
+    // Called with the SALES lock held
+    private static boolean unchangedSince(long offset, long fingerprint, String referenceNo) {
+        if (offset < HEADER_SIZE_V1 || fingerprint(offset) != fingerprint) return false;
+        boolean[] mentioned = {false};
+        scan(offset, c -> {
+            if (!mentioned[0] && c.referenceNo().equals(referenceNo)) mentioned[0] = true;
+        });
+        return !mentioned[0];
+    }
+
+    static ByteBuffer header(long generation) {
+        ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE);
+        b.putInt(MAGIC).putLong(generation).flip();
+        return b;
+    }
+
+    // A journal created from scratch must not look like an earlier one at the same path
+    static long newGeneration() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Checks that a sale can be stored: a parseable date and text fields
+     * that fit their length prefixes.
+     * @param sale
+     * @throws IllegalArgumentException saying what is wrong
+     */
+    static void validate(Sale sale) {
+        toEpochMillis(sale.getDate());
+        checkLength("Reference No", sale.getReferenceNo());
+        checkLength("Customer name", sale.getCustomerName());
+    }
+
+    private static void checkLength(String field, String value) {
+        int bytes = value.getBytes(StandardCharsets.UTF_8).length;
+        if (bytes > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException(field + " is " + bytes + " bytes; at most " + MAX_FIELD_BYTES + " can be stored");
+        }
+    }
+
+    private static ByteBuffer encodeEdit(Sale before, Sale after) throws IOException {
+        ByteBuffer old = encode(before), now = encode(after);
+        int beforeLength = old.limit() - 4, afterLength = now.limit() - 4;
+        ByteBuffer b = ByteBuffer.allocate(4 + beforeLength + afterLength);
+        b.putInt(EDIT_FLAG | (beforeLength + afterLength));
+        b.put(old.position(4)).put(now.position(4));
+        b.flip();
+        return b;
+    }
+
+    static ByteBuffer encode(Sale sale) throws IOException {
+        try {
+            validate(sale);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Sale " + sale.getReferenceNo() + " not saved: " + e.getMessage(), e);
+        }
+        SalesDictionary dict = dictionary();
+        byte[] ref = sale.getReferenceNo().getBytes(StandardCharsets.UTF_8);
+        byte[] cust = sale.getCustomerName().getBytes(StandardCharsets.UTF_8);
+
+        int bodyLength = FIXED_SIZE + 2 + ref.length + 2 + cust.length;
+        ByteBuffer b = ByteBuffer.allocate(4 + bodyLength);
+        b.putInt(bodyLength);
+        b.putLong(toEpochMillis(sale.getDate()));
+        b.putInt(dict.idFor(SalesDictionary.MODEL, sale.getModelId()));
+        b.putInt(dict.idFor(SalesDictionary.STAFF, sale.getEmployeeName()));
+        b.putInt(dict.idFor(SalesDictionary.PAYMENT, sale.getTransactionMethod()));
+        b.putShort((short) sale.getOutlet()); // OutletRegistry index
+        b.putInt(sale.getQuantity());
+        b.putLong(Math.round(sale.getTotalPrice() * 100));
+        b.putShort((short) ref.length).put(ref);
+        b.putShort((short) cust.length).put(cust);
+        b.flip();
+        return b;
+    }
+
+    // =================================================================
+    // READING
+    // =================================================================
+
+    /**
+     * Visits every record starting at the given offset.
+     * @param fromOffset byte offset to start at (0 means the beginning)
+     * @param visitor
+     * @return the offset just after the last complete record
+     */
+    public static long scan(long fromOffset, Visitor visitor) {
+        return scan(fromOffset, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits at most maxRecords records starting at the given offset.
+     * @param fromOffset byte offset to start at (0 means the beginning)
+     * @param maxRecords
+     * @param visitor
+     * @return the offset just after the last record visited
+     */
+    public static long scan(long fromOffset, int maxRecords, Visitor visitor) {
+        ensureMigrated();
+        File file = new File(FILE_NAME);
+        if (!file.exists()) return fromOffset;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            // Shared lock only while sizing: appends made later are just not seen
+            long size = FileCoordinator.withShared(FILE_NAME, ch::size);
+            if (size < HEADER_SIZE_V1) return fromOffset;
+            int headerSize = headerSize(ch, size);
+            if (headerSize < 0) {
+                System.err.println("Error: sales.dat has an unknown format.");
+                return fromOffset;
+            }
+
+            Cursor c = new Cursor(dictionary());
+            MappedByteBuffer buf = null;
+            long windowStart = 0;
+            long pos = Math.max(fromOffset, headerSize);
+            int visited = 0;
+            while (pos + 4 <= size && visited++ < maxRecords) {
+                // A window always holds a whole record, so only its start decides when to move on
+                if (buf == null || pos + 4 + MAX_EDIT_BODY > windowStart + buf.capacity() && windowStart + buf.capacity() < size) {
+                    windowStart = pos;
+                    buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos));
+                }
+                int at = (int) (pos - windowStart);
+                int length = buf.getInt(at);
+                boolean edit = (length & EDIT_FLAG) != 0;
+                length &= ~EDIT_FLAG;
+                // Stop at a torn tail left by a crash mid-append
+                if (length < FIXED_SIZE || length > (edit ? MAX_EDIT_BODY : MAX_BODY) || pos + 4 + length > size) break;
+                if (edit) {
+                    // The sale as it was comes first; the cursor shows the sale as it is now
+                    int beforeLength = bodyLength(buf, at + 4, length - FIXED_SIZE);
+                    if (beforeLength < 0) break;
+                    c.moveTo(buf, at + 4 + beforeLength, pos);
+                    c.replacing(at + 4);
+                } else {
+                    c.moveTo(buf, at + 4, pos);
+                }
+                visitor.visit(c);
+                pos += 4 + length;
+            }
+            return pos;
+        } catch (IOException e) {
+            System.err.println("Error reading sales.dat: " + e.getMessage());
+            return fromOffset;
+        }
+    }
+
+    // Length of the sale body at base, or -1 if it would not leave room for another within limit
+    private static int bodyLength(ByteBuffer buf, int base, int limit) {
+        if (FIXED_SIZE + 4 > limit) return -1;
+        int refLength = buf.getShort(base + FIXED_SIZE) & 0xFFFF;
+        if (FIXED_SIZE + 4 + refLength > limit) return -1;
+        int length = FIXED_SIZE + 4 + refLength + (buf.getShort(base + FIXED_SIZE + 2 + refLength) & 0xFFFF);
+        return length <= limit ? length : -1;
+    }
+
+    // 4 for GHS1, 12 for GHS2, -1 if the file is neither
+    private static int headerSize(FileChannel ch, long size) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(4);
+        while (head.hasRemaining()) {
+            if (ch.read(head, head.position()) < 0) return -1;
+        }
+        int magic = head.getInt(0);
+        if (magic == MAGIC_V1) return HEADER_SIZE_V1;
+        return magic == MAGIC && size >= HEADER_SIZE ? HEADER_SIZE : -1;
+    }
+
+    public static long scan(Visitor visitor) {
+        return scan(0, visitor);
+    }
+
+    /**
+     * Every sale in journal order, with edits applied.
+     * @return
+     */
+    public static ArrayList<Sale> loadAll() {
+        ArrayList<Sale> sales = new ArrayList<>();
+        Map<String, Integer> indexByReference = new HashMap<>();
+        scan(c -> {
+            Integer i = c.isEdit() ? indexByReference.get(c.referenceNo()) : null;
+            if (i != null) {
+                sales.set(i, c.toSale());
+            } else {
+                indexByReference.put(c.referenceNo(), sales.size());
+                sales.add(c.toSale());
+            }
+        });
+        return sales;
+    }
+
+    /**
+     * CRC32 of the journal's generation and the last FINGERPRINT_WINDOW
+     * bytes before an offset. Used to check that a previously consumed
+     * prefix has not been rewritten without reading the whole prefix again.
+     * @param offset
+     * @return the checksum, or -1 if the file is shorter than the offset
+     */
+    public static long fingerprint(long offset) {
+        File file = new File(FILE_NAME);
+        if (!file.exists() || file.length() < offset) return -1;
+
+        int window = (int) Math.min(offset, FINGERPRINT_WINDOW);
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            // GHS1 files have no generation; their fingerprints stay as they were
+            long generation = readGeneration(ch);
+            if (generation > 0) {
+                crc.update(ByteBuffer.allocate(8).putLong(generation).flip());
+            }
+            ByteBuffer buf = ByteBuffer.allocate(window);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, offset - window + buf.position()) < 0) return -1;
+            }
+            crc.update(buf.flip());
+            return crc.getValue();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The journal's generation: changes whenever it is recreated, never
+     * when it is only appended to (edits included).
+     * @return the generation, 0 for an old GHS1 journal or none at all
+     */
+    public static long generation() {
+        File file = new File(FILE_NAME);
+        if (!file.exists()) return 0;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return readGeneration(ch);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long readGeneration(FileChannel ch) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+        while (head.hasRemaining()) {
+            if (ch.read(head, head.position()) < 0) break;
+        }
+        return head.position() == HEADER_SIZE && head.getInt(0) == MAGIC ? head.getLong(4) : 0;
+    }
+
+    public static long size() {
+        File file = new File(FILE_NAME);
+        return file.exists() ? file.length() : 0;
+    }
+
+    /**
+     * Read-only view of the record under the scan position. Only valid
+     * inside Visitor.visit; copy out what you need.
+     *
+     * For an edit record the fields are the sale's new values, and
+     * before() gives the values it replaces.
+     */
+    public static class Cursor {
+        private final SalesDictionary dict;
+        private ByteBuffer buf;
+        private int base;
+        private long offset;
+        private Cursor before;
+        private boolean edit;
+
+        Cursor(SalesDictionary dict) {
+            this.dict = dict;
+        }
+
+        void moveTo(ByteBuffer buf, int base, long offset) {
+            this.buf = buf;
+            this.base = base;
+            this.offset = offset;
+            this.edit = false;
+        }
+
+        void replacing(int beforeBase) {
+            if (before == null) before = new Cursor(dict);
+            before.moveTo(buf, beforeBase, offset);
+            edit = true;
+        }
+
+        /** True if this record replaces the earlier sale with the same reference number. */
+        public boolean isEdit() { return edit; }
+
+        /** For an edit record, the sale as it was before the edit; null otherwise. */
+        public Cursor before() { return edit ? before : null; }
+
+        public long offset() { return offset; }
+        public long epochMillis() { return buf.getLong(base); }
+        public int modelId() { return buf.getInt(base + 8); }
+        public int staffId() { return buf.getInt(base + 12); }
+        public int paymentId() { return buf.getInt(base + 16); }
+        public int outlet() { return buf.getShort(base + 20); }
+        public int quantity() { return buf.getInt(base + 22); }
+        public long totalCents() { return buf.getLong(base + 26); }
+
+        public String modelName() { return dict.lookup(SalesDictionary.MODEL, modelId()); }
+        public String staffName() { return dict.lookup(SalesDictionary.STAFF, staffId()); }
+        public String paymentName() { return dict.lookup(SalesDictionary.PAYMENT, paymentId()); }
+
+        public String referenceNo() {
+            return readString(base + FIXED_SIZE);
+        }
+
+        public String customerName() {
+            int refLength = buf.getShort(base + FIXED_SIZE) & 0xFFFF;
+            return readString(base + FIXED_SIZE + 2 + refLength);
+        }
+
+        private String readString(int at) {
+            int len = buf.getShort(at) & 0xFFFF;
+            byte[] bytes = new byte[len];
+            buf.get(at + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public Sale toSale() {
+            return new Sale(referenceNo(), formatDate(epochMillis()), customerName(), modelName(),
+                    quantity(), totalCents() / 100.0, paymentName(), staffName(), outlet());
+        }
+    }
+
+    // =================================================================
+    // HELPERS
+    // =================================================================
+
+    static SalesDictionary dictionary() {
+        if (dictionary == null) {
+            synchronized (SalesJournal.class) {
+                if (dictionary == null) dictionary = new SalesDictionary();
+            }
+        }
+        return dictionary;
+    }
+
+    // Older sales.csv files are imported the first time the journal is touched
+    private static void ensureMigrated() {
+        if (migrationChecked) return;
+        synchronized (SalesJournal.class) {
+            // The import itself scans the journal, which lands back here
+            if (migrationStarted) return;
+            migrationStarted = true;
+            SalesCsvMigrator.migrateIfNeeded();
+            migrationChecked = true;
+        }
+    }
+
+    /**
+     * Converts "yyyy-MM-dd HH:mm" into wall-clock millis (no time zone shifts).
+     * @param date
+     * @return
+     * @throws IllegalArgumentException if the date is missing or not in that form
+     */
+    public static long toEpochMillis(String date) {
+        if (date == null) throw new IllegalArgumentException("No date given");
+        try {
+            return LocalDateTime.parse(date.trim(), DATE_FORMAT).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Date \"" + date + "\" is not yyyy-MM-dd HH:mm", e);
+        }
+    }
+
+    public static String formatDate(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(epochMillis / 1000, 0, ZoneOffset.UTC).format(DATE_FORMAT);
+    }
+}
@@ -0,0 +1,125 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Best sellers per month and per year: top models (by units), top staff
+ * (by revenue) and top customers (by revenue).
+ *
+ * Each period and category holds one SpaceSaving summary of CAPACITY
+ * counters, so memory per period stays fixed however many SKUs or
+ * customers there are. Reports show the top few with their error bound.
+ * An edited sale is retracted and folded again (see SpaceSaving.retract).
+ */
+public class SalesLeaderboard {
+
+    public static final int MODELS = 0, STAFF = 1, CUSTOMERS = 2;
+    private static final int CATEGORIES = 3;
+    private static final int CAPACITY = 256;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // Period number (as in SalesRollupCube) -> one summary per category
+    private final Map<Integer, SpaceSaving[]> byMonth = new TreeMap<>();
+    private final Map<Integer, SpaceSaving[]> byYear = new TreeMap<>();
+
+    // Sales arrive mostly in day order, so remember the last day -> month
+    private int lastDay = Integer.MIN_VALUE, lastMonth;
+
+    public void fold(long epochMillis, String model, String staff, String customer, int quantity, long totalCents) {
+        int month = monthOf(epochMillis);
+        offer(summaries(byMonth, month), model, staff, customer, quantity, totalCents, false);
+        offer(summaries(byYear, month / 12), model, staff, customer, quantity, totalCents, false);
+    }
+
+    /** Takes back a sale folded in earlier (the old values of an edited sale). */
+    public void retract(long epochMillis, String model, String staff, String customer, int quantity, long totalCents) {
+        int month = monthOf(epochMillis);
+        offer(summaries(byMonth, month), model, staff, customer, quantity, totalCents, true);
+        offer(summaries(byYear, month / 12), model, staff, customer, quantity, totalCents, true);
+    }
+
+    private int monthOf(long epochMillis) {
+        int day = (int) Math.floorDiv(epochMillis, DAY_MS);
+        if (day != lastDay) {
+            lastDay = day;
+            lastMonth = SalesRollupCube.monthOfDay(day);
+        }
+        return lastMonth;
+    }
+
+    private static void offer(SpaceSaving[] s, String model, String staff, String customer, int quantity, long totalCents, boolean retract) {
+        if (model != null) offer(s[MODELS], model, quantity, retract);
+        if (staff != null) offer(s[STAFF], staff, totalCents, retract);
+        if (customer != null && !customer.isBlank()) offer(s[CUSTOMERS], customer.trim(), totalCents, retract);
+    }
+
+    private static void offer(SpaceSaving s, String key, long weight, boolean retract) {
+        if (retract) s.retract(key, weight);
+        else s.offer(key, weight);
+    }
+
+    private static SpaceSaving[] summaries(Map<Integer, SpaceSaving[]> map, int period) {
+        SpaceSaving[] s = map.get(period);
+        if (s == null) {
+            s = new SpaceSaving[CATEGORIES];
+            for (int c = 0; c < CATEGORIES; c++) s[c] = new SpaceSaving(CAPACITY);
+            map.put(period, s);
+        }
+        return s;
+    }
+
+    // =================================================================
+    // QUERIES
+    // =================================================================
+
+    /**
+     * The k heaviest entries of a category in one period.
+     * @param level SalesRollupCube.MONTH or SalesRollupCube.YEAR
+     * @param period period number at that level
+     * @param category MODELS, STAFF or CUSTOMERS
+     * @param k how many to return
+     * @return heaviest first; empty if the period has no sales
+     */
+    public List<SpaceSaving.Entry> top(int level, int period, int category, int k) {
+        SpaceSaving[] s = (level == SalesRollupCube.YEAR ? byYear : byMonth).get(period);
+        return s == null ? Collections.emptyList() : s[category].top(k);
+    }
+
+    // =================================================================
+    // PERSISTENCE
+    // =================================================================
+
+    public void write(DataOutputStream out) throws IOException {
+        writeLevel(out, byMonth);
+        writeLevel(out, byYear);
+    }
+
+    public void read(DataInputStream in) throws IOException {
+        readLevel(in, byMonth);
+        readLevel(in, byYear);
+    }
+
+    private static void writeLevel(DataOutputStream out, Map<Integer, SpaceSaving[]> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<Integer, SpaceSaving[]> e : map.entrySet()) {
+            out.writeInt(e.getKey());
+            for (SpaceSaving s : e.getValue()) s.write(out);
+        }
+    }
+
+    private static void readLevel(DataInputStream in, Map<Integer, SpaceSaving[]> map) throws IOException {
+        int periods = in.readInt();
+        for (int p = 0; p < periods; p++) {
+            int period = in.readInt();
+            SpaceSaving[] s = new SpaceSaving[CATEGORIES];
+            for (int c = 0; c < CATEGORIES; c++) s[c] = SpaceSaving.read(in, CAPACITY);
+            map.put(period, s);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.mycompany.aidahtestproject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A multi-filter sales search, run by SalesRepository.query().
+ *
+ * Values given for the same field are OR-ed ("Cash" or "Card"); different
+ * fields are AND-ed. Unset fields do not filter. For example:
+ *
+ *   repo.query(new SalesQuery().staff("Ali").model("DW2300-1").payment("Card"))
+ */
+public class SalesQuery {
+
+    final List<String> staff = new ArrayList<>();
+    final List<String> models = new ArrayList<>();
+    final List<String> payments = new ArrayList<>();
+    String startDate, endDate;
+    String customer;
+
+    public SalesQuery staff(String... employeeNames) {
+        staff.addAll(Arrays.asList(employeeNames));
+        return this;
+    }
+
+    public SalesQuery model(String... modelIds) {
+        models.addAll(Arrays.asList(modelIds));
+        return this;
+    }
+
+    public SalesQuery payment(String... methods) {
+        payments.addAll(Arrays.asList(methods));
+        return this;
+    }
+
+    /**
+     * Inclusive, "yyyy-MM-dd".
+     * @throws IllegalArgumentException if either date is not in that form
+     */
+    public SalesQuery dateRange(String start, String end) {
+        SalesJournal.toEpochMillis(start.trim() + " 00:00");
+        SalesJournal.toEpochMillis(end.trim() + " 00:00");
+        this.startDate = start;
+        this.endDate = end;
+        return this;
+    }
+
+    /** Same matching as SalesRepository.byCustomer. */
+    public SalesQuery customer(String query) {
+        this.customer = query;
+        return this;
+    }
+}
@@ -0,0 +1,444 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Ships this outlet's sales and stock changes to the head office
+ * (store-and-forward).
+ *
+ * sales.dat and stock.journal already hold everything in order, so they
+ * are the outbox: nothing is copied aside, and while the head office is
+ * unreachable new records simply wait in the files. A daemon thread
+ * connects, asks the head office how far it got, sends what is newer in
+ * batches and goes back to waiting. It wakes up when a sale is recorded,
+ * so head office totals trail the tills by seconds rather than a night.
+ *
+ * Only the writer terminal (FileCoordinator) ships, so terminals sharing
+ * a data directory do not send the same records twice.
+ *
+ * Both ends hold the same secret (replication.secret, or the file named
+ * by goldenhour.replicationSecret). It never crosses the wire: the outlet
+ * proves it knows it with an HMAC of a fresh challenge from the office.
+ *
+ * Protocol (DataOutputStream, big endian):
+ *   outlet:  int MAGIC, UTF node code
+ *   office:  CHALLENGE_BYTES random challenge
+ *   outlet:  HMAC-SHA256(secret, challenge + node code)
+ *   office:  long sales offset, long sales fingerprint, long stock seq
+ *            (or hangs up if the proof is wrong)
+ *   then any number of frames:
+ *   outlet:  byte type, long from, long to, long fingerprint, int count,
+ *            int raw length, int compressed length, deflated records
+ *   office:  long position it now holds (sales offset or stock seq)
+ *
+ * Records are sent by name (model, staff, payment, outlet code), not by
+ * the ids in sales.dat, because every outlet has its own SalesDictionary.
+ * Each sales record starts with NEW_SALE or EDITED_SALE; an edit carries
+ * the sale's new values and replaces the one with its Reference No, so
+ * an edit ships as one record like any sale. (GHO1 outlets sent no such
+ * byte; the head office still accepts them.)
+ *
+ *   java -Dgoldenhour.replicationSecret=... SalesReplicator ship headoffice.example:7460
+ *   java ... SalesReplicator loopback     (ships into a local HeadOfficeServer)
+ */
+public final class SalesReplicator {
+
+    static final int MAGIC_V1 = 0x47484F31; // "GHO1"
+    static final int MAGIC = 0x47484F32; // "GHO2"
+    static final byte SALES = 1;
+    static final byte STOCK = 2;
+    static final byte STOCK_SNAPSHOT = 3;
+    static final byte NEW_SALE = 0;
+    static final byte EDITED_SALE = 1;
+    static final int DEFAULT_PORT = 7460;
+    static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+    static final int CHALLENGE_BYTES = 32;
+    static final int PROOF_BYTES = 32; // HMAC-SHA256
+    private static final String SECRET_FILE = System.getProperty("goldenhour.replicationSecret", "replication.secret");
+    private static final int MIN_SECRET_LENGTH = 16;
+
+    private static final int BATCH_RECORDS = 500;
+    private static final long POLL_MS = Long.getLong("goldenhour.replicateMs", 2000);
+    private static final long MAX_RETRY_MS = 30000;
+    private static final int TIMEOUT_MS = 15000;
+
+    private static final Object wakeUp = new Object();
+    private static Thread sender;
+
+    private SalesReplicator() { }
+
+    /**
+     * Starts shipping to the head office in the background; safe to call
+     * more than once.
+     * @param address "host" or "host:port"
+     */
+    public static synchronized void start(String address) {
+        if (sender != null) return;
+        byte[] secret;
+        try {
+            secret = sharedSecret();
+        } catch (IOException e) {
+            System.err.println("Replication to head office not started: " + e.getMessage());
+            return;
+        }
+        String host = address.trim();
+        int port = DEFAULT_PORT;
+        int colon = host.lastIndexOf(':');
+        if (colon > 0) {
+            try {
+                port = Integer.parseInt(host.substring(colon + 1).trim());
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+            if (port < 1 || port > 65535) {
+                System.err.println("Replication to head office not started: bad port in \"" + address + "\"");
+                return;
+            }
+            host = host.substring(0, colon);
+        }
+        String h = host;
+        int p = port;
+        FileCoordinator.startLease();
+        EventBus.subscribe(EventBus.SaleRecorded.class, events -> wake());
+        sender = new Thread(() -> run(h, p, secret), "sales-replicator");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /** Asks the sender to look for new records now instead of at the next poll. */
+    public static void wake() {
+        synchronized (wakeUp) {
+            wakeUp.notifyAll();
+        }
+    }
+
+    private static void run(String host, int port, byte[] secret) {
+        long retry = 1000;
+        while (true) {
+            if (!FileCoordinator.isWriter()) {
+                pause(POLL_MS);
+                continue;
+            }
+            try (Link link = new Link(host, port, secret)) {
+                retry = 1000;
+                while (FileCoordinator.isWriter()) {
+                    link.ship();
+                    pause(POLL_MS);
+                }
+            } catch (IOException e) {
+                // Nothing is lost: records stay in sales.dat / stock.journal until acknowledged
+                System.err.println("Head office " + host + ":" + port + " unreachable (" + e.getMessage()
+                        + "), retrying in " + retry / 1000 + "s.");
+                pause(retry);
+                retry = Math.min(retry * 2, MAX_RETRY_MS);
+            }
+        }
+    }
+
+    private static void pause(long ms) {
+        synchronized (wakeUp) {
+            try {
+                wakeUp.wait(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // =================================================================
+    // CONNECTION
+    // =================================================================
+
+    /** One connection to the head office and the positions it acknowledged. */
+    static final class Link implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private long salesOffset;
+        private long salesFingerprint;
+        private long stockSeq;
+
+        Link(String host, int port, byte[] secret) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), TIMEOUT_MS);
+                socket.setSoTimeout(TIMEOUT_MS);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                // 1. Say who we are, 2. prove it, 3. learn what the head office already has
+                String code = OutletRegistry.homeCode();
+                out.writeInt(MAGIC);
+                out.writeUTF(code);
+                out.flush();
+                byte[] challenge = new byte[CHALLENGE_BYTES];
+                in.readFully(challenge);
+                out.write(proof(secret, challenge, code));
+                out.flush();
+                salesOffset = in.readLong();
+                salesFingerprint = in.readLong();
+                stockSeq = in.readLong();
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Sends everything the head office does not have yet.
+         * @return number of records sent
+         * @throws java.io.IOException
+         */
+        int ship() throws IOException {
+            return shipSales() + shipStock();
+        }
+
+        private int shipSales() throws IOException {
+            // Frames end on record boundaries, so every acknowledged offset is a valid resume point
+            int sent = 0;
+            while (true) {
+                // Edits are appended like sales, but a replaced sales.dat (a CSV import) has a new
+                // generation that changes the fingerprint: start over (the head office keeps sales
+                // by Reference No). It stores the fingerprint with the offset, so this holds across restarts
+                long generation = SalesJournal.generation();
+                if (salesOffset > 0 && SalesJournal.fingerprint(salesOffset) != salesFingerprint) {
+                    salesOffset = 0;
+                }
+
+                // Only one batch is read and held at a time, however far behind the head office is
+                ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                DataOutputStream records = new DataOutputStream(raw);
+                int[] n = {0};
+                long to = SalesJournal.scan(salesOffset, BATCH_RECORDS, c -> {
+                    try {
+                        writeSale(records, c);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e); // ByteArrayOutputStream does not throw
+                    }
+                    n[0]++;
+                });
+                if (n[0] == 0) return sent;
+
+                long fingerprint = SalesJournal.fingerprint(to);
+                // Replaced while we read: these records may be the old file's; the next pass starts over
+                if (SalesJournal.generation() != generation) return sent;
+                long acked = send(SALES, salesOffset, to, fingerprint, n[0], raw.toByteArray());
+                if (acked != to) {
+                    throw new IOException("head office is at sales offset " + acked + ", expected " + to);
+                }
+                salesOffset = to;
+                salesFingerprint = fingerprint;
+                sent += n[0];
+            }
+        }
+
+        private int shipStock() throws IOException {
+            // Read the checkpoint first: entries folded after this read are still in the journal
+            long folded = StockJournal.checkpointSeqOnDisk();
+            List<StockJournal.Entry> entries = new ArrayList<>();
+            for (StockJournal.Entry e : StockJournal.readEntries()) {
+                if (e.seq > stockSeq) entries.add(e);
+            }
+            entries.sort((a, b) -> Long.compare(a.seq, b.seq));
+
+            // A new head office (seq -1), or entries it never saw already folded into model.csv: send the rows instead
+            boolean gap = folded > stockSeq || (!entries.isEmpty() && entries.get(0).seq != stockSeq + 1);
+            if (gap) return shipSnapshot();
+            if (entries.isEmpty()) return 0;
+
+            for (int i = 0; i < entries.size(); i += BATCH_RECORDS) {
+                List<StockJournal.Entry> part = entries.subList(i, Math.min(i + BATCH_RECORDS, entries.size()));
+                ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                DataOutputStream records = new DataOutputStream(raw);
+                for (StockJournal.Entry e : part) {
+                    records.writeLong(e.seq);
+                    records.writeLong(e.timestamp);
+                    records.writeUTF(e.modelId);
+                    records.writeUTF(OutletRegistry.code(e.outlet));
+                    records.writeInt(e.delta);
+                }
+                long to = part.get(part.size() - 1).seq;
+                long acked = send(STOCK, stockSeq, to, 0, part.size(), raw.toByteArray());
+                if (acked != to) {
+                    throw new IOException("head office is at stock seq " + acked + ", expected " + to);
+                }
+                stockSeq = to;
+            }
+            return entries.size();
+        }
+
+        private int shipSnapshot() throws IOException {
+            // Rows and seq are read under the STOCK lock, with no change in flight, so they describe the same moment
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            DataOutputStream records = new DataOutputStream(raw);
+            long[] seq = new long[1];
+            int rows = InventoryService.getInstance().exclusively(() -> {
+                seq[0] = StockJournal.lastSeq();
+                InventoryMatrix matrix = InventoryService.getInstance().getMatrix();
+                int count = matrix.getModelCount();
+                int outlets = matrix.getOutletCount();
+                try {
+                    for (int row = 0; row < count; row++) {
+                        records.writeUTF(matrix.getModelId(row));
+                        records.writeInt(outlets);
+                        for (int o = 0; o < outlets; o++) {
+                            records.writeUTF(OutletRegistry.code(o));
+                            records.writeInt(matrix.getStock(row, o));
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return count;
+            });
+            long acked = send(STOCK_SNAPSHOT, stockSeq, seq[0], 0, rows, raw.toByteArray());
+            if (acked != seq[0]) {
+                throw new IOException("head office is at stock seq " + acked + ", expected " + seq[0]);
+            }
+            stockSeq = seq[0];
+            return rows;
+        }
+
+        private long send(byte type, long from, long to, long fingerprint, int count, byte[] raw) throws IOException {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream packed = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                packed.write(chunk, 0, n);
+            }
+
+            out.writeByte(type);
+            out.writeLong(from);
+            out.writeLong(to);
+            out.writeLong(fingerprint);
+            out.writeInt(count);
+            out.writeInt(raw.length);
+            out.writeInt(packed.size());
+            packed.writeTo(out);
+            out.flush();
+            return in.readLong();
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            socket.close();
+        }
+    }
+
+    /**
+     * Reads the shared secret; replication does not run without one.
+     * @return the secret's bytes
+     * @throws java.io.IOException if it is missing or too short to be worth having
+     */
+    static byte[] sharedSecret() throws IOException {
+        Path file = Paths.get(SECRET_FILE);
+        if (!Files.exists(file)) {
+            throw new IOException("no " + file + "; head office and every outlet need the same secret in it");
+        }
+        byte[] secret = Files.readString(file).trim().getBytes(StandardCharsets.UTF_8);
+        if (secret.length < MIN_SECRET_LENGTH) {
+            throw new IOException(file + " holds fewer than " + MIN_SECRET_LENGTH + " characters");
+        }
+        return secret;
+    }
+
+    /** HMAC-SHA256 of a challenge and node code: what the outlet sends, and the office expects. */
+    static byte[] proof(byte[] secret, byte[] challenge, String code) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            mac.update(challenge);
+            return mac.doFinal(code.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e); // Every JRE has it
+        }
+    }
+
+    // Portable form of a sale: names instead of this outlet's dictionary ids
+    private static void writeSale(DataOutputStream out, SalesJournal.Cursor c) throws IOException {
+        out.writeByte(c.isEdit() ? EDITED_SALE : NEW_SALE);
+        out.writeUTF(c.referenceNo());
+        out.writeLong(c.epochMillis());
+        out.writeUTF(OutletRegistry.code(c.outlet()));
+        out.writeUTF(c.modelName());
+        out.writeInt(c.quantity());
+        out.writeLong(c.totalCents());
+        out.writeUTF(c.paymentName());
+        out.writeUTF(c.staffName());
+        out.writeUTF(c.customerName());
+    }
+
+    /** Inflates a frame body (used by the head office side). */
+    static byte[] inflate(byte[] packed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(packed);
+            byte[] raw = new byte[rawLength];
+            int at = 0;
+            while (at < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, at, rawLength - at);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                at += n;
+            }
+            if (at != rawLength) throw new IOException("frame body is " + at + " bytes, expected " + rawLength);
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("frame body is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // =================================================================
+    // COMMAND LINE
+    // =================================================================
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "loopback";
+        if (mode.equals("ship") && args.length > 1) {
+            // Runs until killed, like the till would
+            start(args[1]);
+            Thread.currentThread().join();
+        } else if (mode.equals("loopback")) {
+            // Local stand-in for the head office: receive into ./headoffice and print what it sees
+            byte[] secret = new byte[MIN_SECRET_LENGTH];
+            new SecureRandom().nextBytes(secret);
+            HeadOfficeServer office = new HeadOfficeServer(new java.io.File("headoffice"), secret);
+            int port = office.listen(0);
+            try (Link link = new Link("localhost", port, secret)) {
+                int sent = link.ship();
+                System.out.println("Shipped " + sent + " record(s) to the loopback head office.");
+                System.out.println("Sent again: " + link.ship() + " record(s).");
+            }
+            System.out.print(office.report());
+            office.close();
+        } else {
+            System.out.println("Usage: SalesReplicator ship host[:port] | loopback");
+        }
+    }
+}
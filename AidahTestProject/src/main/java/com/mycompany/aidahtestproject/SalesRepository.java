@@ -0,0 +1,454 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The one in-memory copy of all sales, shared by every window.
+ *
+ * Sales are read from sales.dat once into parallel primitive columns.
+ * After that, getInstance() only reads records appended since the last
+ * call, so opening another window does not mean another full parse.
+ * An edit is an appended record too: it is applied to the sale's row in
+ * place, which keeps its row number.
+ * Query methods return row numbers; use getSale(row) or toSales(rows)
+ * to turn them into Sale objects for display.
+ */
+public class SalesRepository {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_EDIT_ATTEMPTS = 5;
+    private static SalesRepository instance;
+
+    // Columns (one entry per sale, in journal order)
+    private int size = 0;
+    private long[] epochMillis = new long[INITIAL_CAPACITY];
+    private int[] modelIds = new int[INITIAL_CAPACITY];
+    private int[] staffIds = new int[INITIAL_CAPACITY];
+    private int[] paymentIds = new int[INITIAL_CAPACITY];
+    private int[] outlets = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] totalCents = new long[INITIAL_CAPACITY];
+    private String[] referenceNos = new String[INITIAL_CAPACITY];
+    private String[] customers = new String[INITIAL_CAPACITY];
+
+    // Repeated customer names share one String
+    private final Map<String, String> customerPool = new HashMap<>();
+    private final Map<String, Integer> rowByReference = new HashMap<>();
+    private final CustomerIndex customerIndex = new CustomerIndex();
+    private final SalesDateIndex dateIndex = new SalesDateIndex();
+
+    // Bitmap of rows per dictionary ID (position = ID), for multi-field filters
+    private final List<CompactBitmap> rowsByStaff = new ArrayList<>();
+    private final List<CompactBitmap> rowsByModel = new ArrayList<>();
+    private final List<CompactBitmap> rowsByPayment = new ArrayList<>();
+
+    private long offset = 0;
+    private long fingerprint = 0;
+    private long version = 0;
+
+    private SalesRepository() { }
+
+    /**
+     * Returns the shared repository, brought up to date with sales.dat.
+     * @return
+     */
+    public static SalesRepository getInstance() {
+        return getInstance(null);
+    }
+
+    /**
+     * As getInstance(), reporting progress while reading (for a first, long load).
+     * @param progress may be null
+     * @return
+     */
+    public static synchronized SalesRepository getInstance(AsyncTasks.Progress progress) {
+        if (instance == null) instance = new SalesRepository();
+        instance.refresh(progress);
+        return instance;
+    }
+
+    /**
+     * Reads sales (and edits) appended since the last refresh. If the
+     * journal was replaced in the meantime, everything is reloaded.
+     */
+    public synchronized void refresh() {
+        refresh(null);
+    }
+
+    private synchronized void refresh(AsyncTasks.Progress progress) {
+        // Another terminal may replace sales.dat (a CSV import); its generation says so
+        long generation = SalesJournal.generation();
+        if (offset > 0 && SalesJournal.fingerprint(offset) != fingerprint) {
+            clear();
+        }
+        long before = offset;
+        long fileSize = Math.max(1, SalesJournal.size());
+        try {
+            offset = SalesJournal.scan(offset, c -> {
+                add(c);
+                if (progress != null && (size & 4095) == 0) {
+                    if (progress.isCancelled()) throw new CancellationException();
+                    progress.update((int) (c.offset() * 100 / fileSize), "Reading sales: " + size);
+                }
+            });
+        } catch (CancellationException e) {
+            clear(); // Rows were added past the saved offset; start over next time
+            throw e;
+        }
+        fingerprint = SalesJournal.fingerprint(offset);
+        if (SalesJournal.generation() != generation) {
+            // Replaced while we read: rows may come from both versions
+            clear();
+            refresh(progress);
+            return;
+        }
+        if (offset != before) version++;
+    }
+
+    private void clear() {
+        size = 0;
+        offset = 0;
+        customerPool.clear();
+        rowByReference.clear();
+        customerIndex.clear();
+        dateIndex.clear();
+        rowsByStaff.clear();
+        rowsByModel.clear();
+        rowsByPayment.clear();
+        version++;
+    }
+
+    private void add(SalesJournal.Cursor c) {
+        if (c.isEdit()) {
+            Integer row = rowByReference.get(c.referenceNo());
+            if (row != null) {
+                replace(row, c);
+                return;
+            }
+        }
+        ensureCapacity(size + 1);
+        epochMillis[size] = c.epochMillis();
+        modelIds[size] = c.modelId();
+        staffIds[size] = c.staffId();
+        paymentIds[size] = c.paymentId();
+        outlets[size] = c.outlet();
+        quantities[size] = c.quantity();
+        totalCents[size] = c.totalCents();
+        referenceNos[size] = c.referenceNo();
+        String customer = c.customerName();
+        customers[size] = customerPool.computeIfAbsent(customer, k -> k);
+        customerIndex.add(size, customer);
+        dateIndex.add(size, epochMillis[size], totalCents[size]);
+        bitmapFor(rowsByStaff, staffIds[size]).add(size);
+        bitmapFor(rowsByModel, modelIds[size]).add(size);
+        bitmapFor(rowsByPayment, paymentIds[size]).add(size);
+        // Old terminals could give two sales one reference; the later one wins, as before
+        rowByReference.put(referenceNos[size], size);
+        size++;
+    }
+
+    // An edit record: the row keeps its number, its columns and index entries follow the new values
+    private void replace(int row, SalesJournal.Cursor c) {
+        long oldMillis = epochMillis[row];
+        String oldCustomer = customers[row];
+        moveRow(rowsByStaff, staffIds[row], c.staffId(), row);
+        moveRow(rowsByModel, modelIds[row], c.modelId(), row);
+        moveRow(rowsByPayment, paymentIds[row], c.paymentId(), row);
+        epochMillis[row] = c.epochMillis();
+        modelIds[row] = c.modelId();
+        staffIds[row] = c.staffId();
+        paymentIds[row] = c.paymentId();
+        outlets[row] = c.outlet();
+        quantities[row] = c.quantity();
+        totalCents[row] = c.totalCents();
+        customers[row] = customerPool.computeIfAbsent(c.customerName(), k -> k);
+        customerIndex.move(row, oldCustomer, customers[row]);
+        dateIndex.replace(row, oldMillis, epochMillis[row], totalCents[row]);
+    }
+
+    private static void moveRow(List<CompactBitmap> index, int fromId, int toId, int row) {
+        if (fromId == toId) return;
+        bitmapFor(index, fromId).remove(row);
+        bitmapFor(index, toId).add(row);
+    }
+
+    private static CompactBitmap bitmapFor(List<CompactBitmap> index, int id) {
+        while (index.size() <= id) index.add(new CompactBitmap());
+        return index.get(id);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= epochMillis.length) return;
+        int cap = Math.max(needed, epochMillis.length * 2);
+        epochMillis = Arrays.copyOf(epochMillis, cap);
+        modelIds = Arrays.copyOf(modelIds, cap);
+        staffIds = Arrays.copyOf(staffIds, cap);
+        paymentIds = Arrays.copyOf(paymentIds, cap);
+        outlets = Arrays.copyOf(outlets, cap);
+        quantities = Arrays.copyOf(quantities, cap);
+        totalCents = Arrays.copyOf(totalCents, cap);
+        referenceNos = Arrays.copyOf(referenceNos, cap);
+        customers = Arrays.copyOf(customers, cap);
+    }
+
+    // =================================================================
+    // UPDATES
+    // =================================================================
+
+    /**
+     * Replaces one sale (matched by reference number), whatever it holds now.
+     * @param referenceNo
+     * @param updated must keep the reference number
+     * @return false if no sale has that reference number
+     * @throws java.io.IOException
+     */
+    public boolean update(String referenceNo, Sale updated) throws IOException {
+        for (int attempt = 0; attempt < MAX_EDIT_ATTEMPTS; attempt++) {
+            long stamp;
+            synchronized (this) {
+                refresh();
+                int row = findByReference(referenceNo);
+                if (row < 0) return false;
+                stamp = getStamp(row);
+            }
+            EditResult result = compareAndUpdate(referenceNo, stamp, updated);
+            if (result != EditResult.CONFLICT) return result == EditResult.APPLIED;
+        }
+        throw new IOException("Sale " + referenceNo + " kept changing during the update; please try again.");
+    }
+
+    /**
+     * Replaces one sale only if it still matches the stamp the editor read,
+     * so an edit made from a stale screen never overwrites a newer one.
+     *
+     * The edit is appended to sales.dat as one record, so it costs the same
+     * however many sales there are. Whether anything touched the sale since
+     * it was checked here is checked again by the journal on the writer
+     * thread, under the SALES lock; this object is not locked meanwhile.
+     * @param referenceNo
+     * @param expectedStamp getStamp(row) when the sale was displayed
+     * @param updated must keep the reference number
+     * @return APPLIED, CONFLICT or NOT_FOUND
+     * @throws java.io.IOException
+     */
+    public EditResult compareAndUpdate(String referenceNo, long expectedStamp, Sale updated) throws IOException {
+        Sale before;
+        long checkedTo, checkedFingerprint;
+        synchronized (this) {
+            refresh();
+            int row = findByReference(referenceNo);
+            if (row < 0) return EditResult.NOT_FOUND;
+            if (getStamp(row) != expectedStamp) return EditResult.CONFLICT;
+            before = getSale(row);
+            checkedTo = offset;
+            checkedFingerprint = fingerprint;
+        }
+        long written;
+        try {
+            written = SalesJournal.appendEdit(before, updated, checkedTo, checkedFingerprint).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        // Another window or terminal got there first
+        if (written < 0) return EditResult.CONFLICT;
+        refresh();
+        EventBus.publish(new EventBus.SaleEdited(referenceNo, updated));
+        return EditResult.APPLIED;
+    }
+
+    // =================================================================
+    // QUERIES (return row numbers)
+    // =================================================================
+
+    public synchronized int size() { return size; }
+    public synchronized long getVersion() { return version; }
+
+    /** Sales between two dates inclusive ("yyyy-MM-dd"), oldest first. */
+    public synchronized int[] byDateRange(String startDate, String endDate) {
+        return dateSlice(startDate, endDate).rows();
+    }
+
+    /**
+     * Rows and total for a date range (inclusive), from the date index:
+     * two binary searches and a prefix-sum difference.
+     * @param startDate "yyyy-MM-dd"
+     * @param endDate "yyyy-MM-dd"
+     * @return
+     */
+    public synchronized SalesDateIndex.Slice dateSlice(String startDate, String endDate) {
+        long from = SalesJournal.toEpochMillis(startDate.trim() + " 00:00");
+        long to = SalesJournal.toEpochMillis(endDate.trim() + " 23:59") + 59_999;
+        return dateIndex.range(from, to);
+    }
+
+    /** Every sale, oldest first, with the grand total. */
+    public synchronized SalesDateIndex.Slice allByDate() {
+        return dateIndex.all();
+    }
+
+    /**
+     * Customer search through the CustomerIndex ("" matches all).
+     * 1-2 characters match the start of a word, 3+ match anywhere in the name.
+     */
+    public synchronized int[] byCustomer(String query) {
+        return customerIndex.search(query);
+    }
+
+    /** Sales for exactly this customer name (ignoring case). */
+    public synchronized int[] byCustomerExact(String customerName) {
+        return customerIndex.exact(customerName);
+    }
+
+    public synchronized int[] byModel(String modelId) {
+        return query(new SalesQuery().model(modelId));
+    }
+
+    public synchronized int[] byStaff(String employeeName) {
+        return query(new SalesQuery().staff(employeeName));
+    }
+
+    /**
+     * Runs a multi-field filter. Staff, model and payment are answered by
+     * OR-ing and AND-ing the per-value bitmaps; date and customer filters
+     * come from their own indexes and are AND-ed in.
+     * @param q
+     * @return matching rows in journal order
+     */
+    public synchronized int[] query(SalesQuery q) {
+        SalesDictionary dict = SalesJournal.dictionary();
+        CompactBitmap result = null;
+        result = intersect(result, anyOf(rowsByStaff, dict, SalesDictionary.STAFF, q.staff));
+        result = intersect(result, anyOf(rowsByModel, dict, SalesDictionary.MODEL, q.models));
+        result = intersect(result, anyOf(rowsByPayment, dict, SalesDictionary.PAYMENT, q.payments));
+        if (q.startDate != null && q.endDate != null) {
+            int[] rows = dateSlice(q.startDate, q.endDate).rows();
+            Arrays.sort(rows);
+            result = intersect(result, CompactBitmap.of(rows));
+        }
+        if (q.customer != null && !q.customer.trim().isEmpty()) {
+            result = intersect(result, CompactBitmap.of(customerIndex.search(q.customer)));
+        }
+        return result == null ? customerIndex.search("") : result.toArray();
+    }
+
+    /**
+     * Whether one row passes a query, by the same rules as query(). Lets an
+     * open view decide if a new or edited sale belongs in its list without
+     * running the whole search again.
+     * @param row
+     * @param q
+     * @return
+     */
+    public synchronized boolean matches(int row, SalesQuery q) {
+        SalesDictionary dict = SalesJournal.dictionary();
+        if (!isAnyOf(dict, SalesDictionary.STAFF, q.staff, staffIds[row])) return false;
+        if (!isAnyOf(dict, SalesDictionary.MODEL, q.models, modelIds[row])) return false;
+        if (!isAnyOf(dict, SalesDictionary.PAYMENT, q.payments, paymentIds[row])) return false;
+        if (q.startDate != null && q.endDate != null) {
+            long from = SalesJournal.toEpochMillis(q.startDate.trim() + " 00:00");
+            long to = SalesJournal.toEpochMillis(q.endDate.trim() + " 23:59") + 59_999;
+            if (epochMillis[row] < from || epochMillis[row] > to) return false;
+        }
+        return q.customer == null || CustomerIndex.matches(customers[row], q.customer);
+    }
+
+    private static boolean isAnyOf(SalesDictionary dict, int kind, List<String> values, int id) {
+        if (values.isEmpty()) return true;
+        for (String value : values) {
+            if (dict.find(kind, value) == id) return true;
+        }
+        return false;
+    }
+
+    // OR of the bitmaps for the given values; null means "no filter on this field"
+    private static CompactBitmap anyOf(List<CompactBitmap> index, SalesDictionary dict, int kind, List<String> values) {
+        if (values.isEmpty()) return null;
+        CompactBitmap union = new CompactBitmap();
+        for (String value : values) {
+            int id = dict.find(kind, value);
+            if (id >= 0 && id < index.size()) union = CompactBitmap.or(union, index.get(id));
+        }
+        return union;
+    }
+
+    private static CompactBitmap intersect(CompactBitmap a, CompactBitmap b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return CompactBitmap.and(a, b);
+    }
+
+    /** Sum of the totals of the given rows, in sen. */
+    public synchronized long totalCents(int[] rows) {
+        long sum = 0;
+        for (int row : rows) sum += totalCents[row];
+        return sum;
+    }
+
+    /** Values seen so far for STAFF, MODEL or PAYMENT (for filter drop-downs). */
+    public List<String> distinctValues(int kind) {
+        return SalesJournal.dictionary().values(kind);
+    }
+
+    public synchronized int findByReference(String referenceNo) {
+        Integer row = rowByReference.get(referenceNo);
+        return row == null ? -1 : row;
+    }
+
+    // =================================================================
+    // ROW ACCESS
+    // =================================================================
+
+    public synchronized long getEpochMillis(int row) { return epochMillis[row]; }
+    public synchronized long getTotalCents(int row) { return totalCents[row]; }
+    public synchronized int getQuantity(int row) { return quantities[row]; }
+    public synchronized int getOutlet(int row) { return outlets[row]; }
+    public synchronized String getCustomer(int row) { return customers[row]; }
+    public synchronized String getReferenceNo(int row) { return referenceNos[row]; }
+
+    /**
+     * Content stamp of a row: changes whenever any field of the sale does.
+     * Edits compare this rather than a counter, so an edit from another
+     * terminal is noticed too.
+     * @param row
+     * @return
+     */
+    public synchronized long getStamp(int row) {
+        long h = epochMillis[row];
+        h = h * 31 + modelIds[row];
+        h = h * 31 + staffIds[row];
+        h = h * 31 + paymentIds[row];
+        h = h * 31 + outlets[row];
+        h = h * 31 + quantities[row];
+        h = h * 31 + totalCents[row];
+        h = h * 31 + referenceNos[row].hashCode();
+        h = h * 31 + customers[row].hashCode();
+        return h;
+    }
+
+    public synchronized Sale getSale(int row) {
+        SalesDictionary dict = SalesJournal.dictionary();
+        return new Sale(referenceNos[row], SalesJournal.formatDate(epochMillis[row]), customers[row],
+                dict.lookup(SalesDictionary.MODEL, modelIds[row]), quantities[row], totalCents[row] / 100.0,
+                dict.lookup(SalesDictionary.PAYMENT, paymentIds[row]), dict.lookup(SalesDictionary.STAFF, staffIds[row]),
+                outlets[row]);
+    }
+
+    public synchronized ArrayList<Sale> toSales(int[] rows) {
+        ArrayList<Sale> list = new ArrayList<>(rows.length);
+        for (int row : rows) list.add(getSale(row));
+        return list;
+    }
+
+    public synchronized ArrayList<Sale> all() {
+        ArrayList<Sale> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) list.add(getSale(i));
+        return list;
+    }
+}
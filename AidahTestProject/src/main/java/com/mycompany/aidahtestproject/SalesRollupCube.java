@@ -0,0 +1,318 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pre-aggregated sales totals for the analytics dashboard.
+ *
+ * Periods are numbered densely (day = days since 1970, month = year * 12
+ * + month - 1, year = year), so a period is an array index, not a map
+ * key. For every period the cube keeps revenue, units and sale count, and
+ * one dense row per dimension (model, outlet, payment, staff) indexed by
+ * the SalesDictionary ID or outlet index.
+ *
+ * Sales are only ever folded into the day level. Months and years are
+ * rolled up from the days (and months) touched since the last roll-up,
+ * so a query costs the same whether there are a hundred sales or ten
+ * million. "All outlets" is simply the period total.
+ *
+ * Dimensions are kept per period rather than as one full
+ * day x model x outlet x payment x staff array: that cross product would
+ * be almost entirely empty, and every report needs one dimension at a time.
+ */
+public class SalesRollupCube {
+
+    public static final int DAY = 0, MONTH = 1, YEAR = 2;
+    public static final int BY_MODEL = 0, BY_OUTLET = 1, BY_PAYMENT = 2, BY_STAFF = 3;
+    private static final int DIMENSIONS = 4;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private final Level[] levels = { new Level(), new Level(), new Level() };
+
+    // Range of months touched since the last roll-up (min > max when clean)
+    private int dirtyMonthMin = Integer.MAX_VALUE, dirtyMonthMax = Integer.MIN_VALUE;
+
+    // =================================================================
+    // UPDATES
+    // =================================================================
+
+    /** Adds one sale to its day. */
+    public void fold(long epochMillis, int modelId, int outlet, int paymentId, int staffId, int quantity, long totalCents) {
+        add(epochMillis, modelId, outlet, paymentId, staffId, quantity, totalCents, 1);
+    }
+
+    /** Takes back a sale folded in earlier (the old values of an edited sale). */
+    public void retract(long epochMillis, int modelId, int outlet, int paymentId, int staffId, int quantity, long totalCents) {
+        add(epochMillis, modelId, outlet, paymentId, staffId, -quantity, -totalCents, -1);
+    }
+
+    private void add(long epochMillis, int modelId, int outlet, int paymentId, int staffId, int quantity, long totalCents, int sales) {
+        int day = (int) Math.floorDiv(epochMillis, DAY_MS);
+        Level d = levels[DAY];
+        int i = d.index(day);
+        d.cents[i] += totalCents;
+        d.qty[i] += quantity;
+        d.sales[i] += sales;
+        d.add(BY_MODEL, i, modelId, totalCents, quantity);
+        d.add(BY_OUTLET, i, outlet, totalCents, quantity);
+        d.add(BY_PAYMENT, i, paymentId, totalCents, quantity);
+        d.add(BY_STAFF, i, staffId, totalCents, quantity);
+
+        int month = monthOfDay(day);
+        dirtyMonthMin = Math.min(dirtyMonthMin, month);
+        dirtyMonthMax = Math.max(dirtyMonthMax, month);
+    }
+
+    // Recomputes the months and years touched since the last call from their days/months
+    private void rollUp() {
+        if (dirtyMonthMin > dirtyMonthMax) return;
+        Level days = levels[DAY], months = levels[MONTH], years = levels[YEAR];
+
+        for (int m = dirtyMonthMin; m <= dirtyMonthMax; m++) {
+            int firstDay = (int) LocalDate.of(m / 12, m % 12 + 1, 1).toEpochDay();
+            int lastDay = (int) LocalDate.of(m / 12, m % 12 + 1, 1).plusMonths(1).toEpochDay() - 1;
+            sumInto(months, m, days, firstDay, lastDay);
+        }
+        for (int y = dirtyMonthMin / 12; y <= dirtyMonthMax / 12; y++) {
+            sumInto(years, y, months, y * 12, y * 12 + 11);
+        }
+        dirtyMonthMin = Integer.MAX_VALUE;
+        dirtyMonthMax = Integer.MIN_VALUE;
+    }
+
+    private static void sumInto(Level target, int period, Level source, int from, int to) {
+        int t = target.index(period);
+        target.reset(t);
+        for (int p = Math.max(from, source.base); p <= to && p < source.base + source.count; p++) {
+            int s = p - source.base;
+            if (source.sales[s] == 0) continue;
+            target.cents[t] += source.cents[s];
+            target.qty[t] += source.qty[s];
+            target.sales[t] += source.sales[s];
+            for (int dim = 0; dim < DIMENSIONS; dim++) {
+                long[] srcCents = source.dimCents[dim][s];
+                if (srcCents == null) continue;
+                long[] srcQty = source.dimQty[dim][s];
+                for (int id = 0; id < srcCents.length; id++) {
+                    if (srcQty[id] != 0 || srcCents[id] != 0) target.add(dim, t, id, srcCents[id], srcQty[id]);
+                }
+            }
+        }
+    }
+
+    // =================================================================
+    // QUERIES
+    // =================================================================
+
+    /** Periods at a level that have at least one sale, oldest first. */
+    public int[] activePeriods(int level) {
+        rollUp();
+        Level l = levels[level];
+        int[] out = new int[l.count];
+        int n = 0;
+        for (int i = 0; i < l.count; i++) if (l.sales[i] > 0) out[n++] = l.base + i;
+        return Arrays.copyOf(out, n);
+    }
+
+    public long revenueCents(int level, int period) {
+        rollUp();
+        int i = levels[level].find(period);
+        return i < 0 ? 0 : levels[level].cents[i];
+    }
+
+    public long quantity(int level, int period) {
+        rollUp();
+        int i = levels[level].find(period);
+        return i < 0 ? 0 : levels[level].qty[i];
+    }
+
+    public int salesCount(int level, int period) {
+        rollUp();
+        int i = levels[level].find(period);
+        return i < 0 ? 0 : levels[level].sales[i];
+    }
+
+    /** Units per dimension value (index = dictionary ID / outlet index) in a period. */
+    public long[] quantities(int level, int period, int dimension) {
+        rollUp();
+        Level l = levels[level];
+        int i = l.find(period);
+        if (i < 0 || l.dimQty[dimension][i] == null) return new long[0];
+        return l.dimQty[dimension][i].clone();
+    }
+
+    /** Revenue in sen per dimension value in a period. */
+    public long[] revenues(int level, int period, int dimension) {
+        rollUp();
+        Level l = levels[level];
+        int i = l.find(period);
+        if (i < 0 || l.dimCents[dimension][i] == null) return new long[0];
+        return l.dimCents[dimension][i].clone();
+    }
+
+    /** Revenue in RM per active period, keyed by its label (for the bar charts). */
+    public Map<String, Double> revenueSeries(int level) {
+        Map<String, Double> series = new TreeMap<>();
+        for (int p : activePeriods(level)) series.put(label(level, p), revenueCents(level, p) / 100.0);
+        return series;
+    }
+
+    public long totalRevenueCents() {
+        long sum = 0;
+        for (int y : activePeriods(YEAR)) sum += revenueCents(YEAR, y);
+        return sum;
+    }
+
+    /** "yyyy-MM-dd", "yyyy-MM" or "yyyy". */
+    public static String label(int level, int period) {
+        switch (level) {
+            case DAY: return LocalDate.ofEpochDay(period).toString();
+            case MONTH: return String.format("%04d-%02d", period / 12, period % 12 + 1);
+            default: return String.format("%04d", period);
+        }
+    }
+
+    public static int monthOfDay(int epochDay) {
+        LocalDate d = LocalDate.ofEpochDay(epochDay);
+        return d.getYear() * 12 + d.getMonthValue() - 1;
+    }
+
+    // =================================================================
+    // PERSISTENCE (only days are stored; months and years are rolled up on load)
+    // =================================================================
+
+    public void write(DataOutputStream out) throws IOException {
+        Level d = levels[DAY];
+        int active = 0;
+        for (int i = 0; i < d.count; i++) if (d.sales[i] > 0) active++;
+        out.writeInt(active);
+        for (int i = 0; i < d.count; i++) {
+            if (d.sales[i] == 0) continue;
+            out.writeInt(d.base + i);
+            out.writeLong(d.cents[i]);
+            out.writeLong(d.qty[i]);
+            out.writeInt(d.sales[i]);
+            for (int dim = 0; dim < DIMENSIONS; dim++) {
+                long[] c = d.dimCents[dim][i], q = d.dimQty[dim][i];
+                int len = c == null ? 0 : c.length;
+                out.writeInt(len);
+                for (int id = 0; id < len; id++) {
+                    out.writeLong(c[id]);
+                    out.writeLong(q[id]);
+                }
+            }
+        }
+    }
+
+    public void read(DataInputStream in) throws IOException {
+        Level d = levels[DAY];
+        int active = in.readInt();
+        for (int k = 0; k < active; k++) {
+            int day = in.readInt();
+            int i = d.index(day);
+            d.cents[i] = in.readLong();
+            d.qty[i] = in.readLong();
+            d.sales[i] = in.readInt();
+            for (int dim = 0; dim < DIMENSIONS; dim++) {
+                int len = in.readInt();
+                for (int id = 0; id < len; id++) d.add(dim, i, id, in.readLong(), in.readLong());
+            }
+            int month = monthOfDay(day);
+            dirtyMonthMin = Math.min(dirtyMonthMin, month);
+            dirtyMonthMax = Math.max(dirtyMonthMax, month);
+        }
+    }
+
+    // =================================================================
+    // ONE LEVEL: dense arrays over a contiguous range of periods
+    // =================================================================
+
+    private static final class Level {
+        int base = 0;  // period number of index 0
+        int count = 0; // periods covered
+        long[] cents = new long[0];
+        long[] qty = new long[0];
+        int[] sales = new int[0];
+        long[][][] dimCents = new long[DIMENSIONS][0][];
+        long[][][] dimQty = new long[DIMENSIONS][0][];
+
+        int find(int period) {
+            int i = period - base;
+            return i >= 0 && i < count ? i : -1;
+        }
+
+        // Index of a period, widening the range (in either direction) if needed
+        int index(int period) {
+            if (count == 0) {
+                base = period;
+                resize(0, 1);
+                return 0;
+            }
+            if (period < base) {
+                resize(base - period, count + (base - period));
+                base = period;
+            } else if (period >= base + count) {
+                resize(0, period - base + 1);
+            }
+            return period - base;
+        }
+
+        private void resize(int shift, int newCount) {
+            int cap = Math.max(newCount, cents.length + cents.length / 2);
+            if (shift == 0 && newCount <= cents.length) {
+                count = newCount;
+                return;
+            }
+            cents = shifted(cents, shift, cap);
+            qty = shifted(qty, shift, cap);
+            int[] s = new int[cap];
+            System.arraycopy(sales, 0, s, shift, count);
+            sales = s;
+            for (int dim = 0; dim < DIMENSIONS; dim++) {
+                long[][] c = new long[cap][], q = new long[cap][];
+                System.arraycopy(dimCents[dim], 0, c, shift, count);
+                System.arraycopy(dimQty[dim], 0, q, shift, count);
+                dimCents[dim] = c;
+                dimQty[dim] = q;
+            }
+            count = newCount;
+        }
+
+        private long[] shifted(long[] a, int shift, int cap) {
+            long[] b = new long[cap];
+            System.arraycopy(a, 0, b, shift, count);
+            return b;
+        }
+
+        void add(int dim, int i, int id, long c, long q) {
+            if (id < 0) return;
+            long[] rowC = dimCents[dim][i];
+            if (rowC == null || id >= rowC.length) {
+                int len = Math.max(id + 1, rowC == null ? 4 : rowC.length * 2);
+                dimCents[dim][i] = rowC = rowC == null ? new long[len] : Arrays.copyOf(rowC, len);
+                long[] rowQ = dimQty[dim][i];
+                dimQty[dim][i] = rowQ == null ? new long[len] : Arrays.copyOf(rowQ, len);
+            }
+            rowC[id] += c;
+            dimQty[dim][i][id] += q;
+        }
+
+        void reset(int i) {
+            cents[i] = 0;
+            qty[i] = 0;
+            sales[i] = 0;
+            for (int dim = 0; dim < DIMENSIONS; dim++) {
+                if (dimCents[dim][i] != null) {
+                    Arrays.fill(dimCents[dim][i], 0);
+                    Arrays.fill(dimQty[dim][i], 0);
+                }
+            }
+        }
+    }
+}
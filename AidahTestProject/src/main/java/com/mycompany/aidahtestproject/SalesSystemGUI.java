@@ -3,18 +3,26 @@ package com.mycompany.aidahtestproject;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.ArrayList;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.io.*;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SalesSystemGUI extends JFrame {
     
-    // Data structures
-    private static ArrayList<Model> inventory = new ArrayList<>();
+    // Shared by every open sales window (atomic per-cell stock, journalled).
+    // Both read files the first time, so they are fetched off the event thread; null until then
+    private InventoryService inventoryService;
+    private StockReservations reservations;
     
     // Specific to this window instance
     private final Employee currentUser; 
+    // The outlet this terminal sells from (-Dgoldenhour.outlet)
+    private final int outlet = OutletRegistry.home();
+    private static final AtomicInteger windowCount = new AtomicInteger();
+    // Holds taken by this window are keyed by it, so two windows never cancel each other's
+    private final String tillId = TerminalIdentity.name() + "#" + windowCount.incrementAndGet();
 
     // GUI Components
     private final JTextField txtCustomer, txtQuantity;
@@ -34,11 +42,10 @@ public class SalesSystemGUI extends JFrame {
     public SalesSystemGUI(Employee user) {
         this.currentUser = user; // Capture the logged-in user
 
-        // 1. Load Data
-        inventory = ModelReader.loadModels();
+        // 1. Data: the shared inventory is loaded once per process (InventoryService), in the background
 
         // 2. Window Setup
-        setTitle("Sales System - Logged in as: " + user.getName());
+        setTitle("Sales System (" + OutletRegistry.code(outlet) + ") - Logged in as: " + user.getName());
         setSize(900, 650); 
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
@@ -63,7 +70,6 @@ public class SalesSystemGUI extends JFrame {
         // Model Selection
         inputPanel.add(new JLabel("Select Model:"));
         comboModelCode = new JComboBox<>();
-        if (inventory != null) inventory.forEach(m -> comboModelCode.addItem(m.getModelId()));
         inputPanel.add(comboModelCode);
 
         // Quantity
@@ -90,10 +96,22 @@ public class SalesSystemGUI extends JFrame {
         inputPanel.add(btnBack);
 
         // --- RIGHT PANEL: Inventory Table ---
-        String[] columnNames = {"Model ID", "Price (RM)", "Stock (C60)"};
+        String[] columnNames = {"Model ID", "Price (RM)", "Stock (" + OutletRegistry.code(outlet) + ")"};
         tableModel = new DefaultTableModel(columnNames, 0);
         inventoryTable = new JTable(tableModel);
-        refreshTableData(); 
+        btnProcess.setEnabled(false);
+        AsyncTasks.run(() -> {
+            InventoryService inventory = InventoryService.getInstance();
+            reservations = StockReservations.getInstance(); // recovers open holds from disk
+            return inventory;
+        }, inventory -> {
+            inventoryService = inventory;
+            inventory.models().forEach(m -> comboModelCode.addItem(m.getModelId()));
+            refreshTableData();
+            btnProcess.setEnabled(true);
+        });
+        // Stock changes from any window or terminal update just those rows
+        EventBus.subscribe(this, EventBus.StockChanged.class, this::applyStockChanges);
 
         JScrollPane tableScroll = new JScrollPane(inventoryTable);
         tableScroll.setBorder(BorderFactory.createTitledBorder("Current Inventory"));
@@ -131,66 +149,103 @@ public class SalesSystemGUI extends JFrame {
             }
             int qty = Integer.parseInt(qtyText);
             
-            Model selectedModel = null;
-            for (Model m : inventory) {
-                if (m.getModelId().equals(modelCode)) { selectedModel = m; break; }
-            }
+            Model selectedModel = inventoryService.find(modelCode);
             
             if (selectedModel == null) return;
-            if (qty > selectedModel.getStockQuantity()[0]) {
-                JOptionPane.showMessageDialog(this, "Insufficient stock!");
+            if (qty <= 0) {
+                JOptionPane.showMessageDialog(this, "Invalid quantity.");
                 return;
             }
 
+            // 1. Hold the units before asking: nobody else can sell them while the
+            //    dialog is open, and no lock is held meanwhile (journalled off the event thread)
             double total = selectedModel.getPrice() * qty;
-            int confirm = JOptionPane.showConfirmDialog(this, 
-                "Confirm sale by staff: " + currentUser.getName() + "?\nTotal: RM " + String.format("%.2f", total), 
-                "Confirm", JOptionPane.YES_NO_OPTION);
-
-            if (confirm == JOptionPane.YES_OPTION) {
-                // 1. Update Inventory Object
-                selectedModel.getStockQuantity()[0] -= qty;
-                
-                // 2. Update model.csv
-                updateStockFile();
-
-                // 3. Create Sale Object
+            btnProcess.setEnabled(false);
+            AsyncTasks.run(() -> reservations.reserve(modelCode, outlet, tillId, qty), hold -> {
+                if (hold == null) {
+                    btnProcess.setEnabled(true);
+                    JOptionPane.showMessageDialog(this, "Insufficient stock!");
+                    return;
+                }
+                int confirm = JOptionPane.showConfirmDialog(this, 
+                    "Confirm sale by staff: " + currentUser.getName() + "?\nTotal: RM " + String.format("%.2f", total)
+                        + "\n(" + qty + " unit(s) held for " + hold.remainingMs() / 1000 + " s)", 
+                    "Confirm", JOptionPane.YES_NO_OPTION);
+
+                if (confirm != JOptionPane.YES_OPTION) {
+                    AsyncTasks.run(() -> reservations.release(hold), released -> btnProcess.setEnabled(true));
+                    return;
+                }
+
+                // 2. Pin the hold so it cannot expire while the sale is written. If it timed
+                //    out meanwhile the units went back on the shelf, so try to hold them again.
                 String date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
                 Sale newSale = new Sale(date, customer, modelCode, qty, total, payment, currentUser.getName());
-                
-                // 4. Append to Sales Log (CSV)
-                SaleWriter.saveSale(newSale);
-
-                // --- RECEIPT GENERATION ---
-                String receiptText = newSale.generateReceipt();
-                JTextArea textArea = new JTextArea(receiptText);
-                textArea.setFont(new Font("Monospaced", Font.PLAIN, 12)); 
-                textArea.setEditable(false);
-                
-                JScrollPane scrollPane = new JScrollPane(textArea);
-                scrollPane.setPreferredSize(new Dimension(350, 450));
-
-                Object[] options = {"Print & Append to Daily File", "Close"};
-                int choice = JOptionPane.showOptionDialog(this, scrollPane, "Receipt Preview",
-                        JOptionPane.YES_NO_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
-
-                if (choice == JOptionPane.YES_OPTION) {
-                    // CALL THE HELPER CLASS to append
-                    String fileSaved = ReceiptWriter.saveReceiptToFile(newSale);
-                    
-                    if (fileSaved != null) {
-                        JOptionPane.showMessageDialog(this, "Receipt appended to daily log: " + fileSaved);
+                AsyncTasks.run(() -> {
+                    StockReservations.Hold h = hold;
+                    if (!reservations.pin(h, newSale.getReferenceNo())) {
+                        h = reservations.reserve(modelCode, outlet, tillId, qty);
+                        if (h == null || !reservations.pin(h, newSale.getReferenceNo())) return false;
                     }
-                }
-
-                refreshTableData();
-                clearFields();
-            }
+                    // 3. Record the sale; the held units only count as sold once it is on disk
+                    try {
+                        SaleWriter.saveSale(newSale).join();
+                    } catch (CompletionException e) {
+                        reservations.release(h);
+                        throw e;
+                    }
+                    reservations.commit(h);
+                    return true;
+                }, sold -> {
+                    btnProcess.setEnabled(true);
+                    if (!sold) {
+                        JOptionPane.showMessageDialog(this, "The hold expired and the stock was sold at another terminal.");
+                        return;
+                    }
+                    showReceipt(newSale);
+                }, error -> {
+                    btnProcess.setEnabled(true);
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    JOptionPane.showMessageDialog(this, "Error recording sale: " + cause.getMessage()
+                            + "\nThe sale was not saved and the stock was put back.");
+                });
+            }, error -> {
+                btnProcess.setEnabled(true);
+                JOptionPane.showMessageDialog(this, "Error reserving stock: " + error.getMessage());
+            });
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Invalid quantity.");
         }
     }
     
+    // The sale is on disk and its stock taken: offer the receipt
+    private void showReceipt(Sale newSale) {
+        // --- RECEIPT GENERATION ---
+        String receiptText = newSale.generateReceipt();
+        JTextArea textArea = new JTextArea(receiptText);
+        textArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        textArea.setEditable(false);
+
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        scrollPane.setPreferredSize(new Dimension(350, 450));
+
+        Object[] options = {"Print & Append to Daily File", "Close"};
+        int choice = JOptionPane.showOptionDialog(this, scrollPane, "Receipt Preview",
+                JOptionPane.YES_NO_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+
+        if (choice == JOptionPane.YES_OPTION) {
+            // CALL THE HELPER CLASS to append (written in the background)
+            ReceiptWriter.saveReceiptToFile(newSale).thenAccept(fileSaved -> {
+                if (fileSaved != null) {
+                    SwingUtilities.invokeLater(() ->
+                        JOptionPane.showMessageDialog(this, "Receipt appended to daily log: " + fileSaved));
+                }
+            });
+        }
+
+        clearFields();
+    }
+
     private void clearFields() {
         txtCustomer.setText("");
         txtQuantity.setText("");
@@ -199,25 +254,44 @@ public class SalesSystemGUI extends JFrame {
     
     private void refreshTableData() {
         tableModel.setRowCount(0);
-        if (inventory == null) return;
-        for (Model m : inventory) {
-            tableModel.addRow(new Object[]{m.getModelId(), String.format("%.2f", m.getPrice()), m.getStockQuantity()[0]});
+        for (Model m : inventoryService.models()) {
+            tableModel.addRow(new Object[]{m.getModelId(), String.format("%.2f", m.getPrice()), m.getStock(outlet)});
         }
     }
 
-    public static void updateStockFile() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter("model.csv"))) {
-            pw.println("Model,Price,C60,C61,C62,C63,C64,C65,C66,C67,C68,C69"); 
-            for (Model m : inventory) {
-                StringBuilder line = new StringBuilder();
-                line.append(m.getModelId()).append(",").append(m.getPrice());
-                for (int s : m.getStockQuantity()) {
-                    line.append(",").append(s);
-                }
-                pw.println(line.toString());
+    // Updates the changed rows in place; a full reload redraws the table
+    private void applyStockChanges(List<EventBus.StockChanged> changes) {
+        if (inventoryService == null) return; // still loading; the table is filled once it is done
+        for (EventBus.StockChanged c : changes) {
+            if (c.isReload()) {
+                refreshTableData();
+                return;
             }
-        } catch (IOException e) {
-            System.err.println("File Update Error: " + e.getMessage());
         }
+        for (EventBus.StockChanged c : changes) {
+            if (c.outlet != outlet && c.outlet != EventBus.StockChanged.ALL_OUTLETS) continue; // another outlet's column
+            Model m = inventoryService.find(c.modelId);
+            if (m == null) continue;
+            int row = findTableRow(m.getModelId());
+            if (row < 0) {
+                tableModel.addRow(new Object[]{m.getModelId(), String.format("%.2f", m.getPrice()), m.getStock(outlet)});
+                comboModelCode.addItem(m.getModelId());
+            } else {
+                tableModel.setValueAt(String.format("%.2f", m.getPrice()), row, 1);
+                tableModel.setValueAt(m.getStock(outlet), row, 2);
+            }
+        }
+    }
+
+    private int findTableRow(String modelId) {
+        for (int i = 0; i < tableModel.getRowCount(); i++) {
+            if (modelId.equalsIgnoreCase((String) tableModel.getValueAt(i, 0))) return i;
+        }
+        return -1;
+    }
+
+    // Folds the stock journal into a fresh model.csv snapshot
+    public static void updateStockFile() {
+        AsyncTasks.run(() -> InventoryService.getInstance().checkpoint());
     }
 }
\ No newline at end of file
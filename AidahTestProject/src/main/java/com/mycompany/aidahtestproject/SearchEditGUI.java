@@ -1,6 +1,8 @@
 package com.mycompany.aidahtestproject;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.*;
@@ -11,10 +13,6 @@ public class SearchEditGUI extends JFrame {
 
     private final Employee currentUser;
     
-    // File Paths
-    private final String STOCK_FILE = "model.csv"; 
-    private final String SALES_FILE = "sales.csv";
-
     // --- GUI COMPONENTS: STOCK ---
     private JComboBox<String> cmbModelSelect; 
     private JTable stockTable;
@@ -25,14 +23,25 @@ public class SearchEditGUI extends JFrame {
 
     // --- GUI COMPONENTS: SALES ---
     private JTextField txtSalesSearch;
+    private JComboBox<String> cmbSalesStaff, cmbSalesModel, cmbSalesPayment;
+    private static final String ALL_VALUES = "All";
     private JTable salesTable;
     private DefaultTableModel salesModel;
     private JTextField txtEditDate, txtEditCust, txtEditItem, txtEditSaleQty, txtEditTotal, txtEditPay, txtEditStaff;
 
-    // Data Caches
+    // Data Caches (sales live in the shared SalesRepository)
+    private int salesSearchGeneration = 0;
     private List<String[]> stockDataCache = new ArrayList<>();
     private List<String> stockHeaders = new ArrayList<>(); // To store "Model, Price, C60, C61..."
-    private List<String[]> salesDataCache = new ArrayList<>();
+
+    // Version stamps of what is on screen: edits are compare-and-set against
+    // these, so a sale made while this window was open is never overwritten
+    private Map<String, Long> stockVersions = new HashMap<>();
+    private List<Long> salesStamps = new ArrayList<>();
+    // Version of the row when its cell was clicked: live updates move stockVersions on,
+    // but a save must still conflict with anything that changed after the user looked
+    private long editVersion;
+    private SalesQuery salesQuery = new SalesQuery();
 
     public SearchEditGUI(Employee user) {
         this.currentUser = user;
@@ -44,17 +53,26 @@ public class SearchEditGUI extends JFrame {
         JTabbedPane tabbedPane = new JTabbedPane();
         tabbedPane.setFont(new Font("Arial", Font.BOLD, 14));
 
-        // Load data first
-        loadStockData(); 
-        
         tabbedPane.addTab("📦 Stock Management (Matrix View)", createStockPanel());
         tabbedPane.addTab("💰 Sales Management", createSalesPanel());
 
         add(tabbedPane);
         
-        // Initial Views
-        refreshStockTable();
-        refreshSalesData("");
+        // Initial Views: files are read in the background, tables fill in when ready
+        reloadStockData();
+        AsyncTasks.runWithProgress(this, "Loading sales", SalesRepository::getInstance, repo -> {
+            fillCombo(cmbSalesStaff, repo, SalesDictionary.STAFF);
+            fillCombo(cmbSalesModel, repo, SalesDictionary.MODEL);
+            fillCombo(cmbSalesPayment, repo, SalesDictionary.PAYMENT);
+            refreshSalesData("");
+        });
+
+        // Changes made elsewhere (sales, movements, other editors) update the rows in place
+        EventBus.subscribe(this, EventBus.StockChanged.class, this::applyStockChanges);
+        EventBus.subscribe(this, EventBus.SaleRecorded.class,
+                events -> applySaleChanges(events.stream().map(ev -> ev.sale.getReferenceNo()).collect(java.util.stream.Collectors.toList())));
+        EventBus.subscribe(this, EventBus.SaleEdited.class,
+                events -> applySaleChanges(events.stream().map(ev -> ev.referenceNo).collect(java.util.stream.Collectors.toList())));
     }
 
     public SearchEditGUI() {
@@ -71,7 +89,6 @@ public class SearchEditGUI extends JFrame {
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         cmbModelSelect = new JComboBox<>();
         cmbModelSelect.setPreferredSize(new Dimension(200, 30));
-        populateModelDropdown();
 
         JButton btnRefresh = new JButton("🔄 Refresh Data");
         
@@ -119,11 +136,7 @@ public class SearchEditGUI extends JFrame {
         
         cmbModelSelect.addActionListener(e -> refreshStockTable());
 
-        btnRefresh.addActionListener(e -> {
-            loadStockData();
-            populateModelDropdown();
-            refreshStockTable();
-        });
+        btnRefresh.addActionListener(e -> reloadStockData());
 
         // SMART SELECTION: Check which column was clicked
         stockTable.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -143,42 +156,54 @@ public class SearchEditGUI extends JFrame {
     }
 
     // =================================================================
-    // LOGIC: STOCK READING (Based on model.csv format)
+    // LOGIC: STOCK READING (model.csv layout: Model, Price, one column per outlet)
     // =================================================================
     
-    private void loadStockData() {
-        stockDataCache.clear();
-        stockHeaders.clear();
-        
-        File file = new File(STOCK_FILE);
-        if (!file.exists()) {
-            JOptionPane.showMessageDialog(this, "model.csv not found!");
-            return;
-        }
+    // Header row + one String[] per model (and its row version), read off the event thread
+    private static class StockSnapshot {
+        final List<String> headers = new ArrayList<>();
+        final List<String[]> rows = new ArrayList<>();
+        final Map<String, Long> versions = new HashMap<>();
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line = br.readLine();
-            if (line != null) {
-                // Header: Model, Price, C60, C61, ...
-                String[] headers = line.split(",");
-                for (String h : headers) stockHeaders.add(h.trim());
-            }
+    private void reloadStockData() {
+        AsyncTasks.run(this::readStockData, snapshot -> {
+            stockHeaders = snapshot.headers;
+            stockDataCache = snapshot.rows;
+            stockVersions = snapshot.versions;
+            populateModelDropdown();
+            refreshStockTable();
+        });
+    }
 
-            while ((line = br.readLine()) != null) {
-                if(line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                // Ensure array length matches header length to avoid IndexOutOfBounds
-                // If CSV line is shorter (e.g. empty trailing commas), pad it
-                if (parts.length < stockHeaders.size()) {
-                    String[] padded = new String[stockHeaders.size()];
-                    System.arraycopy(parts, 0, padded, 0, parts.length);
-                    for(int i=parts.length; i<stockHeaders.size(); i++) padded[i] = "0"; // Default to 0
-                    stockDataCache.add(padded);
-                } else {
-                    stockDataCache.add(parts);
-                }
-            }
-        } catch (Exception e) { e.printStackTrace(); }
+    private StockSnapshot readStockData() {
+        StockSnapshot snapshot = new StockSnapshot();
+        InventoryService inventory = InventoryService.getInstance();
+
+        // Header: Model, Price, then the outlet codes in stock-column order (OutletRegistry)
+        snapshot.headers.add("Model");
+        snapshot.headers.add("Price");
+        int outlets = Math.max(OutletRegistry.count(), inventory.getMatrix().getOutletCount());
+        for (int i = 0; i < outlets; i++) snapshot.headers.add(OutletRegistry.code(i));
+
+        // Rows come from the shared in-memory inventory, so recent sales are included
+        for (Model m : inventory.models()) {
+            // Version first: a change after this makes the stamp stale, never the other way round
+            snapshot.versions.put(m.getModelId(), m.getVersion());
+            snapshot.rows.add(readStockRow(m, snapshot.headers.size()));
+        }
+        return snapshot;
+    }
+
+    private static String[] readStockRow(Model m, int width) {
+        int[] stock = m.getStockQuantity();
+        // Pad to the header length (Default to 0) to avoid IndexOutOfBounds
+        String[] row = new String[Math.max(width, stock.length + 2)];
+        Arrays.fill(row, "0");
+        row[0] = m.getModelId();
+        row[1] = String.valueOf(m.getPrice());
+        for (int i = 0; i < stock.length; i++) row[i + 2] = String.valueOf(stock[i]);
+        return row;
     }
 
     private void refreshStockTable() {
@@ -222,6 +247,8 @@ public class SearchEditGUI extends JFrame {
         
         txtEditModel.setText(modelId);
         txtEditPrice.setText(price);
+        Long version = stockVersions.get(modelId);
+        editVersion = version == null ? -1 : version;
 
         String colName = stockTable.getColumnName(col);
         
@@ -247,45 +274,120 @@ public class SearchEditGUI extends JFrame {
         String newQty = txtEditQty.getText();
         String newPrice = txtEditPrice.getText();
 
-        if (targetModel.isEmpty()) return;
+        if (targetModel.isEmpty() || editVersion < 0) return;
+        long version = editVersion;
+
+        boolean priceEdit = targetOutlet.equals("-");
+        int outletIndex = stockHeaders.indexOf(targetOutlet) - 2;
+        double price;
+        int qty;
+        try {
+            price = Double.parseDouble(newPrice.trim());
+            qty = priceEdit ? 0 : Integer.parseInt(newQty.trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Error saving: price and quantity must be numbers.");
+            return;
+        }
+        if (!priceEdit && outletIndex < 0) return;
+
+        // Compare-and-set against the shared inventory (in the background): the edit
+        // only applies if the row is still what this screen showed. A price change
+        // writes a fresh model.csv snapshot, a quantity change is journalled.
+        int width = stockHeaders.size();
+        AsyncTasks.run(() -> {
+            InventoryService inventory = InventoryService.getInstance();
+            StockEdit edit = new StockEdit();
+            edit.result = priceEdit
+                    ? inventory.compareAndSetPrice(targetModel, version, price)
+                    : inventory.compareAndSetStock(targetModel, outletIndex, version, qty);
+            // Re-read the row either way so the screen shows the live values
+            Model m = inventory.find(targetModel);
+            if (m != null) {
+                edit.version = m.getVersion();
+                edit.row = readStockRow(m, width);
+            }
+            return edit;
+        }, edit -> {
+            if (edit.row != null) {
+                replaceStockRow(edit.row, edit.version);
+                showStockRow(edit.row);
+            }
+            // The next save from this row compares against what is on screen now
+            editVersion = edit.version;
+            switch (edit.result) {
+                case APPLIED:
+                    JOptionPane.showMessageDialog(this, "Stock Updated!");
+                    break;
+                case CONFLICT:
+                    JOptionPane.showMessageDialog(this, "Model " + targetModel + " was changed (e.g. by a sale) after this screen loaded it.\n"
+                            + "Your edit was NOT saved. The row now shows the current values; check them and save again.",
+                            "Edit Conflict", JOptionPane.WARNING_MESSAGE);
+                    break;
+                case NOT_FOUND:
+                    JOptionPane.showMessageDialog(this, "Model " + targetModel + " no longer exists.");
+                    break;
+                default:
+                    JOptionPane.showMessageDialog(this, "Error saving stock file.");
+            }
+        });
+    }
+
+    // Result of a stock edit plus the row as it is now
+    private static class StockEdit {
+        EditResult result;
+        String[] row;
+        long version;
+    }
 
-        boolean updated = false;
+    private void replaceStockRow(String[] fresh, long version) {
+        stockVersions.put(fresh[0], version);
+        for (int i = 0; i < stockDataCache.size(); i++) {
+            if (stockDataCache.get(i)[0].equals(fresh[0])) {
+                stockDataCache.set(i, fresh);
+                return;
+            }
+        }
+    }
 
-        for (String[] row : stockDataCache) {
-            if (row[0].equals(targetModel)) {
-                // Update Price
-                row[1] = newPrice;
-                
-                // Update Quantity if an outlet is selected
-                if (!targetOutlet.equals("-")) {
-                    // Find which index this outlet corresponds to
-                    int outletIndex = stockHeaders.indexOf(targetOutlet);
-                    if (outletIndex != -1) {
-                        row[outletIndex] = newQty;
-                    }
-                }
-                updated = true;
-                break;
+    // Stock change events: only the affected rows are re-read and redrawn
+    private void applyStockChanges(List<EventBus.StockChanged> changes) {
+        if (stockHeaders.isEmpty()) return; // first load still running
+        for (EventBus.StockChanged c : changes) {
+            if (c.isReload()) {
+                reloadStockData();
+                return;
+            }
+        }
+        InventoryService inventory = InventoryService.getInstance();
+        for (EventBus.StockChanged c : changes) {
+            Model m = inventory.find(c.modelId);
+            if (m == null) continue;
+            long version = m.getVersion(); // before the row, as in readStockData
+            String[] fresh = readStockRow(m, stockHeaders.size());
+            if (!stockVersions.containsKey(fresh[0])) {
+                stockDataCache.add(fresh);
+                cmbModelSelect.addItem(fresh[0]);
             }
+            replaceStockRow(fresh, version);
+            showStockRow(fresh);
         }
+    }
 
-        if (updated) {
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(STOCK_FILE))) {
-                // Write Header
-                bw.write(String.join(",", stockHeaders));
-                bw.newLine();
-                
-                // Write Data
-                for (String[] row : stockDataCache) {
-                    bw.write(String.join(",", row));
-                    bw.newLine();
+    // Redraws one model's cells if it is in the table (or appends it if the table shows all models)
+    private void showStockRow(String[] fresh) {
+        int columns = Math.min(fresh.length, stockModel.getColumnCount());
+        for (int r = 0; r < stockModel.getRowCount(); r++) {
+            if (fresh[0].equals(stockModel.getValueAt(r, 0))) {
+                for (int c = 1; c < columns; c++) {
+                    if (!fresh[c].equals(stockModel.getValueAt(r, c))) stockModel.setValueAt(fresh[c], r, c);
                 }
-                JOptionPane.showMessageDialog(this, "Stock Updated!");
-                refreshStockTable();
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Error saving: " + e.getMessage());
+                return;
             }
         }
+        String filterModel = (String) cmbModelSelect.getSelectedItem();
+        if (filterModel == null || filterModel.equals("All Models")) {
+            stockModel.addRow(Arrays.copyOf(fresh, columns));
+        }
     }
 
     private void populateModelDropdown() {
@@ -304,11 +406,22 @@ public class SearchEditGUI extends JFrame {
 
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         txtSalesSearch = new JTextField(20);
-        JButton btnSearch = new JButton("Search Customer");
+        JButton btnSearch = new JButton("Search");
         JButton btnRefresh = new JButton("Show All");
 
+        // Choices are filled once the repository has loaded
+        cmbSalesStaff = filterCombo();
+        cmbSalesModel = filterCombo();
+        cmbSalesPayment = filterCombo();
+
         searchPanel.add(new JLabel("Customer Name:"));
         searchPanel.add(txtSalesSearch);
+        searchPanel.add(new JLabel("Staff:"));
+        searchPanel.add(cmbSalesStaff);
+        searchPanel.add(new JLabel("Model:"));
+        searchPanel.add(cmbSalesModel);
+        searchPanel.add(new JLabel("Payment:"));
+        searchPanel.add(cmbSalesPayment);
         searchPanel.add(btnSearch);
         searchPanel.add(btnRefresh);
 
@@ -338,7 +451,26 @@ public class SearchEditGUI extends JFrame {
         panel.add(editPanel, BorderLayout.SOUTH);
 
         btnSearch.addActionListener(e -> refreshSalesData(txtSalesSearch.getText().trim()));
-        btnRefresh.addActionListener(e -> { txtSalesSearch.setText(""); refreshSalesData(""); });
+        btnRefresh.addActionListener(e -> {
+            txtSalesSearch.setText("");
+            cmbSalesStaff.setSelectedIndex(0);
+            cmbSalesModel.setSelectedIndex(0);
+            cmbSalesPayment.setSelectedIndex(0);
+            refreshSalesData("");
+        });
+        cmbSalesStaff.addActionListener(e -> refreshSalesData(txtSalesSearch.getText().trim()));
+        cmbSalesModel.addActionListener(e -> refreshSalesData(txtSalesSearch.getText().trim()));
+        cmbSalesPayment.addActionListener(e -> refreshSalesData(txtSalesSearch.getText().trim()));
+
+        // Search as you type: the customer index answers from memory, so a
+        // short pause after the last key is all that is needed
+        javax.swing.Timer searchDelay = new javax.swing.Timer(150, e -> refreshSalesData(txtSalesSearch.getText().trim()));
+        searchDelay.setRepeats(false);
+        txtSalesSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { searchDelay.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { searchDelay.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { searchDelay.restart(); }
+        });
 
         salesTable.getSelectionModel().addListSelectionListener(e -> {
             int row = salesTable.getSelectedRow();
@@ -358,64 +490,154 @@ public class SearchEditGUI extends JFrame {
     }
 
     private void refreshSalesData(String query) {
-        salesModel.setRowCount(0);
-        salesDataCache.clear();
-        File file = new File(SALES_FILE);
-        if (!file.exists()) return;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line = br.readLine(); 
-            if (line != null) salesDataCache.add(line.split(",")); 
-
-            while ((line = br.readLine()) != null) {
-                if(line.trim().isEmpty()) continue;
-                String[] parts = line.split(",");
-                String ref, cust, model, qty, total, pay, staff;
-                if (parts.length >= 8) {
-                    ref = parts[0]; cust = parts[2]; model = parts[3]; qty = parts[4]; 
-                    total = parts[5]; pay = parts[6]; staff = parts[7];
-                } else if (parts.length >= 7) {
-                    ref = parts[0]; cust = parts[1]; model = parts[2]; qty = parts[3];
-                    total = parts[4]; pay = parts[5]; staff = parts[6];
-                } else { continue; }
-
-                salesDataCache.add(parts);
-                if (query.isEmpty() || cust.toLowerCase().contains(query.toLowerCase())) {
-                    salesModel.addRow(new Object[]{ref, cust, model, qty, total, pay, staff});
-                }
+        // Customer text plus any staff/model/payment choice, answered from the repository's indexes
+        SalesQuery q = new SalesQuery().customer(query);
+        addChoice(cmbSalesStaff, q::staff);
+        addChoice(cmbSalesModel, q::model);
+        addChoice(cmbSalesPayment, q::payment);
+        salesQuery = q;
+
+        // getInstance() picks up new sales from disk, so run it off the event thread;
+        // results of a search that has since been superseded (typing) are dropped
+        int generation = ++salesSearchGeneration;
+        AsyncTasks.run(() -> {
+            SalesRepository repo = SalesRepository.getInstance();
+            // One lock for rows and stamps, so they describe the same version of each sale
+            synchronized (repo) {
+                int[] rows = repo.query(q);
+                List<Long> stamps = new ArrayList<>(rows.length);
+                for (int row : rows) stamps.add(repo.getStamp(row));
+                return new AbstractMap.SimpleImmutableEntry<>(repo.toSales(rows), stamps);
             }
-        } catch (Exception e) { e.printStackTrace(); }
+        }, page -> {
+            if (generation != salesSearchGeneration) return;
+            salesStamps = page.getValue();
+            salesModel.setRowCount(0);
+            for (Sale s : page.getKey()) salesModel.addRow(salesRow(s));
+        });
     }
 
-    private void updateSalesFile() {
-        if (txtEditDate.getText().isEmpty()) return;
-        String targetRef = txtEditDate.getText();
-        List<String> newLines = new ArrayList<>();
-        boolean headerSkipped = false;
-        for (String[] row : salesDataCache) {
-            if (!headerSkipped && (row[0].equalsIgnoreCase("RefNo") || row[0].equalsIgnoreCase("Date"))) {
-                newLines.add(String.join(",", row));
-                headerSkipped = true;
-                continue;
+    // A sale recorded or edited while the list is open: look each one up and
+    // add, update or drop its row, instead of running the search again
+    private void applySaleChanges(List<String> referenceNos) {
+        SalesQuery q = salesQuery;
+        int generation = salesSearchGeneration;
+        AsyncTasks.run(() -> {
+            SalesRepository repo = SalesRepository.getInstance();
+            List<SaleDelta> deltas = new ArrayList<>();
+            synchronized (repo) {
+                for (String ref : referenceNos) {
+                    int row = repo.findByReference(ref);
+                    if (row < 0) continue;
+                    boolean listed = repo.matches(row, q);
+                    deltas.add(new SaleDelta(ref, listed ? repo.getSale(row) : null, listed ? repo.getStamp(row) : 0));
+                }
             }
-            if (row[0].equals(targetRef)) {
-                if (row.length >= 8) {
-                    row[2] = txtEditCust.getText(); row[3] = txtEditItem.getText();
-                    row[4] = txtEditSaleQty.getText(); row[5] = txtEditTotal.getText();
-                    row[6] = txtEditPay.getText(); row[7] = txtEditStaff.getText();
+            return deltas;
+        }, deltas -> {
+            // A newer search has been started: its results already include these sales
+            if (generation != salesSearchGeneration) return;
+            for (SaleDelta d : deltas) {
+                int r = findSalesRow(d.referenceNo);
+                if (d.sale == null) {
+                    if (r >= 0) {
+                        salesModel.removeRow(r);
+                        salesStamps.remove(r);
+                    }
+                } else if (r >= 0) {
+                    Object[] values = salesRow(d.sale);
+                    for (int c = 1; c < values.length; c++) salesModel.setValueAt(values[c], r, c);
+                    salesStamps.set(r, d.stamp);
                 } else {
-                    row[1] = txtEditCust.getText(); row[2] = txtEditItem.getText();
-                    row[3] = txtEditSaleQty.getText(); row[4] = txtEditTotal.getText();
-                    row[5] = txtEditPay.getText(); row[6] = txtEditStaff.getText();
+                    salesModel.addRow(salesRow(d.sale));
+                    salesStamps.add(d.stamp);
                 }
             }
-            newLines.add(String.join(",", row));
+        });
+    }
+
+    // A sale as the list shows it, with its stamp; sale is null if it no longer matches the filters
+    private static class SaleDelta {
+        final String referenceNo;
+        final Sale sale;
+        final long stamp;
+
+        SaleDelta(String referenceNo, Sale sale, long stamp) {
+            this.referenceNo = referenceNo;
+            this.sale = sale;
+            this.stamp = stamp;
         }
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(SALES_FILE))) {
-            for (String line : newLines) { bw.write(line); bw.newLine(); }
-            JOptionPane.showMessageDialog(this, "Sale Record Updated!");
-            refreshSalesData(txtSalesSearch.getText());
-        } catch (IOException e) { JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()); }
+    }
+
+    private int findSalesRow(String referenceNo) {
+        for (int r = salesModel.getRowCount() - 1; r >= 0; r--) {
+            if (referenceNo.equals(salesModel.getValueAt(r, 0))) return r;
+        }
+        return -1;
+    }
+
+    private static Object[] salesRow(Sale s) {
+        return new Object[]{s.getReferenceNo(), s.getCustomerName(), s.getModelId(),
+                s.getQuantity(), String.format("%.2f", s.getTotalPrice()), s.getTransactionMethod(), s.getEmployeeName()};
+    }
+
+    private void addChoice(JComboBox<String> box, java.util.function.Consumer<String> filter) {
+        String value = (String) box.getSelectedItem();
+        if (value != null && !value.equals(ALL_VALUES)) filter.accept(value);
+    }
+
+    private JComboBox<String> filterCombo() {
+        JComboBox<String> box = new JComboBox<>();
+        box.addItem(ALL_VALUES);
+        return box;
+    }
+
+    private void fillCombo(JComboBox<String> box, SalesRepository repo, int kind) {
+        for (String value : repo.distinctValues(kind)) box.addItem(value);
+    }
+
+    private void updateSalesFile() {
+        if (txtEditDate.getText().isEmpty()) return;
+        String targetRef = txtEditDate.getText();
+
+        int qty;
+        double total;
+        try {
+            qty = Integer.parseInt(txtEditSaleQty.getText().trim());
+            total = Double.parseDouble(txtEditTotal.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Qty and Total must be numbers.");
+            return;
+        }
+        String customer = txtEditCust.getText(), item = txtEditItem.getText();
+        String payment = txtEditPay.getText(), staff = txtEditStaff.getText();
+        int selected = salesTable.getSelectedRow();
+        if (selected < 0 || selected >= salesStamps.size()) return;
+        long stamp = salesStamps.get(selected);
+
+        // Waits for the edit to reach the disk, so it runs in the background. Compare-and-set: only
+        // applied if the sale is unchanged since it was listed here.
+        AsyncTasks.run(() -> {
+            SalesRepository repo = SalesRepository.getInstance();
+            int row = repo.findByReference(targetRef);
+            if (row < 0) return EditResult.NOT_FOUND;
+            Sale original = repo.getSale(row);
+            Sale updated = new Sale(targetRef, original.getDate(), customer, item, qty, total, payment, staff, original.getOutlet());
+            return repo.compareAndUpdate(targetRef, stamp, updated);
+        }, result -> {
+            if (result == EditResult.APPLIED) {
+                // The SaleEdited event updates the row
+                JOptionPane.showMessageDialog(this, "Sale Record Updated!");
+                return;
+            } else if (result == EditResult.CONFLICT) {
+                JOptionPane.showMessageDialog(this, "Sale " + targetRef + " was changed in another window after it was listed here.\n"
+                        + "Your edit was NOT saved. The list has been refreshed; check the sale and update it again.",
+                        "Edit Conflict", JOptionPane.WARNING_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, "Sale " + targetRef + " no longer exists.");
+            }
+            refreshSalesData(txtSalesSearch.getText().trim());
+        }, error -> JOptionPane.showMessageDialog(this, "Error: " + error.getMessage()));
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,167 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming top-K ("heavy hitters") in fixed memory, using the
+ * Space-Saving algorithm.
+ *
+ * At most `capacity` counters are kept, in a min-heap by count. A new key
+ * arriving when all counters are taken replaces the smallest one and
+ * inherits its count as possible error. Guarantees:
+ *   - any key whose true weight is above total / capacity is in the list;
+ *   - a reported count overestimates the truth by at most its error.
+ * retract() takes weight back (an edited sale); it is exact for a tracked
+ * key and only lowers the total for one that was already evicted.
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Integer> slotByKey = new HashMap<>();
+    private final String[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private int size = 0;
+    private long total = 0;
+
+    /** One reported key: true weight is between count - error and count. */
+    public static class Entry {
+        public final String key;
+        public final long count;
+        public final long error;
+
+        Entry(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+    }
+
+    public void offer(String key, long weight) {
+        total += weight;
+        Integer slot = slotByKey.get(key);
+        if (slot != null) {
+            counts[slot] += weight;
+            siftDown(slot);
+            return;
+        }
+        if (size < capacity) {
+            keys[size] = key;
+            counts[size] = weight;
+            errors[size] = 0;
+            slotByKey.put(key, size);
+            siftUp(size++);
+            return;
+        }
+        // Full: the smallest counter (heap root) is taken over by the new key
+        slotByKey.remove(keys[0]);
+        errors[0] = counts[0];
+        counts[0] += weight;
+        keys[0] = key;
+        slotByKey.put(key, 0);
+        siftDown(0);
+    }
+
+    public void retract(String key, long weight) {
+        total -= weight;
+        Integer slot = slotByKey.get(key);
+        if (slot == null) return;
+        counts[slot] -= weight;
+        siftUp(slot);
+    }
+
+    /** The k heaviest keys, heaviest first. */
+    public List<Entry> top(int k) {
+        List<Entry> all = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) all.add(new Entry(keys[i], counts[i], errors[i]));
+        all.sort((a, b) -> Long.compare(b.count, a.count));
+        return all.size() > k ? new ArrayList<>(all.subList(0, k)) : all;
+    }
+
+    /** Sum of all weights offered. */
+    public long total() {
+        return total;
+    }
+
+    /** Upper bound on the error of any reported count. */
+    public long maxError() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    // =================================================================
+    // MIN-HEAP ON counts (slotByKey follows every move)
+    // =================================================================
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (counts[parent] <= counts[i]) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1, right = left + 1, smallest = i;
+            if (left < size && counts[left] < counts[smallest]) smallest = left;
+            if (right < size && counts[right] < counts[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String k = keys[a]; keys[a] = keys[b]; keys[b] = k;
+        long c = counts[a]; counts[a] = counts[b]; counts[b] = c;
+        long e = errors[a]; errors[a] = errors[b]; errors[b] = e;
+        slotByKey.put(keys[a], a);
+        slotByKey.put(keys[b], b);
+    }
+
+    // =================================================================
+    // PERSISTENCE
+    // =================================================================
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeLong(total);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(keys[i]);
+            out.writeLong(counts[i]);
+            out.writeLong(errors[i]);
+        }
+    }
+
+    public static SpaceSaving read(DataInputStream in, int capacity) throws IOException {
+        SpaceSaving s = new SpaceSaving(capacity);
+        s.total = in.readLong();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            String key = in.readUTF();
+            long count = in.readLong();
+            long error = in.readLong();
+            if (s.size == capacity) continue; // capacity shrank between versions
+            s.keys[s.size] = key;
+            s.counts[s.size] = count;
+            s.errors[s.size] = error;
+            s.slotByKey.put(key, s.size);
+            s.siftUp(s.size++);
+        }
+        return s;
+    }
+}
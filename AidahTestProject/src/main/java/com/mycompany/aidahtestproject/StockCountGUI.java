@@ -8,6 +8,8 @@ import java.util.ArrayList;
 
 public class StockCountGUI extends JFrame {
     private ArrayList<Model> inventory;
+    // Counts are taken at this terminal's outlet (-Dgoldenhour.outlet)
+    private final int outlet = OutletRegistry.home();
     private int currentIndex = 0;
     
     // Stats
@@ -22,11 +24,8 @@ public class StockCountGUI extends JFrame {
     private JButton btnBack; // New Back Button
 
     public StockCountGUI() {
-        // Load data using your ModelReader
-        inventory = ModelReader.loadModels();
-
         // Window Setup
-        setTitle("Inventory Audit - Outlet C60");
+        setTitle("Inventory Audit - Outlet " + OutletRegistry.code(outlet));
         setSize(500, 650); // Increased height for the new button
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
@@ -77,8 +76,16 @@ public class StockCountGUI extends JFrame {
         add(inputPanel, BorderLayout.CENTER);
         add(bottomPanel, BorderLayout.SOUTH);
 
-        // Initialization
-        displayCurrentModel();
+        // Initialization: live views onto the shared inventory, loaded off the event thread
+        btnVerify.setEnabled(false);
+        lblModelName.setText("Loading...");
+        AsyncTasks.run(() -> InventoryService.getInstance().models(), models -> {
+            inventory = models;
+            btnVerify.setEnabled(true);
+            displayCurrentModel();
+        });
+        // A sale during the count moves the expected figure for the model on screen
+        EventBus.subscribe(this, EventBus.StockChanged.class, changes -> refreshExpected());
 
         // --- LOGIC ---
         btnVerify.addActionListener(e -> handleVerification());
@@ -97,7 +104,7 @@ public class StockCountGUI extends JFrame {
         if (currentIndex < inventory.size()) {
             Model m = inventory.get(currentIndex);
             lblModelName.setText(m.getModelId());
-            lblSystemStock.setText(String.valueOf(m.getStockQuantity()[0])); // Outlet C60
+            lblSystemStock.setText(String.valueOf(m.getStock(outlet)));
             txtUserCount.setText("");
             txtUserCount.requestFocus();
         } else {
@@ -105,11 +112,17 @@ public class StockCountGUI extends JFrame {
         }
     }
 
+    private void refreshExpected() {
+        if (inventory != null && currentIndex < inventory.size()) {
+            lblSystemStock.setText(String.valueOf(inventory.get(currentIndex).getStock(outlet)));
+        }
+    }
+
     private void handleVerification() {
         try {
             int userCount = Integer.parseInt(txtUserCount.getText().trim());
             Model m = inventory.get(currentIndex);
-            int systemStock = m.getStockQuantity()[0];
+            int systemStock = m.getStock(outlet);
 
             if (userCount == systemStock) {
                 tallyCorrect++;
@@ -0,0 +1,563 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Write-ahead journal for stock changes.
+ *
+ * model.csv is the snapshot. Every stock change is appended to
+ * stock.journal as one small record instead of rewriting the snapshot,
+ * so a sale costs one append no matter how big the catalogue is.
+ * Every CHECKPOINT_INTERVAL records the journal is folded back into
+ * model.csv and cleared.
+ *
+ * Record layout: long seq, long timestamp, int outlet, int delta, UTF modelId
+ * model.csv starts with a "seq,N" line: the seq of the last record folded
+ * into it, written in the same atomic rename as the rows, so a crash never
+ * pairs a snapshot with the wrong seq. Snapshots from before that line
+ * existed take the seq from the old stock.checkpoint file.
+ * A batch (appendBatch) is a header record with outlet BATCH and delta =
+ * number of records that follow; it is only applied if all of them are
+ * there, so a crash part-way through leaves none of it.
+ *
+ * Several terminals may share the files. Every write holds the STOCK lock
+ * of FileCoordinator and first catches up with records the others appended
+ * (handed to the Follower), so seq numbers stay unique and each terminal's
+ * inventory sees the others' sales. If another terminal checkpointed in the
+ * meantime (the seq in model.csv moved), the Follower reloads model.csv first.
+ *
+ * Single-cell changes are decided in memory first (InventoryMatrix CAS)
+ * and handed to the PersistenceWriter with appendIf: its thread catches
+ * up, numbers and writes the records of every change queued meanwhile
+ * under one STOCK lock and one force(), and refuses a record if the
+ * others' records just read have made it invalid (e.g. they sold the same
+ * last unit). Callers only wait for their own record's future.
+ *
+ * Locking order is the STOCK lock, then this class's monitor (which guards
+ * the counters below), never the other way round.
+ */
+public class StockJournal {
+
+    private static final String SNAPSHOT_FILE = "model.csv";
+    private static final String JOURNAL_FILE = "stock.journal";
+    private static final String CHECKPOINT_FILE = "stock.checkpoint"; // Older snapshots only
+    static final String SEQ_FIELD = "seq";
+
+    public static final int CHECKPOINT_INTERVAL = 200;
+    private static final int BATCH = -1; // outlet value of a batch header record
+
+    private static boolean initialised = false;
+    private static long lastSeq = 0;      // Last seq applied here (ours or another terminal's)
+    private static long checkpointSeq = 0; // Last seq already in model.csv
+    private static int pending = 0;       // Records in the journal since the last checkpoint
+    private static long knownLength = 0;  // Journal bytes already read or written here
+    private static Follower follower;
+
+    /** What appendIf did. */
+    public enum Outcome {
+        WRITTEN,
+        /** Other terminals' records, just caught up, make the change invalid. */
+        REJECTED,
+        /** Another terminal wrote a new model.csv; catchUp(true) and try again. */
+        STALE,
+        FAILED
+    }
+
+    public static class Entry {
+        public final long seq;
+        public final long timestamp;
+        public final String modelId;
+        public final int outlet;
+        public final int delta;
+
+        Entry(long seq, long timestamp, String modelId, int outlet, int delta) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+            this.modelId = modelId;
+            this.outlet = outlet;
+            this.delta = delta;
+        }
+
+        /** A change to hand to appendBatch (seq and time are filled in when written). */
+        public static Entry change(String modelId, int outlet, int delta) {
+            return new Entry(0, 0, modelId, outlet, delta);
+        }
+    }
+
+    /** Keeps an in-memory inventory in step with changes other terminals journal. */
+    public interface Follower {
+        /** A change another terminal recorded. */
+        void apply(Entry e);
+        /** Another terminal rewrote model.csv: load it again (later entries follow via apply). */
+        void reload();
+    }
+
+    public static synchronized void follow(Follower f) {
+        follower = f;
+    }
+
+    /**
+     * Runs a stock change with the journal locked against every terminal,
+     * after catching up with what the others wrote. For changes that span
+     * several cells or write model.csv (see InventoryService.exclusively);
+     * a single-cell change only needs appendIf.
+     * @param change
+     * @return whatever change returns
+     */
+    public static <T> T update(Supplier<T> change) {
+        return FileCoordinator.withExclusive(FileCoordinator.STOCK, () -> syncAndRun(change));
+    }
+
+    private static synchronized <T> T syncAndRun(Supplier<T> change) {
+        sync(true, true);
+        return change.get();
+    }
+
+    /**
+     * Appends one stock change and waits until it is on disk. O(1)
+     * regardless of catalogue size. Not from inside update().
+     * @param modelId
+     * @param outletIndex outlet index (OutletRegistry)
+     * @param delta negative for a sale / stock out
+     * @return true if written
+     */
+    public static boolean append(String modelId, int outletIndex, int delta) {
+        return appendIf(modelId, outletIndex, delta, () -> true) == Outcome.WRITTEN;
+    }
+
+    /**
+     * Appends a change already made in memory. The record is queued on the
+     * PersistenceWriter and built on its thread with the STOCK lock held:
+     * it first catches up with other terminals, handing their records to
+     * the Follower; stillValid is then asked whether the change still holds
+     * (e.g. the cell is not below zero), and nothing is written if not.
+     * Never reloads model.csv: a new snapshot gives STALE instead, since
+     * the caller's unwritten change is in memory. Waits until the record
+     * is on disk; concurrent changes share the force(). Not from inside
+     * update(), which holds the lock the writer needs.
+     * @param modelId
+     * @param outletIndex
+     * @param delta
+     * @param stillValid checked on the writer thread after catching up, with the lock held
+     * @return WRITTEN, REJECTED, STALE or FAILED
+     */
+    public static Outcome appendIf(String modelId, int outletIndex, int delta, BooleanSupplier stillValid) {
+        QueuedChange change = new QueuedChange(modelId, outletIndex, delta, stillValid);
+        try {
+            PersistenceWriter.getInstance().append(new File(JOURNAL_FILE).toPath(), FileCoordinator.STOCK, change).join();
+        } catch (CompletionException e) {
+            System.err.println("Error writing stock journal: " + e.getCause().getMessage());
+            return Outcome.FAILED;
+        }
+        return change.outcome;
+    }
+
+    /**
+     * Applies what other terminals journalled since we last looked.
+     * @param mayReload false if the Follower must not reload model.csv now
+     * @return false if a reload was needed but not allowed (nothing applied)
+     */
+    public static boolean catchUp(boolean mayReload) {
+        return FileCoordinator.withShared(FileCoordinator.STOCK, () -> syncShared(mayReload));
+    }
+
+    private static synchronized boolean syncShared(boolean mayReload) {
+        return sync(false, mayReload);
+    }
+
+    // One change on its way through the PersistenceWriter; encode() runs on its thread
+    private static final class QueuedChange implements PersistenceWriter.Deferred {
+        final String modelId;
+        final int outlet;
+        final int delta;
+        final BooleanSupplier stillValid;
+        Outcome outcome = Outcome.FAILED;
+        // Counters before this record, restored if it does not reach the disk
+        long seqBefore;
+        long lengthBefore;
+        int pendingBefore;
+
+        QueuedChange(String modelId, int outlet, int delta, BooleanSupplier stillValid) {
+            this.modelId = modelId;
+            this.outlet = outlet;
+            this.delta = delta;
+            this.stillValid = stillValid;
+        }
+
+        @Override
+        public ByteBuffer encode() throws IOException {
+            synchronized (StockJournal.class) {
+                if (!sync(true, false)) {
+                    outcome = Outcome.STALE;
+                    return null;
+                }
+                if (!stillValid.getAsBoolean()) {
+                    outcome = Outcome.REJECTED;
+                    return null;
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeLong(lastSeq + 1);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(outlet);
+                out.writeInt(delta);
+                out.writeUTF(modelId);
+                out.flush();
+                // Counted now: the writer appends it before anyone else can read the journal
+                seqBefore = lastSeq;
+                lengthBefore = knownLength;
+                pendingBefore = pending;
+                lastSeq++;
+                knownLength += bytes.size();
+                pending++;
+                outcome = Outcome.WRITTEN;
+                return ByteBuffer.wrap(bytes.toByteArray());
+            }
+        }
+
+        @Override
+        public void failed() {
+            // The writer has cut the record off again, so the next one reuses its seq
+            synchronized (StockJournal.class) {
+                outcome = Outcome.FAILED;
+                lastSeq = Math.min(lastSeq, seqBefore);
+                knownLength = Math.min(knownLength, lengthBefore);
+                pending = Math.min(pending, pendingBefore);
+            }
+        }
+    }
+
+    /**
+     * Appends several changes as one all-or-nothing batch: a single
+     * write() and one force to disk, however many lines it has.
+     * @param changes modelId, outlet and delta of each change (seq and
+     *        timestamp are assigned here)
+     * @return true if written and on disk
+     */
+    public static boolean appendBatch(List<Entry> changes) {
+        if (changes.isEmpty()) return true;
+        return FileCoordinator.withExclusive(FileCoordinator.STOCK, () -> writeBatch(changes));
+    }
+
+    private static synchronized boolean writeBatch(List<Entry> changes) {
+        sync(true, true);
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + changes.size() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes);
+             FileChannel file = FileChannel.open(new File(JOURNAL_FILE).toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // Header: how many records belong to the batch
+            out.writeLong(lastSeq + 1);
+            out.writeLong(now);
+            out.writeInt(BATCH);
+            out.writeInt(changes.size());
+            out.writeUTF("");
+            long seq = lastSeq;
+            for (Entry c : changes) {
+                out.writeLong(++seq);
+                out.writeLong(now);
+                out.writeInt(c.outlet);
+                out.writeInt(c.delta);
+                out.writeUTF(c.modelId);
+            }
+            out.flush();
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            while (buf.hasRemaining()) file.write(buf);
+            file.force(false);
+        } catch (IOException e) {
+            System.err.println("Error writing stock journal: " + e.getMessage());
+            // Cut off whatever part of the batch made it, so it cannot be read later
+            try (FileChannel ch = FileChannel.open(new File(JOURNAL_FILE).toPath(), StandardOpenOption.WRITE)) {
+                if (ch.size() > knownLength) ch.truncate(knownLength);
+            } catch (IOException ignored) { }
+            return false;
+        }
+        lastSeq += changes.size();
+        knownLength += bytes.size();
+        pending += changes.size();
+        return true;
+    }
+
+    /**
+     * Appends a change and folds the journal into model.csv when it is due.
+     * @param inventory the in-memory inventory, already carrying this change
+     * @param modelId
+     * @param outletIndex
+     * @param delta
+     * @return true if written
+     */
+    public static boolean record(List<Model> inventory, String modelId, int outletIndex, int delta) {
+        if (!append(modelId, outletIndex, delta)) return false;
+        if (checkpointDue()) checkpoint(inventory);
+        return true;
+    }
+
+    /** Seq of the last record written or applied here (current when called inside update()). */
+    static synchronized long lastSeq() {
+        init();
+        return lastSeq;
+    }
+
+    /** Seq of the last record folded into model.csv, as the file says now. */
+    static synchronized long checkpointSeqOnDisk() {
+        return readCheckpointSeq(checkpointSeq);
+    }
+
+    /** True once CHECKPOINT_INTERVAL records have built up since the last checkpoint. */
+    public static synchronized boolean checkpointDue() {
+        init();
+        return pending >= CHECKPOINT_INTERVAL;
+    }
+
+    /**
+     * Applies every journal entry newer than the last checkpoint to the
+     * models just loaded from model.csv. Call with the STOCK lock held
+     * since model.csv was read (see ModelReader.loadMatrix).
+     * @param models
+     */
+    public static void replay(List<Model> models) {
+        FileCoordinator.runShared(FileCoordinator.STOCK, () -> replayLocked(models));
+    }
+
+    private static synchronized void replayLocked(List<Model> models) {
+        // All models loaded together share one matrix and its ID index
+        InventoryMatrix matrix = models.isEmpty() ? null : models.get(0).getMatrix();
+        load(e -> {
+            Model m = matrix == null ? null : matrix.find(e.modelId);
+            if (m == null || e.outlet < 0 || e.outlet >= m.getOutletCount()) {
+                System.err.println("Skipping stock journal entry for unknown model/outlet: " + e.modelId);
+                return;
+            }
+            m.adjustStock(e.outlet, e.delta);
+        });
+    }
+
+    /**
+     * Writes the full inventory to model.csv, headed by how far the journal
+     * has been folded, then clears the journal.
+     * @param inventory
+     * @return true if the snapshot was written
+     */
+    public static boolean checkpoint(List<Model> inventory) {
+        return FileCoordinator.withExclusive(FileCoordinator.STOCK, () -> writeCheckpoint(inventory));
+    }
+
+    private static synchronized boolean writeCheckpoint(List<Model> inventory) {
+        sync(true, true);
+        // 1. Snapshot and its seq (temp file + atomic rename, so a crash keeps
+        //    the old pair and the records it lacks are still in the journal)
+        long foldedSeq = lastSeq;
+        try {
+            // One column per outlet index, headed by its code (OutletRegistry)
+            int width = OutletRegistry.count();
+            for (Model m : inventory) width = Math.max(width, m.getOutletCount());
+            int outlets = width;
+            AtomicFileWriter.writeText(new File(SNAPSHOT_FILE).toPath(), pw -> {
+                pw.println(SEQ_FIELD + "," + foldedSeq);
+                StringBuilder header = new StringBuilder("Model,Price");
+                for (int i = 0; i < outlets; i++) header.append(",").append(CsvTokenizer.escape(OutletRegistry.code(i)));
+                pw.println(header.toString());
+                for (Model m : inventory) {
+                    StringBuilder line = new StringBuilder();
+                    line.append(CsvTokenizer.escape(m.getModelId())).append(",").append(m.getPrice());
+                    int[] stock = m.getStockQuantity();
+                    for (int i = 0; i < outlets; i++) {
+                        line.append(",").append(i < stock.length ? stock[i] : 0);
+                    }
+                    pw.println(line.toString());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("File Update Error: " + e.getMessage());
+            return false;
+        }
+
+        checkpointSeq = foldedSeq;
+        // 2. The seq line supersedes any stock.checkpoint left by older versions
+        try {
+            Files.deleteIfExists(new File(CHECKPOINT_FILE).toPath());
+        } catch (IOException e) {
+            System.err.println("Warning: could not remove " + CHECKPOINT_FILE + ": " + e.getMessage());
+        }
+
+        // 3. Clear the journal
+        try {
+            new FileOutputStream(JOURNAL_FILE).close();
+            pending = 0;
+            knownLength = 0;
+        } catch (IOException e) {
+            System.err.println("Error clearing stock journal: " + e.getMessage());
+        }
+        return true;
+    }
+
+    public static List<Entry> readEntries() {
+        List<Entry> entries = new ArrayList<>();
+        FileCoordinator.runShared(FileCoordinator.STOCK, () -> readFrom(0, entries::add));
+        return entries;
+    }
+
+    // =================================================================
+    // KEEPING UP WITH OTHER TERMINALS
+    // =================================================================
+
+    /**
+     * Reads complete records from a byte offset.
+     * @return the offset just after the last complete record
+     */
+    private static long readFrom(long offset, Consumer<Entry> visitor) {
+        File file = new File(JOURNAL_FILE);
+        if (!file.exists() || file.length() <= offset) return offset;
+
+        byte[] data;
+        try (FileInputStream in = new FileInputStream(file)) {
+            in.getChannel().position(offset);
+            data = in.readAllBytes();
+        } catch (IOException e) {
+            System.err.println("Error reading stock journal: " + e.getMessage());
+            return offset;
+        }
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        long end = offset;
+        try {
+            while (true) {
+                Entry e = readEntry(in);
+                if (e.outlet == BATCH) {
+                    // Read the whole batch before applying any of it
+                    List<Entry> batch = new ArrayList<>(e.delta);
+                    for (int i = 0; i < e.delta; i++) batch.add(readEntry(in));
+                    batch.forEach(visitor);
+                } else {
+                    visitor.accept(e);
+                }
+                end = offset + data.length - bytes.available();
+            }
+        } catch (EOFException e) {
+            // End of journal (or a torn last record from a crash)
+        } catch (IOException e) {
+            System.err.println("Error reading stock journal: " + e.getMessage());
+        }
+        return end;
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        long ts = in.readLong();
+        int outlet = in.readInt();
+        int delta = in.readInt();
+        String modelId = in.readUTF();
+        return new Entry(seq, ts, modelId, outlet, delta);
+    }
+
+    // Rebuilds the counters from the files, handing every unfolded entry to apply
+    private static void load(Consumer<Entry> apply) {
+        initialised = true;
+        checkpointSeq = readCheckpointSeq(0);
+        lastSeq = checkpointSeq;
+        pending = 0;
+        knownLength = readFrom(0, e -> {
+            if (e.seq <= lastSeq) return; // already in model.csv
+            lastSeq = e.seq;
+            pending++;
+            apply.accept(e);
+        });
+    }
+
+    private static void init() {
+        if (!initialised) load(e -> { });
+    }
+
+    /**
+     * Applies whatever other terminals journalled since we last looked.
+     * @param exclusive true if the STOCK lock is held exclusively (a torn
+     *        tail may then be cut off before we append after it)
+     * @param mayReload false to return false instead of reloading model.csv
+     * @return false if a reload was needed but not allowed
+     */
+    private static boolean sync(boolean exclusive, boolean mayReload) {
+        init();
+        long diskCheckpoint = readCheckpointSeq(checkpointSeq);
+        if (diskCheckpoint != checkpointSeq) {
+            if (!mayReload) return false;
+            // Another terminal folded the journal: its model.csv already has
+            // everything we applied, and the journal now starts after it
+            checkpointSeq = diskCheckpoint;
+            lastSeq = Math.max(lastSeq, diskCheckpoint);
+            pending = 0;
+            knownLength = 0;
+            if (follower != null) follower.reload();
+        }
+
+        long length = new File(JOURNAL_FILE).length();
+        if (length == knownLength) return true;
+        if (length < knownLength) knownLength = 0; // Cleared under us; seq numbers skip what we have
+        knownLength = readFrom(knownLength, e -> {
+            if (e.seq <= lastSeq) return;
+            lastSeq = e.seq;
+            pending++;
+            if (follower != null) follower.apply(e);
+        });
+        if (exclusive && knownLength < length) {
+            System.err.println("Warning: cutting a torn record off the end of " + JOURNAL_FILE);
+            try (FileChannel ch = FileChannel.open(new File(JOURNAL_FILE).toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(knownLength);
+            } catch (IOException e) {
+                System.err.println("Error repairing stock journal: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    // The "seq,N" first line of model.csv; only read that far, as sync() runs on every write
+    private static long readCheckpointSeq(long fallback) {
+        File snapshot = new File(SNAPSHOT_FILE);
+        if (snapshot.exists()) {
+            try (FileChannel ch = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer head = ByteBuffer.allocate(32);
+                while (head.hasRemaining()) {
+                    if (ch.read(head, head.position()) < 0) break;
+                }
+                String first = new String(head.array(), 0, head.position(), StandardCharsets.US_ASCII);
+                if (first.startsWith(SEQ_FIELD + ",")) {
+                    int end = first.indexOf('\n');
+                    if (end < 0) throw new NumberFormatException("no line end");
+                    return Long.parseLong(first.substring(SEQ_FIELD.length() + 1, end).trim());
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Warning: unreadable seq line in " + SNAPSHOT_FILE + ".");
+                return fallback;
+            }
+        }
+
+        // Snapshot written before the seq line existed
+        File cp = new File(CHECKPOINT_FILE);
+        if (!cp.exists()) return 0;
+        try {
+            return Long.parseLong(Files.readString(cp.toPath()).trim());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Warning: unreadable stock.checkpoint.");
+            return fallback;
+        }
+    }
+}
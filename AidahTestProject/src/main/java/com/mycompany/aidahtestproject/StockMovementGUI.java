@@ -4,10 +4,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.io.*;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 
 public class StockMovementGUI extends JFrame {
     private final JRadioButton rbIn, rbOut;
@@ -19,14 +18,17 @@ public class StockMovementGUI extends JFrame {
     private final Employee currentUser; 
     
     private final JComboBox<String> comboSupplierOutlet; 
-    private final String HOME_OUTLET = "C60 - Kuala Lumpur City Centre";
+    // The outlet this terminal works for (-Dgoldenhour.outlet)
+    private final int homeOutlet = OutletRegistry.home();
+    private final String HOME_OUTLET = OutletRegistry.label(homeOutlet);
+    // Outlet index of each entry in comboSupplierOutlet (EXTERNAL for suppliers/warehouse)
+    private final List<Integer> partyOutlets = new ArrayList<>();
     
-    private final String MODEL_FILE = "model.csv"; 
 
     public StockMovementGUI(Employee user) {
         this.currentUser = user; 
 
-        setTitle("Stock Movement System - C60");
+        setTitle("Stock Movement System - " + OutletRegistry.code(homeOutlet));
         setSize(550, 700); 
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
@@ -60,7 +62,7 @@ public class StockMovementGUI extends JFrame {
         // 3. Target Label
         lblFixedPlace = new JLabel("To:");
         formPanel.add(lblFixedPlace);
-        formPanel.add(new JLabel("This Outlet (C60)"));
+        formPanel.add(new JLabel("This Outlet (" + OutletRegistry.code(homeOutlet) + ")"));
 
         // 4. Staff Name
         formPanel.add(new JLabel("Staff In Charge:"));
@@ -114,36 +116,25 @@ public class StockMovementGUI extends JFrame {
         List<String> list = new ArrayList<>();
         list.add("MAIN WAREHOUSE");
         list.add("GLOBAL DISTRIBUTOR A");
+        partyOutlets.add(StockTransferEngine.EXTERNAL);
+        partyOutlets.add(StockTransferEngine.EXTERNAL);
         
-        try (BufferedReader br = new BufferedReader(new FileReader("outlet.csv"))) {
-            br.readLine(); 
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 2 && !parts[0].equals("C60")) {
-                    list.add(parts[0] + " - " + parts[1]);
-                }
+        // Every other outlet, from the registry (outlet.csv): moves to/from these are transfers
+        for (int i = 0; i < OutletRegistry.count(); i++) {
+            if (i != homeOutlet) {
+                list.add(OutletRegistry.label(i));
+                partyOutlets.add(i);
             }
-        } catch (IOException e) { }
+        }
         return list.toArray(new String[0]);
     }
 
+    // Model IDs from the shared in-memory inventory (no file read per dialog)
     private String[] loadModels() {
-        List<String> models = new ArrayList<>();
-        File file = new File(MODEL_FILE);
-        if (!file.exists()) return new String[]{}; 
-
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                if (line.contains(",")) {
-                    models.add(line.split(",")[0].trim()); 
-                }
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-        return models.toArray(new String[0]);
+        List<Model> models = InventoryService.getInstance().models();
+        String[] ids = new String[models.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = models.get(i).getModelId();
+        return ids;
     }
 
     private void updateLabels() {
@@ -156,59 +147,6 @@ public class StockMovementGUI extends JFrame {
         }
     }
 
-    private void updateStockFile(String model, int qty, boolean isStockIn) {
-        List<String> lines = new ArrayList<>();
-        boolean found = false;
-        File file = new File(MODEL_FILE);
-
-        if (file.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    
-                    if (parts.length >= 2 && parts[0].equalsIgnoreCase(model)) {
-                        // Assumption: Updates last column (Quantity)
-                        int qtyIndex = parts.length - 1; 
-                        String currentPrice = parts.length > 2 ? parts[1] : "0.0";
-                        
-                        try {
-                            int currentQty = Integer.parseInt(parts[qtyIndex]);
-                            int newQty = isStockIn ? (currentQty + qty) : (currentQty - qty);
-                            
-                            if (newQty < 0) newQty = 0; 
-                            
-                            lines.add(parts[0] + "," + currentPrice + "," + newQty);
-                            found = true;
-                        } catch (NumberFormatException e) {
-                            lines.add(parts[0] + "," + currentPrice + "," + qty);
-                            found = true;
-                        }
-                    } else {
-                        lines.add(line); 
-                    }
-                }
-            } catch (IOException e) {
-                logArea.append("Error reading model file.\n");
-            }
-        }
-
-        if (!found && isStockIn) {
-            lines.add(model + ",0.0," + qty);
-        } else if (!found && !isStockIn) {
-            logArea.append("Warning: Cannot remove stock for '" + model + "' (Not Found).\n");
-            return;
-        }
-
-        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
-            for (String l : lines) {
-                pw.println(l);
-            }
-        } catch (IOException e) {
-            logArea.append("Error saving stock updates.\n");
-        }
-    }
-
     // --- UPDATED RECEIPT GENERATION METHOD ---
     private void generateReceipt(String type, String dateTime, String from, String to, 
                                  String staff, StringBuilder items, int totalQty) {
@@ -217,37 +155,41 @@ public class StockMovementGUI extends JFrame {
         String datePart = dateTime.split(" ")[0]; 
         String fileName = "StockMovements_" + datePart + ".txt";
         
-        // 2. Open FileWriter in APPEND mode (second argument 'true')
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(fileName, true))) {
-            bw.write("=========================================="); bw.newLine();
-            bw.write("          STOCK MOVEMENT RECEIPT          "); bw.newLine();
-            bw.write("=========================================="); bw.newLine();
-            bw.write("Transaction Type: " + type); bw.newLine();
-            bw.write("Date & Time     : " + dateTime); bw.newLine();
-            bw.write("Staff In Charge : " + staff); bw.newLine();
-            bw.write("------------------------------------------"); bw.newLine();
-            bw.write("FROM: " + from); bw.newLine();
-            bw.write("TO  : " + to); bw.newLine();
-            bw.write("------------------------------------------"); bw.newLine();
-            bw.write("ITEMS MOVED:"); bw.newLine();
-            bw.write(items.toString()); // Items already have newlines
-            bw.write("------------------------------------------"); bw.newLine();
-            bw.write("TOTAL QUANTITY  : " + totalQty); bw.newLine();
-            bw.write("=========================================="); bw.newLine();
-            bw.newLine(); // Add space between records
-            bw.newLine();
-            
-            JOptionPane.showMessageDialog(this, "Receipt saved to daily log: " + fileName);
-            
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Error generating receipt: " + e.getMessage());
-        }
+        // 2. Build the receipt text; the PersistenceWriter appends it in the background
+        String nl = System.lineSeparator();
+        StringBuilder sb = new StringBuilder();
+        sb.append("==========================================").append(nl);
+        sb.append("          STOCK MOVEMENT RECEIPT          ").append(nl);
+        sb.append("==========================================").append(nl);
+        sb.append("Transaction Type: ").append(type).append(nl);
+        sb.append("Date & Time     : ").append(dateTime).append(nl);
+        sb.append("Staff In Charge : ").append(staff).append(nl);
+        sb.append("------------------------------------------").append(nl);
+        sb.append("FROM: ").append(from).append(nl);
+        sb.append("TO  : ").append(to).append(nl);
+        sb.append("------------------------------------------").append(nl);
+        sb.append("ITEMS MOVED:").append(nl);
+        sb.append(items); // Items already have newlines
+        sb.append("------------------------------------------").append(nl);
+        sb.append("TOTAL QUANTITY  : ").append(totalQty).append(nl);
+        sb.append("==========================================").append(nl);
+        sb.append(nl).append(nl); // Add space between records
+
+        PersistenceWriter.getInstance().appendText(Paths.get(fileName), sb.toString(), null, null)
+                .whenComplete((offset, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error == null) {
+                        JOptionPane.showMessageDialog(this, "Receipt saved to daily log: " + fileName);
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Error generating receipt: " + error.getMessage());
+                    }
+                }));
     }
 
     private void processMovement() {
         String staffName = currentUser.getName(); 
 
         String externalParty = (String) comboSupplierOutlet.getSelectedItem();
+        int partyOutlet = partyOutlets.get(comboSupplierOutlet.getSelectedIndex());
         boolean isStockIn = rbIn.isSelected();
         String type = isStockIn ? "STOCK IN" : "STOCK OUT";
         String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
@@ -266,9 +208,12 @@ public class StockMovementGUI extends JFrame {
 
         StringBuilder batchDetails = new StringBuilder();
         int totalItems = 0;
+        // Every line is collected first, then the whole movement is applied in one go
+        List<StockTransferEngine.Line> lines = new ArrayList<>();
+        String[] modelChoices = loadModels();
 
         for (int i = 1; i <= modelCount; i++) {
-            JComboBox<String> comboModel = new JComboBox<>(loadModels());
+            JComboBox<String> comboModel = new JComboBox<>(modelChoices);
             comboModel.setEditable(true); 
             JTextField txtQty = new JTextField();
 
@@ -294,13 +239,14 @@ public class StockMovementGUI extends JFrame {
 
             try {
                 int qty = Integer.parseInt(qtyStr);
-                updateStockFile(model, qty, isStockIn);
+                if (qty <= 0) throw new NumberFormatException();
+                lines.add(new StockTransferEngine.Line(model, qty));
 
                 // Add newline here for the receipt builder
                 batchDetails.append(String.format("%s (%d units)\n", model, qty));
                 totalItems += qty;
             } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(this, "Quantity must be a number!");
+                JOptionPane.showMessageDialog(this, "Quantity must be a positive number!");
                 i--;
             }
         }
@@ -316,9 +262,26 @@ public class StockMovementGUI extends JFrame {
         entry.append("Total Items: ").append(totalItems).append("\n");
         entry.append("Status: COMPLETED\n--------------------------\n");
         
-        logArea.append(entry.toString());
-        
-        generateReceipt(type, time, fromLoc, toLoc, staffName, batchDetails, totalItems);
+        int receiptTotal = totalItems;
+        int fromOutlet = isStockIn ? partyOutlet : homeOutlet;
+        int toOutlet = isStockIn ? homeOutlet : partyOutlet;
+
+        // One atomic batch (one journal write) in the background; log and receipt follow on the EDT.
+        // Nothing is moved unless every line can be.
+        btnSubmit.setEnabled(false);
+        AsyncTasks.run(() -> StockTransferEngine.transfer(fromOutlet, toOutlet, lines), problem -> {
+            btnSubmit.setEnabled(true);
+            if (problem != null) {
+                logArea.append("[REJECTED] " + type + ": " + problem + " (nothing was moved)\n");
+                JOptionPane.showMessageDialog(this, problem + "\nNo stock was moved.", "Movement Rejected", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            logArea.append(entry.toString());
+            generateReceipt(type, time, fromLoc, toLoc, staffName, batchDetails, receiptTotal);
+        }, error -> {
+            btnSubmit.setEnabled(true);
+            logArea.append("Error saving stock updates: " + error.getMessage() + "\n");
+        });
     }
 
     public static void main(String[] args) {
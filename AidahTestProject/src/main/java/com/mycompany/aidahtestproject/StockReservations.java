@@ -0,0 +1,368 @@
+package com.mycompany.aidahtestproject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived stock holds for a sale that is waiting on the cashier
+ * (confirmation dialog, customer digging for a card, ...).
+ *
+ * reserve() takes the units straight away through InventoryService, i.e.
+ * one journalled decrement under the STOCK lock, so every other window and
+ * terminal immediately sees them as gone and a limited edition cannot be
+ * sold twice. No lock is held while the dialog is open. The hold then ends
+ * in exactly one of three ways, decided by a compare-and-set on its state:
+ *
+ *   commit()  - the sale is on disk; the units stay sold
+ *   release() - the sale was cancelled or could not be saved; the units are put back
+ *   expiry    - nobody answered within the TTL; the units are put back
+ *
+ * Once the cashier confirms, pin() stops the hold from expiring while the
+ * sale is written, and notes the sale's Reference No. Only when the write
+ * has succeeded is the hold committed.
+ *
+ * Holds live in a ConcurrentHashMap keyed by (model, outlet, terminal) and
+ * are expired by a hashed timer wheel: one thread ticks every TICK_MS and
+ * only looks at the slot for that tick, however many holds are open.
+ *
+ * Expired holds are taken off the wheel on the timer thread, but their
+ * units are put back on a separate expiry thread, so a slow stock write
+ * cannot hold up the next tick.
+ *
+ * Every hold, pin and end is also appended as one line to
+ * stock.holds.<terminal> (through PersistenceWriter, so it shares the
+ * group commit's fsync), so units held when the app crashed are put back
+ * the next time that terminal starts - unless the hold was pinned and its
+ * sale made it into sales.dat. The log is only cut back once no hold is
+ * open. The terminal is TerminalIdentity, whose number is claimed for as
+ * long as the process runs, so no two running copies share a holds file.
+ */
+public final class StockReservations {
+
+    public static final long DEFAULT_TTL_MS = Long.getLong("goldenhour.holdTtlMs", 120_000);
+
+    private static final long TICK_MS = 250;
+    private static final int SLOTS = 512; // one turn of the wheel = 128 s
+    private static final int HELD = 0, COMMITTED = 1, RELEASED = 2, EXPIRED = 3, SAVING = 4;
+    // Holds log records: H,id,model,outlet,qty / P,id,reference / E,id
+    private static final String HOLD = "H", PIN = "P", END = "E";
+    private static final int COMPACT_AFTER = 256; // log records
+
+    private static StockReservations instance;
+
+    private final InventoryService inventory;
+    private final Map<Key, Hold> holds = new ConcurrentHashMap<>();
+    private final List<Set<Hold>> wheel = new ArrayList<>(SLOTS);
+    private final Path holdsFile;
+    private final AtomicLong nextId = new AtomicLong();
+    private int logRecords; // guarded by this
+    private long nextTick;
+    private final ExecutorService expiries = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "stock-reservations-expiry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** A hold on qty units of one model at one outlet. */
+    public static final class Hold {
+        public final String modelId;
+        public final int outlet;
+        public final String terminal;
+        public final int quantity;
+        private final Key key;
+        private final long id; // in the holds log
+        private final long deadlineMs; // on the monotonic clock
+        private final AtomicInteger state = new AtomicInteger(HELD);
+        private volatile String saleReference = ""; // set by pin()
+
+        private Hold(Key key, long id, String modelId, int outlet, String terminal, int quantity, long deadlineMs) {
+            this.key = key;
+            this.id = id;
+            this.modelId = modelId;
+            this.outlet = outlet;
+            this.terminal = terminal;
+            this.quantity = quantity;
+            this.deadlineMs = deadlineMs;
+        }
+
+        /** True until the hold is committed, released or expired. */
+        public boolean isHeld() {
+            int s = state.get();
+            return s == HELD || s == SAVING;
+        }
+
+        /** Milliseconds until the hold expires (0 once it has). */
+        public long remainingMs() { return Math.max(0, deadlineMs - nowMs()); }
+    }
+
+    private static final class Key {
+        final String modelId;
+        final int outlet;
+        final String terminal;
+
+        Key(String modelId, int outlet, String terminal) {
+            this.modelId = modelId.trim().toLowerCase(java.util.Locale.ROOT);
+            this.outlet = outlet;
+            this.terminal = terminal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return outlet == k.outlet && modelId.equals(k.modelId) && terminal.equals(k.terminal);
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(modelId, outlet, terminal); }
+    }
+
+    private StockReservations(InventoryService inventory) {
+        this.inventory = inventory;
+        // Claims the terminal number (if not yet done), which makes this file ours alone
+        this.holdsFile = Paths.get("stock.holds." + TerminalIdentity.name());
+        for (int i = 0; i < SLOTS; i++) wheel.add(ConcurrentHashMap.newKeySet());
+        nextTick = nowMs() / TICK_MS;
+    }
+
+    public static synchronized StockReservations getInstance() {
+        if (instance == null) {
+            instance = new StockReservations(InventoryService.getInstance());
+            instance.recover();
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "stock-reservations");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleAtFixedRate(instance::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        }
+        return instance;
+    }
+
+    // =================================================================
+    // HOLDS
+    // =================================================================
+
+    /**
+     * Takes qty units out of stock for ttlMs.
+     * @param modelId
+     * @param outlet outlet index (OutletRegistry)
+     * @param terminal who holds it (e.g. TerminalIdentity.name() plus a window number)
+     * @param qty
+     * @param ttlMs
+     * @return the hold, or null if there is not enough stock
+     */
+    public Hold reserve(String modelId, int outlet, String terminal, int qty, long ttlMs) {
+        Key key = new Key(modelId, outlet, terminal);
+        // A till only waits on one sale at a time: an older hold under the same key is abandoned
+        Hold previous = holds.get(key);
+        if (previous != null) release(previous);
+
+        if (!inventory.tryDecrement(modelId, outlet, qty)) return null;
+        Hold hold = new Hold(key, nextId.incrementAndGet(), modelId, outlet, terminal, qty, nowMs() + ttlMs);
+        holds.put(key, hold);
+        wheel.get(slotOf(hold.deadlineMs)).add(hold);
+        log(HOLD + "," + hold.id + "," + CsvTokenizer.escape(modelId) + "," + outlet + "," + qty);
+        return hold;
+    }
+
+    public Hold reserve(String modelId, int outlet, String terminal, int qty) {
+        return reserve(modelId, outlet, terminal, qty, DEFAULT_TTL_MS);
+    }
+
+    /**
+     * Keeps the hold from expiring while its sale is being written, and
+     * records the sale's Reference No for crash recovery. Follow with
+     * commit() once the sale is on disk, or release() if it failed.
+     * @param hold
+     * @param saleReference
+     * @return false if the hold had already expired or been released
+     */
+    public boolean pin(Hold hold, String saleReference) {
+        if (!hold.state.compareAndSet(HELD, SAVING)) return false;
+        hold.saleReference = saleReference;
+        log(PIN + "," + hold.id + "," + CsvTokenizer.escape(saleReference));
+        return true;
+    }
+
+    /**
+     * Makes the hold a sale: the units stay out of stock. Call once the
+     * sale is on disk.
+     * @param hold
+     * @return false if the hold had already expired or been released
+     *         (its units are back in stock and may have been sold since)
+     */
+    public boolean commit(Hold hold) {
+        if (!hold.state.compareAndSet(SAVING, COMMITTED) && !hold.state.compareAndSet(HELD, COMMITTED)) return false;
+        forget(hold);
+        return true;
+    }
+
+    /**
+     * Cancels the hold and puts the units back.
+     * @param hold
+     * @return false if it was already committed, released or expired
+     */
+    public boolean release(Hold hold) {
+        return end(hold, SAVING, RELEASED) || end(hold, HELD, RELEASED);
+    }
+
+    private boolean end(Hold hold, int expected, int newState) {
+        if (!hold.state.compareAndSet(expected, newState)) return false;
+        putBack(hold);
+        return true;
+    }
+
+    private void putBack(Hold hold) {
+        if (!inventory.stockIn(hold.modelId, hold.outlet, hold.quantity)) {
+            System.err.println("Error returning held stock: " + hold.quantity + " x " + hold.modelId);
+        }
+        forget(hold);
+    }
+
+    private void forget(Hold hold) {
+        holds.remove(hold.key, hold);
+        wheel.get(slotOf(hold.deadlineMs)).remove(hold);
+        log(END + "," + hold.id);
+        compactIfIdle();
+    }
+
+    // =================================================================
+    // TIMER WHEEL
+    // =================================================================
+
+    private static int slotOf(long deadlineMs) {
+        // Rounded up, so a hold is never looked at before its deadline tick
+        return (int) Math.floorMod((deadlineMs + TICK_MS - 1) / TICK_MS, (long) SLOTS);
+    }
+
+    // Visits every slot passed since the last tick; holds due a later turn stay put
+    private void tick() {
+        try {
+            long now = nowMs();
+            long currentTick = now / TICK_MS;
+            for (; nextTick <= currentTick; nextTick++) {
+                for (Hold h : wheel.get((int) Math.floorMod(nextTick, (long) SLOTS))) {
+                    // A pinned hold (sale being written) never expires. The state change
+                    // decides it here; the stock write happens on the expiry thread
+                    if (h.deadlineMs <= now && h.state.compareAndSet(HELD, EXPIRED)) {
+                        expiries.execute(() -> putBack(h));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep the wheel turning whatever happens to one hold
+            System.err.println("Stock reservation timer: " + e);
+        }
+    }
+
+    private static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    // =================================================================
+    // CRASH RECOVERY
+    // =================================================================
+
+    // Appends one record and waits for it to be on disk; other terminals' and
+    // windows' records in the same batch share the fsync
+    private void log(String record) {
+        CompletableFuture<Long> written;
+        synchronized (this) {
+            written = PersistenceWriter.getInstance().appendText(holdsFile, record + "\n", null, null);
+            logRecords++;
+        }
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            System.err.println("Error saving stock holds: " + e.getCause());
+        }
+    }
+
+    // Starts the log afresh once it has grown and nothing in it is open any more.
+    // Records are queued under the same lock, so none can land in the old file
+    private synchronized void compactIfIdle() {
+        if (logRecords < COMPACT_AFTER || !holds.isEmpty()) return;
+        PersistenceWriter writer = PersistenceWriter.getInstance();
+        writer.release(holdsFile); // after everything queued so far
+        try {
+            Files.deleteIfExists(holdsFile);
+            logRecords = 0;
+        } catch (IOException e) {
+            System.err.println("Error compacting stock holds: " + e.getMessage());
+        }
+    }
+
+    // Puts back anything this terminal was holding when it last stopped,
+    // except holds whose sale was written before the crash
+    private void recover() {
+        File file = holdsFile.toFile();
+        if (!file.exists()) return;
+        try {
+            // Replay the log: what is left open was held when the app stopped
+            Map<String, String[]> open = new LinkedHashMap<>(); // id -> model, outlet, qty, reference
+            CsvTokenizer csv = CsvTokenizer.fromFile(file);
+            while (csv.next()) {
+                if (csv.fieldCount() < 2) continue; // torn by the crash
+                String id = csv.getString(1);
+                switch (csv.getString(0)) {
+                    case HOLD:
+                        if (csv.fieldCount() < 5) break;
+                        open.put(id, new String[]{csv.getString(2), csv.getString(3), csv.getString(4), ""});
+                        break;
+                    case PIN:
+                        String[] hold = open.get(id);
+                        if (hold != null && csv.fieldCount() > 2) hold[3] = csv.getString(2);
+                        break;
+                    case END:
+                        open.remove(id);
+                        break;
+                    default:
+                        System.err.println("Skipping unknown stock holds record: " + csv.getString(0));
+                }
+            }
+            Set<String> saved = null;
+            for (String[] hold : open.values()) {
+                String modelId = hold[0];
+                int outlet = Integer.parseInt(hold[1]);
+                int qty = Integer.parseInt(hold[2]);
+                String reference = hold[3];
+                if (!reference.isEmpty()) {
+                    if (saved == null) saved = savedReferences();
+                    if (saved.contains(reference)) continue; // it became a sale
+                }
+                if (inventory.find(modelId) != null && inventory.stockIn(modelId, outlet, qty)) {
+                    System.err.println("Returned " + qty + " x " + modelId + " held before the last shutdown.");
+                }
+            }
+            Files.deleteIfExists(holdsFile);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error recovering stock holds: " + e.getMessage());
+        }
+    }
+
+    private static Set<String> savedReferences() {
+        Set<String> refs = new HashSet<>();
+        SalesJournal.scan(c -> refs.add(c.referenceNo()));
+        return refs;
+    }
+}
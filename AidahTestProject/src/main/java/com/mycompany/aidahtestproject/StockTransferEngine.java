@@ -0,0 +1,73 @@
+package com.mycompany.aidahtestproject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Moves stock for many models at once: supplier to outlet, outlet to
+ * outlet, or outlet out to a supplier/warehouse.
+ *
+ * A movement becomes one InventoryService.applyBatch call, i.e. one
+ * StockJournal batch: for every line the source outlet loses qty and the
+ * destination gains it, all under one STOCK lock and one write to disk.
+ * Either every line is applied or none is; a line the source cannot
+ * cover rejects the whole movement. A restock of hundreds of models is
+ * still a single append and a single force.
+ *
+ *   String problem = StockTransferEngine.transfer(
+ *           StockTransferEngine.EXTERNAL, OutletRegistry.home(), lines);
+ */
+public final class StockTransferEngine {
+
+    /** A source or destination outside the outlets (supplier, warehouse): not counted. */
+    public static final int EXTERNAL = -1;
+
+    private StockTransferEngine() { }
+
+    /** One line of a movement. */
+    public static final class Line {
+        public final String modelId;
+        public final int quantity;
+
+        public Line(String modelId, int quantity) {
+            this.modelId = modelId.trim();
+            this.quantity = quantity;
+        }
+    }
+
+    /**
+     * Moves every line from one place to another, all or nothing.
+     * @param fromOutlet OutletRegistry index, or EXTERNAL
+     * @param toOutlet OutletRegistry index, or EXTERNAL
+     * @param lines
+     * @return null if moved, otherwise why nothing was
+     */
+    public static String transfer(int fromOutlet, int toOutlet, List<Line> lines) {
+        if (fromOutlet == toOutlet) return "Source and destination are the same.";
+        if (lines.isEmpty()) return "Nothing to move.";
+
+        // Lines for the same model are added up, so each model is checked once
+        Map<String, Line> merged = new LinkedHashMap<>();
+        for (Line l : lines) {
+            if (l.modelId.isEmpty()) return "A line has no model.";
+            if (l.quantity <= 0) return "Quantity for " + l.modelId + " must be more than 0.";
+            merged.merge(l.modelId.toLowerCase(Locale.ROOT), l,
+                    (a, b) -> new Line(a.modelId, Math.addExact(a.quantity, b.quantity)));
+        }
+
+        InventoryService inventory = InventoryService.getInstance();
+        List<StockJournal.Entry> changes = new ArrayList<>(merged.size() * 2);
+        for (Line l : merged.values()) {
+            // Stock only leaves an outlet for models it has; new models may only arrive from outside
+            if (fromOutlet != EXTERNAL && inventory.find(l.modelId) == null) {
+                return "Cannot move '" + l.modelId + "' (Not Found).";
+            }
+            if (fromOutlet != EXTERNAL) changes.add(StockJournal.Entry.change(l.modelId, fromOutlet, -l.quantity));
+            if (toOutlet != EXTERNAL) changes.add(StockJournal.Entry.change(l.modelId, toOutlet, l.quantity));
+        }
+        return inventory.applyBatch(changes);
+    }
+}
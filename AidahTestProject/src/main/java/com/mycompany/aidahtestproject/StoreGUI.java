@@ -1,7 +1,6 @@
 package com.mycompany.aidahtestproject;
 
 import java.awt.*;
-import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 import javax.swing.*;
@@ -52,15 +51,14 @@ public class StoreGUI extends JFrame {
         JPanel panel = new JPanel(new GridLayout(1, 2, 10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-        // Get Data for Dropdowns
-        String[] modelOptions = loadModelList();
+        // Get Data for Dropdowns (models come from the shared inventory, loaded in the background)
         String[] outletOptions = loadOutletList();
 
         // --- Left: Search ---
         JPanel searchBox = new JPanel(new FlowLayout());
         searchBox.setBorder(BorderFactory.createTitledBorder("Search Inventory"));
         
-        comboSearchModel = new JComboBox<>(modelOptions);
+        comboSearchModel = new JComboBox<>();
         JButton btnSearch = new JButton("Check Stock");
         
         searchBox.add(new JLabel("Select Model:"));
@@ -71,7 +69,7 @@ public class StoreGUI extends JFrame {
         JPanel editBox = new JPanel(new GridLayout(4, 2, 5, 5));
         editBox.setBorder(BorderFactory.createTitledBorder("Update Stock Level"));
         
-        comboUpdateModel = new JComboBox<>(modelOptions);
+        comboUpdateModel = new JComboBox<>();
         comboUpdateOutlet = new JComboBox<>(outletOptions);
         JTextField txtEQty = new JTextField();
         JButton btnUpdate = new JButton("Update & Save");
@@ -90,6 +88,7 @@ public class StoreGUI extends JFrame {
 
         panel.add(searchBox);
         panel.add(editBox);
+        loadModelList();
 
         // --- Logic ---
         btnSearch.addActionListener(e -> {
@@ -109,11 +108,14 @@ public class StoreGUI extends JFrame {
                 int index = comboUpdateOutlet.getSelectedIndex();
                 int qty = Integer.parseInt(txtEQty.getText().trim());
                 
-                if (manager.updateStock(modelId, index, qty)) {
-                    outputArea.setText("SUCCESS: " + modelId + " updated to " + qty + " units at Outlet " + index + ".");
-                } else {
-                    outputArea.setText("FAILED: Update operation rejected by DataManager.");
-                }
+                // The stock journal write runs off the event thread
+                AsyncTasks.run(() -> manager.updateStock(modelId, index, qty), ok -> {
+                    if (ok) {
+                        outputArea.setText("SUCCESS: " + modelId + " updated to " + qty + " units at Outlet " + index + ".");
+                    } else {
+                        outputArea.setText("FAILED: Update operation rejected by DataManager.");
+                    }
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "Please enter a valid number for Quantity.");
             }
@@ -122,40 +124,33 @@ public class StoreGUI extends JFrame {
         return panel;
     }
 
-    // Helper to load Model IDs from model.csv
-    private String[] loadModelList() {
-        List<String> list = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader("model.csv"))) {
-            br.readLine(); // Skip header
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length > 0) list.add(parts[0]);
+    // Fills both model drop-downs from the shared InventoryService (no second read of model.csv)
+    private void loadModelList() {
+        comboSearchModel.addItem("Loading...");
+        comboUpdateModel.addItem("Loading...");
+        AsyncTasks.run(() -> {
+            List<String> ids = new ArrayList<>();
+            for (Model m : InventoryService.getInstance().models()) ids.add(m.getModelId());
+            return ids;
+        }, ids -> {
+            comboSearchModel.removeAllItems();
+            comboUpdateModel.removeAllItems();
+            if (ids.isEmpty()) ids.add("No Models Found");
+            for (String id : ids) {
+                comboSearchModel.addItem(id);
+                comboUpdateModel.addItem(id);
             }
-        } catch (IOException e) {
-            list.add("No Models Found");
-        }
-        return list.toArray(new String[0]);
+        });
     }
 
-    // Helper to load Outlet Names from outlet.csv
+    // Outlet names from the OutletRegistry (outlet.csv); position = stock column
     private String[] loadOutletList() {
         List<String> list = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader("outlet.csv"))) {
-            br.readLine(); // Skip header
-            String line;
-            int count = 0;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 2) {
-                    // Display index and name for clarity
-                    list.add(count + " - " + parts[1]);
-                    count++;
-                }
-            }
-        } catch (IOException e) {
-            list.add("No Outlets Found");
+        for (int i = 0; i < OutletRegistry.count(); i++) {
+            // Display index and name for clarity
+            list.add(i + " - " + OutletRegistry.name(i));
         }
+        if (list.isEmpty()) list.add("No Outlets Found");
         return list.toArray(new String[0]);
     }
 
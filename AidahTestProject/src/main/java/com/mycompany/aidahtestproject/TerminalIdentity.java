@@ -0,0 +1,73 @@
+package com.mycompany.aidahtestproject;
+
+/**
+ * Which terminal this copy of the app is. Everything that has to differ
+ * between tills takes it from here: the terminal bits of sale reference
+ * numbers (ReferenceGenerator) and the stock holds file (StockReservations).
+ *
+ * The number is -Dgoldenhour.terminalId if set (0-1023, unique across the
+ * company, as head office keeps sales by Reference No). Otherwise it is
+ * derived from the home outlet's index in outlet.csv and the till number
+ * at that outlet, -Dgoldenhour.till (0 to TILLS_PER_OUTLET-1, default 0):
+ *
+ *   number = OutletRegistry.home() * TILLS_PER_OUTLET + till
+ *
+ * The number is claimed in goldenhour.lock for as long as the app runs
+ * (FileCoordinator.claimTerminal). A second terminal in the same data
+ * directory with the same number - typically both left on the default -
+ * is refused rather than issuing the same reference numbers.
+ */
+public final class TerminalIdentity {
+
+    public static final int TILLS_PER_OUTLET = 32;
+    private static final int MAX_NUMBER = 1023; // ReferenceGenerator's 10 terminal bits
+
+    private static int number = -1;
+
+    private TerminalIdentity() { }
+
+    /**
+     * This terminal's number, claimed on first use.
+     * @return 0-1023
+     * @throws IllegalStateException if the number is invalid or already in use here
+     */
+    public static synchronized int number() {
+        if (number < 0) number = claim();
+        return number;
+    }
+
+    /** Short name for files and logs, e.g. "T0033". */
+    public static String name() {
+        return String.format("T%04d", number());
+    }
+
+    private static int claim() {
+        // 1. Explicit number, or derive one from the outlet and till
+        Integer explicit = Integer.getInteger("goldenhour.terminalId");
+        int n;
+        if (explicit != null) {
+            n = explicit;
+        } else {
+            int till = Integer.getInteger("goldenhour.till", 0);
+            if (till < 0 || till >= TILLS_PER_OUTLET) {
+                throw new IllegalStateException("goldenhour.till must be 0-" + (TILLS_PER_OUTLET - 1) + ": " + till);
+            }
+            int home = OutletRegistry.home();
+            if (home > MAX_NUMBER / TILLS_PER_OUTLET) {
+                throw new IllegalStateException("Outlet " + OutletRegistry.homeCode() + " is too far down "
+                        + OutletRegistry.OUTLET_FILE + " to derive a terminal number; set -Dgoldenhour.terminalId.");
+            }
+            n = home * TILLS_PER_OUTLET + till;
+        }
+        if (n < 0 || n > MAX_NUMBER) {
+            throw new IllegalStateException("Terminal number must be 0-" + MAX_NUMBER + ": " + n);
+        }
+
+        // 2. Make sure no other running terminal in this directory has it
+        if (!FileCoordinator.claimTerminal(n)) {
+            throw new IllegalStateException("Terminal " + n + " is already running in this data directory."
+                    + " Give each till its own -Dgoldenhour.till (or -Dgoldenhour.terminalId).");
+        }
+        return n;
+    }
+}